@@ -0,0 +1,149 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Base-relative addressing under BASE and NOBASE, the range of immediates, and relaxation, whose loop grows an
+ * instruction pushed out of reach by another one that grew before it.
+ */
+public class AddressingTest {
+
+    private static final String OUT_OF_RANGE = Error.message(Error.OUT_OF_RANGE);
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void addressesFromTheBase() throws Exception {
+        File source = TestPrograms.write(dir, "base.txt",
+                "PROG     START   0",
+                "         +LDB    #TABLE",
+                "         BASE    TABLE",
+                "         LDA     TABLE",
+                "         LDA     NEAR,X",
+                "         STA     TABLE+3,X",
+                "NEAR     WORD    1",
+                "         RESB    4096",
+                "TABLE    WORD    2",
+                "         WORD    3",
+                "         NOBASE",
+                "         LDA     TABLE",
+                "         END     PROG");
+        assertEquals(0, TestPrograms.assembler(source, dir, "base").assembleFiles().getErrors());
+        // base-relative for TABLE, PC-relative when it is in reach, also after NOBASE
+        assertEquals(""
+                        + "HPROG  ^000000^001019\n"
+                        + "T000000^0D^6910101003400003A0030FC003\n"
+                        + "T00000D^03^000001\n"
+                        + "T001010^03^000002\n"
+                        + "T001013^06^000003032FF7\n"
+                        + "E000000",
+                object("base"));
+    }
+
+    @Test
+    public void noBaseLeavesFarTargetsOutOfReach() throws Exception {
+        File source = TestPrograms.write(dir, "nobase.txt",
+                "PROG     START   0",
+                "         +LDB    #TABLE",
+                "         BASE    TABLE",
+                "         LDA     TABLE",
+                "NEAR     WORD    1",
+                "         RESB    4096",
+                "TABLE    WORD    2",
+                "         NOBASE",
+                "         LDA     NEAR",
+                "         END     PROG");
+        assertEquals(1, TestPrograms.assembler(source, dir, "nobase").assembleFiles().getErrors());
+        assertTrue(listing("nobase").contains(OUT_OF_RANGE + "\n00100D\t         LDA     NEAR\n"));
+    }
+
+    @Test
+    public void immediatesOutOfRange() throws Exception {
+        File source = TestPrograms.write(dir, "immediate.txt",
+                "PROG     START   0",
+                "         LDA     #4095",
+                "         LDA     #4096",
+                "         +LDA    #1048575",
+                "         +LDA    #1048576",
+                "         +LDA    #-1",
+                "         END     PROG");
+        assertEquals(3, TestPrograms.assembler(source, dir, "immediate").assembleFiles().getErrors());
+        String listing = listing("immediate");
+        assertTrue(listing.contains(OUT_OF_RANGE + "\n000003\t         LDA     #4096\n"));
+        assertTrue(listing.contains(OUT_OF_RANGE + "\n00000A\t         +LDA    #1048576\n"));
+        assertTrue(listing.contains(OUT_OF_RANGE + "\n00000E\t         +LDA    #-1\n"));
+
+        Assembler compact = TestPrograms.assembler(source, dir, "compact");
+        compact.setCompact(true);
+        compact.assembleFiles();
+        assertArrayEquals(TestPrograms.read(dir, "immediate.lst"), TestPrograms.read(dir, "compact.lst"));
+    }
+
+    @Test
+    public void relaxesUntilEveryTargetIsInReach() throws Exception {
+        // BACK is 2048 bytes before the PC of LDA BACK until LDA FAR grows
+        File source = TestPrograms.write(dir, "relax.txt",
+                "PROG     START   0",
+                "BACK     LDA     FAR",
+                "         RESB    2039",
+                "         WORD    0",
+                "         LDA     BACK",
+                "         RESB    16",
+                "FAR      WORD    2",
+                "         END     PROG");
+        assertEquals(1, TestPrograms.assembler(source, dir, "fixed").assembleFiles().getErrors());
+
+        Assembler relaxed = TestPrograms.assembler(source, dir, "relaxed");
+        relaxed.setRelaxation(true);
+        assertEquals(0, relaxed.assembleFiles().getErrors());
+        assertEquals(""
+                        + "HPROG  ^000000^000815\n"
+                        + "T000000^04^03100812\n"
+                        + "T0007FB^07^00000003100000\n"
+                        + "T000812^03^000002\n"
+                        + "E000000",
+                object("relaxed"));
+    }
+
+    @Test
+    public void relaxationLeavesConstantsAlone() throws Exception {
+        File source = TestPrograms.write(dir, "constants.txt",
+                "PROG     START   0",
+                "         LDA     #5000",
+                "         +LDA    #-1",
+                "         LDA     DATA",
+                "DATA     WORD    1",
+                "         END     PROG");
+        long errors = TestPrograms.assembler(source, dir, "fixed").assembleFiles().getErrors();
+        Assembler relaxed = TestPrograms.assembler(source, dir, "relaxed");
+        relaxed.setRelaxation(true);
+        assertEquals(2, errors);
+        assertEquals(errors, relaxed.assembleFiles().getErrors());
+        assertArrayEquals(TestPrograms.read(dir, "fixed.lst"), TestPrograms.read(dir, "relaxed.lst"));
+    }
+
+    private String object(String name) throws Exception {
+        return new String(TestPrograms.read(dir, name + ".obj"), StandardCharsets.ISO_8859_1);
+    }
+
+    private String listing(String name) throws Exception {
+        return new String(TestPrograms.read(dir, name + ".lst"), StandardCharsets.ISO_8859_1);
+    }
+}
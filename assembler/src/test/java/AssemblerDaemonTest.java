@@ -0,0 +1,170 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Requests sent to a daemon on the loopback interface, checked against assembling the same source in the test.
+ * The daemon writes its token under a temporary home directory.
+ */
+public class AssemblerDaemonTest {
+
+    private File dir;
+    private String home;
+    private AssemblerDaemon daemon;
+    private Thread server;
+    private String token;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+        home = System.getProperty("user.home");
+        System.setProperty("user.home", dir.getPath());
+        daemon = new AssemblerDaemon(0, 2);
+        server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+        token = new String(AssemblerDaemon.readToken(daemon.getPort()), StandardCharsets.US_ASCII);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        daemon.stop();
+        server.join();
+        System.setProperty("user.home", home);
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void rejectsRequestsWithoutTheToken() throws Exception {
+        File source = TestPrograms.sources().get(0);
+        String[] args = {"arg " + source.getAbsolutePath(), "arg " + new File(dir, "a.lst").getAbsolutePath(),
+                "arg " + new File(dir, "a.obj").getAbsolutePath()};
+
+        assertEquals("failed unauthorized", send(null, header("assemble", null, args)).get(0));
+        assertEquals("failed unauthorized", send(null, header("assemble", "token 00", args)).get(0));
+        assertEquals("failed unauthorized", send(null, header("stop", "token " + token.substring(1)))
+                .get(0));
+        assertFalse(new File(dir, "a.lst").exists());
+        assertFalse(new File(dir, "a.obj").exists());
+        assertTrue(AssemblerDaemon.tokenFile(daemon.getPort()).exists());
+    }
+
+    @Test
+    public void returnsTheFilesOfAnInlineSource() throws Exception {
+        for (File source : TestPrograms.sources()) {
+            String name = source.getName();
+            long errors = TestPrograms.assembler(source, dir, "one").assembleFiles().getErrors();
+
+            List<byte[]> blocks = new ArrayList<>();
+            List<String> response = send(Files.readAllBytes(source.toPath()), blocks, header("assemble",
+                    "token " + token, "arg -", "arg -", "arg -", "inline " + source.length()));
+            assertEquals(name, "ok", response.get(0));
+            assertEquals(name, "errors " + errors, response.get(1));
+            assertTrue(name, response.contains("list " + blocks.get(0).length));
+            assertTrue(name, response.contains("object " + blocks.get(1).length));
+            assertArrayEquals(name, TestPrograms.read(dir, "one.lst"), blocks.get(0));
+            assertArrayEquals(name, TestPrograms.read(dir, "one.obj"), blocks.get(1));
+        }
+    }
+
+    @Test
+    public void writesFilesAtAbsolutePaths() throws Exception {
+        File source = TestPrograms.sources().get(0);
+        TestPrograms.assembler(source, dir, "one").assembleFiles();
+
+        List<String> response = send(null, header("assemble", "token " + token,
+                "arg " + source.getAbsolutePath(), "arg " + new File(dir, "two.lst").getAbsolutePath(),
+                "arg " + new File(dir, "two.obj").getAbsolutePath()));
+        assertEquals("ok", response.get(0));
+        assertArrayEquals(TestPrograms.read(dir, "one.lst"), TestPrograms.read(dir, "two.lst"));
+        assertArrayEquals(TestPrograms.read(dir, "one.obj"), TestPrograms.read(dir, "two.obj"));
+
+        response = send(null, header("assemble", "token " + token, "arg source.txt", "arg -", "arg -"));
+        assertEquals("failed not an absolute path: source.txt", response.get(0));
+    }
+
+    @Test
+    public void rejectsBadInlineSizes() throws Exception {
+        for (String size : new String[]{"-1", "x", String.valueOf(AssemblerDaemon.MAX_INLINE + 1L)}) {
+            List<String> response = send(null, header("assemble", "token " + token, "arg -", "arg -", "arg -",
+                    "inline " + size));
+            assertEquals(size, "failed bad inline size " + size + ", at most " + AssemblerDaemon.MAX_INLINE,
+                    response.get(0));
+        }
+        assertEquals("failed no inline source",
+                send(null, header("assemble", "token " + token, "arg -", "arg -", "arg -")).get(0));
+    }
+
+    @Test
+    public void stopsAndDeletesTheToken() throws Exception {
+        assertEquals(Arrays.asList("ok"), send(null, header("stop", "token " + token)));
+        server.join();
+        assertFalse(AssemblerDaemon.tokenFile(daemon.getPort()).exists());
+    }
+
+    private static List<String> header(String request, String token, String... lines) {
+        List<String> header = new ArrayList<>();
+        header.add(request);
+        if (token != null) {
+            header.add(token);
+        }
+        header.addAll(Arrays.asList(lines));
+        return header;
+    }
+
+    private List<String> send(byte[] body, List<String> header) throws IOException {
+        return send(body, new ArrayList<>(), header);
+    }
+
+    /**
+     * Sends a request and reads the response, the {@code list} and {@code object} blocks are added to blocks.
+     */
+    private List<String> send(byte[] body, List<byte[]> blocks, List<String> header) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            for (String line : header) {
+                AssemblerDaemon.writeLine(out, line);
+            }
+            AssemblerDaemon.writeLine(out, "");
+            if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            List<String> response = AssemblerDaemon.readHeader(in);
+            for (String line : response) {
+                if (line.startsWith("list ") || line.startsWith("object ")) {
+                    byte[] block = new byte[Integer.parseInt(line.split(" ")[1])];
+                    new DataInputStream(in).readFully(block);
+                    blocks.add(block);
+                }
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The compact mode keeps the program in a {@link StatementStore}, its listing and object file must be those of the
+ * two-pass mode.
+ */
+public class CompactModeTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void sameOutputsAsTwoPasses() throws Exception {
+        List<File> sources = TestPrograms.sources();
+        for (long seed = 0; seed < 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setForwardRefDensity(seed % 2 == 0 ? 0.5 : 0);
+            sources.add(TestPrograms.generate(dir, generator, seed, 2000));
+        }
+        for (File source : sources) {
+            assertSameOutputs(source, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void sameOutputsAfterTooManyErrors() throws Exception {
+        for (File source : TestPrograms.sources()) {
+            assertSameOutputs(source, 2);
+        }
+    }
+
+    private void assertSameOutputs(File source, long maxErrors) throws Exception {
+        Assembler twoPass = TestPrograms.assembler(source, dir, "two");
+        twoPass.setMaxErrors(maxErrors);
+        long errors = twoPass.assembleFiles().getErrors();
+        Assembler compact = TestPrograms.assembler(source, dir, "compact");
+        compact.setCompact(true);
+        compact.setMaxErrors(maxErrors);
+
+        String name = source.getName();
+        assertEquals(name, errors, compact.assembleFiles().getErrors());
+        assertArrayEquals(name, TestPrograms.read(dir, "two.lst"), TestPrograms.read(dir, "compact.lst"));
+        assertArrayEquals(name, TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "compact.obj"));
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Assemblies running at the same time on a thread pool share only the tables, their listing and object files must be
+ * the same as those of serial runs.
+ */
+public class ConcurrentAssemblyTest {
+
+    private static final int THREADS = 4;
+    private static final int COPIES = 3;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void concurrentRunsMatchSerialRuns() throws Exception {
+        List<File> sources = TestPrograms.sources();
+        sources.add(TestPrograms.generate(dir, 1, 3000));
+        sources.add(TestPrograms.generate(dir, 2, 3000));
+        for (int i = 0; i < sources.size(); i++) {
+            TestPrograms.assembler(sources.get(i), dir, "serial" + i).assembleFiles();
+        }
+
+        List<Assembler> assemblers = new ArrayList<>();
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (int i = 0; i < sources.size(); i++) {
+                assemblers.add(TestPrograms.assembler(sources.get(i), dir, "concurrent" + i + "-" + copy));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Assembler.assembleAll(assemblers, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (int i = 0; i < sources.size(); i++) {
+                for (String suffix : new String[]{".lst", ".obj"}) {
+                    assertArrayEquals(sources.get(i).getName() + suffix,
+                            TestPrograms.read(dir, "serial" + i + suffix),
+                            TestPrograms.read(dir, "concurrent" + i + "-" + copy + suffix));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The program of figure 2.15 of the textbook, with {@code +J} for {@code +JSUB}: its define, refer and modification
+ * records, and the words the loader fills in.
+ */
+public class ControlSectionTest {
+
+    static final String[] COPY = {
+            "COPY     START   0",
+            "         EXTDEF  BUFFER,BUFEND,LENGTH,RETADR",
+            "         EXTREF  RDREC,WRREC",
+            "FIRST    STL     RETADR",
+            "CLOOP    +J      RDREC",
+            "         LDA     LENGTH",
+            "         COMP    #0",
+            "         JEQ     ENDFIL",
+            "         +J      WRREC",
+            "         J       CLOOP",
+            "ENDFIL   LDA     EOF",
+            "         STA     BUFFER",
+            "         LDA     #3",
+            "         STA     LENGTH",
+            "         +J      WRREC",
+            "         J       @RETADR",
+            "EOF      BYTE    C'EOF'",
+            "RETADR   RESW    1",
+            "LENGTH   RESW    1",
+            "BUFFER   RESB    4096",
+            "BUFEND   EQU     BUFFER+4096",
+            "MAXLEN   EQU     BUFEND-BUFFER",
+            "RDREC    CSECT",
+            "         EXTREF  BUFFER,LENGTH,BUFEND,RETADR",
+            "         LDX     #0",
+            "         LDA     #0",
+            "         LDS     #0",
+            "         LDT     MAXLEN",
+            "RLOOP    LDCH    INPUT",
+            "         JEQ     RLOOP",
+            "         LDCH    INPUT",
+            "         COMP    #0",
+            "         JEQ     EXIT",
+            "         +STCH   BUFFER,X",
+            "         TIXR    T",
+            "         JLT     RLOOP",
+            "EXIT     +STX    LENGTH",
+            "         +J      @RETADR",
+            "INPUT    BYTE    X'F1'",
+            "MAXLEN   WORD    BUFEND-BUFFER",
+            "WRREC    CSECT",
+            "         EXTREF  LENGTH,BUFFER,RETADR",
+            "         LDX     #0",
+            "         +LDT    LENGTH",
+            "WLOOP    LDCH    OUTPUT",
+            "         JEQ     WLOOP",
+            "         +LDCH   BUFFER,X",
+            "         STCH    OUTPUT",
+            "         TIXR    T",
+            "         JLT     WLOOP",
+            "         +J      @RETADR",
+            "OUTPUT   BYTE    X'05'",
+            "         END     COPY"};
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void writesTheRecordsOfEachSection() throws Exception {
+        File source = TestPrograms.write(dir, "copy.txt", COPY);
+        assertEquals(0, TestPrograms.assembler(source, dir, "copy").assembleFiles().getErrors());
+        assertEquals(""
+                        + "HCOPY  ^000000^001033\n"
+                        + "DBUFFER^000033^BUFEND^001033^LENGTH^000030^RETADR^00002D\n"
+                        + "RRDREC ^WRREC \n"
+                        + "T000000^1D^17202A3F1000000320262900003320073F1000003F2FEC0320100F2016\n"
+                        + "T00001D^0D^0100030F200D3F1000003E2003\n"
+                        + "T00002A^03^454F46\n"
+                        + "M000004^05^+RDREC\n"
+                        + "M000011^05^+WRREC\n"
+                        + "M000024^05^+WRREC\n"
+                        + "E000000\n"
+                        + "HRDREC ^000000^000030\n"
+                        + "RBUFFER^LENGTH^BUFEND^RETADR\n"
+                        + "T000000^1B^0500000100006D000077202153201D332FFA532017290000332009\n"
+                        + "T00001B^11^57900000B8503B2FE8131000003E100000\n"
+                        + "T00002C^01^F1\n"
+                        + "T00002D^03^000000\n"
+                        + "M00001C^05^+BUFFER\n"
+                        + "M000025^05^+LENGTH\n"
+                        + "M000029^05^+RETADR\n"
+                        + "M00002D^06^+BUFEND\n"
+                        + "M00002D^06^-BUFFER\n"
+                        + "E\n"
+                        + "HWRREC ^000000^00001E\n"
+                        + "RLENGTH^BUFFER^RETADR\n"
+                        + "T000000^1D^05000077100000532013332FFA53900000572009B8503B2FEE3E100000\n"
+                        + "T00001D^01^05\n"
+                        + "M000004^05^+LENGTH\n"
+                        + "M00000E^05^+BUFFER\n"
+                        + "M00001A^05^+RETADR\n"
+                        + "E",
+                new String(TestPrograms.read(dir, "copy.obj"), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void loaderFillsInTheExternalReferences() throws Exception {
+        File source = TestPrograms.write(dir, "copy.txt", COPY);
+        TestPrograms.assembler(source, dir, "copy").assembleFiles();
+        LinkingLoader loader = new LinkingLoader(0x4000, 1);
+        loader.load(Collections.singletonList(new File(dir, "copy.obj")));
+
+        assertEquals(Collections.emptyList(), loader.getErrors());
+        assertEquals(0x4000, loader.getEntry());
+        assertEquals(0x4033, (int) loader.getSymbols().get("BUFFER"));
+        assertEquals(0x5033, (int) loader.getSymbols().get("RDREC"));
+        assertEquals(0x5063, (int) loader.getSymbols().get("WRREC"));
+        byte[] image = loader.getImage();
+        // CLOOP +J RDREC
+        assertEquals(0x3F105033, word(image, 0x4003, 4));
+        // +STCH BUFFER,X of RDREC
+        assertEquals(0x57904033, word(image, 0x5033 + 0x1B, 4));
+        // MAXLEN WORD BUFEND-BUFFER of RDREC
+        assertEquals(4096, word(image, 0x5033 + 0x2D, 3));
+        // +J @RETADR of WRREC
+        assertEquals(0x3E10402D, word(image, 0x5063 + 0x19, 4));
+    }
+
+    private static int word(byte[] image, int address, int length) {
+        int word = 0;
+        for (int i = 0; i < length; i++) {
+            word = word << 8 | image[address + i] & 0xFF;
+        }
+        return word;
+    }
+}
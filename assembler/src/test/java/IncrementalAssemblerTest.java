@@ -0,0 +1,122 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * After every batch of random line edits, the incremental assembler must give the listing and object file of a full
+ * assembly of the edited source. Besides lines of the generated program, the edits put in lines that move the rest of
+ * the program, change a base, an ORG or an EQU, define a label again, end the program early or have errors.
+ */
+public class IncrementalAssemblerTest {
+
+    private static final String[] LINES = {
+            "         BASE    L3",
+            "         BASE    L40",
+            "         NOBASE",
+            "         LDA     NOSUCH",
+            "XX       RESW    1",
+            "L5       WORD    3",
+            "Q        EQU     L3+2",
+            "         ORG     L1",
+            "         END     PROG",
+            "         START   100",
+            "         RMO     A",
+            "         LDA",
+            ". a comment",
+            "",
+    };
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void sameOutputsAsAFullAssembly() throws Exception {
+        for (long seed = 0; seed < 3; seed++) {
+            List<String> generated = Files.readAllLines(TestPrograms.generate(dir, seed, 500).toPath());
+            List<String> source = new ArrayList<>(generated);
+            IncrementalAssembler incremental = new IncrementalAssembler(source);
+            assertSameOutputs(source, incremental.output(), "seed " + seed);
+
+            Random random = new Random(seed);
+            for (int round = 0; round < 100; round++) {
+                List<LineEdit> edits = new ArrayList<>();
+                for (int i = random.nextInt(3); i >= 0; i--) {
+                    edits.add(edit(source, generated, random));
+                }
+                assertSameOutputs(source, incremental.apply(edits), "seed " + seed + " round " + round);
+            }
+        }
+    }
+
+    @Test
+    public void statementsOfAMovedBase() throws Exception {
+        // LDA is base relative, and only refers to the base through the BASE statement
+        List<String> source = new ArrayList<>(Arrays.asList(
+                "PROG     START   0",
+                "        +LDB     #B",
+                "         BASE    B",
+                "         LDA     X",
+                "         RESB    5000",
+                "B        RESW    1",
+                "X        EQU     6000",
+                "         END     PROG"));
+        IncrementalAssembler incremental = new IncrementalAssembler(source);
+        assertSameOutputs(source, incremental.output(), "before");
+        source.set(4, "         RESB    5003");
+        assertSameOutputs(source, incremental.apply(Collections.singletonList(LineEdit.replace(4, source.get(4)))),
+                "after");
+    }
+
+    /**
+     * Makes a random edit of the source, and applies it to the source too.
+     *
+     * @param generated the lines of the generated program, without its START and END, to take lines from.
+     */
+    private static LineEdit edit(List<String> source, List<String> generated, Random random) {
+        int at = random.nextInt(source.size() + 1);
+        String text = random.nextInt(4) == 0
+                ? LINES[random.nextInt(LINES.length)] : generated.get(1 + random.nextInt(generated.size() - 2));
+        switch (at < source.size() ? random.nextInt(4) : 3) {
+            case 0:
+                source.set(at, text);
+                return LineEdit.replace(at, text);
+            case 1:
+                int count = Math.min(1 + random.nextInt(3), source.size() - at);
+                source.subList(at, at + count).clear();
+                return LineEdit.delete(at, count);
+            default:
+                source.add(at, text);
+                return LineEdit.insert(at, text);
+        }
+    }
+
+    private void assertSameOutputs(List<String> source, IncrementalAssembler.Output output, String message)
+            throws Exception {
+        File file = TestPrograms.write(dir, "edited.txt", source.toArray(new String[0]));
+        TestPrograms.assembler(file, dir, "full").assembleFiles();
+        assertEquals(message, new String(TestPrograms.read(dir, "full.lst"), StandardCharsets.UTF_8),
+                output.getListing());
+        assertEquals(message, new String(TestPrograms.read(dir, "full.obj"), StandardCharsets.UTF_8),
+                output.getObject());
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Literals share one entry per value in a pool, placed at LTORG, at the end of each control section and after END.
+ */
+public class LiteralPoolTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void placesAPoolAtLtorgAndAtTheEndOfEachSection() throws Exception {
+        File source = TestPrograms.write(dir, "literals.txt",
+                "COPY     START   0",
+                "         EXTREF  RDREC",
+                "FIRST    LDA     =C'EOF'",
+                "         LDX     =X'05'",
+                "         +LDA    RDREC",
+                "         LTORG",
+                "         LDT     =C'EOF'",
+                "         LDS     =X'05'",
+                "         J       FIRST",
+                "RDREC    CSECT",
+                "         EXTDEF  RDREC",
+                "         LDA     =C'EOF'",
+                "         LDX     =X'01'",
+                "         END     COPY");
+        assertEquals(0, TestPrograms.assembler(source, dir, "literals").assembleFiles().getErrors());
+        assertEquals(""
+                        + "HCOPY  ^000000^00001B\n"
+                        + "RRDREC \n"
+                        // the first pool is at 00000A, after +LDA
+                        + "T000000^0A^03200707200703100000\n"
+                        + "T00000A^03^454F46\n"
+                        + "T00000D^0A^057720066F20063F2FE9\n"
+                        // the pool at the end of the section holds the same values again
+                        + "T000017^03^454F46\n"
+                        + "T00001A^01^05\n"
+                        + "M000007^05^+RDREC\n"
+                        + "E000000\n"
+                        + "HRDREC ^000000^00000A\n"
+                        + "DRDREC ^000000\n"
+                        + "T000000^06^032003072003\n"
+                        + "T000006^03^454F46\n"
+                        + "T000009^01^01\n"
+                        + "E",
+                new String(TestPrograms.read(dir, "literals.obj"), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void everyModePlacesThePoolsAlike() throws Exception {
+        File source = TestPrograms.write(dir, "literals.txt",
+                "COPY     START   0",
+                "FIRST    LDA     =C'EOF'",
+                "         LDX     =X'05'",
+                "         LDA     FIRST",
+                "         LTORG",
+                "         LDT     =C'EOF'",
+                "         LDS     =X'05'",
+                "         J       FIRST",
+                "         END     COPY");
+        TestPrograms.assembler(source, dir, "two").assembleFiles();
+        Assembler compact = TestPrograms.assembler(source, dir, "compact");
+        compact.setCompact(true);
+        compact.assembleFiles();
+        Assembler streaming = TestPrograms.assembler(source, dir, "streaming");
+        streaming.setStreaming(true);
+        streaming.assembleFiles();
+        Assembler onePass = TestPrograms.assembler(source, dir, "one");
+        onePass.setOnePass(true);
+        onePass.assembleFiles();
+
+        for (String mode : new String[]{"compact", "streaming", "one"}) {
+            assertArrayEquals(mode, TestPrograms.read(dir, "two.lst"), TestPrograms.read(dir, mode + ".lst"));
+        }
+        assertArrayEquals(TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "compact.obj"));
+        assertArrayEquals(TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "streaming.obj"));
+        // the one-pass mode patches the references to the pool in later records
+        assertArrayEquals(TestPrograms.load(new File(dir, "two.obj")).getImage(),
+                TestPrograms.load(new File(dir, "one.obj")).getImage());
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The one-pass mode patches forward references into records written after them, the program it loads must be the
+ * one of the two-pass assembler, and so must the listing of a program without errors.
+ */
+public class OnePassTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void loadsTheImageOfTwoPasses() throws Exception {
+        for (long seed = 0; seed < 20; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setForwardRefDensity(seed % 2 == 0 ? 0.5 : 0);
+            assertSameProgram(TestPrograms.generate(dir, generator, seed, 1000));
+        }
+    }
+
+    @Test
+    public void forwardReferencesAcrossTextRecords() throws Exception {
+        // The first records are written out before FAR is defined, so its uses are patched by records of their own.
+        String[] lines = new String[40];
+        lines[0] = "PROG     START   1000";
+        lines[1] = "FIRST    +LDA    FAR";
+        for (int i = 2; i < 36; i++) {
+            lines[i] = "         +STA    FAR";
+        }
+        lines[36] = "         J       @FARPTR";
+        lines[37] = "FAR      WORD    7";
+        lines[38] = "FARPTR   WORD    FAR";
+        lines[39] = "         END     PROG";
+        assertSameProgram(TestPrograms.write(dir, "forward.txt", lines));
+    }
+
+    @Test
+    public void wordForwardReferences() throws Exception {
+        // each WORD starts a record, so BAR is written out before GAMMA is defined and patched by a record of its own
+        assertSameProgram(TestPrograms.write(dir, "word.txt",
+                "PROG     START   1000",
+                "FIRST    LDA     BAR",
+                "BAR      WORD    GAMMA-ALPHA",
+                "BAZ      WORD    GAMMA",
+                "ALPHA    WORD    3",
+                "GAMMA    WORD    9",
+                "         END     PROG"));
+    }
+
+    @Test
+    public void wordOfAnUndefinedSymbol() throws Exception {
+        File source = TestPrograms.write(dir, "undefined.txt",
+                "PROG     START   1000",
+                "BAR      WORD    NOPE-1",
+                "         END     PROG");
+        assertEquals(1, TestPrograms.assembler(source, dir, "two").assembleFiles().getErrors());
+        Assembler onePass = TestPrograms.assembler(source, dir, "one");
+        onePass.setOnePass(true);
+        assertEquals(1, onePass.assembleFiles().getErrors());
+        assertArrayEquals(TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "one.obj"));
+    }
+
+    private void assertSameProgram(File source) throws Exception {
+        String name = source.getName();
+        TestPrograms.assembler(source, dir, "two").assembleFiles();
+        Assembler onePass = TestPrograms.assembler(source, dir, "one");
+        onePass.setOnePass(true);
+        onePass.assembleFiles();
+
+        LinkingLoader two = TestPrograms.load(new File(dir, "two.obj"));
+        LinkingLoader one = TestPrograms.load(new File(dir, "one.obj"));
+        assertEquals(name, Collections.emptyList(), two.getErrors());
+        assertEquals(name, Collections.emptyList(), one.getErrors());
+        assertArrayEquals(name, two.getImage(), one.getImage());
+        assertEquals(name, two.getEntry(), one.getEntry());
+        assertArrayEquals(name, TestPrograms.read(dir, "two.lst"), TestPrograms.read(dir, "one.lst"));
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Pass 2 on several cores must write the object file and listing of the serial loop, also where a chunk starts
+ * right after a reserved area or an ORG, which the text record before the cut has to end at.
+ */
+public class ParallelEncoderTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void sameOutputsAsTheSerialLoop() throws Exception {
+        File generated = TestPrograms.generate(dir, 12, 3 * ParallelEncoder.CHUNK_SIZE);
+        List<String> lines = new ArrayList<>(Files.readAllLines(generated.toPath()));
+        // The chunks start at the first data directive from every CHUNK_SIZE statements, one line per statement:
+        // the second chunk starts after a RESW, the third after a RESB and an ORG.
+        lines.addAll(2 * ParallelEncoder.CHUNK_SIZE, Arrays.asList(
+                "CUTB     RESB    3",
+                "         ORG     CUTB",
+                "         BYTE    X'0A0B0C'"));
+        lines.addAll(ParallelEncoder.CHUNK_SIZE, Arrays.asList(
+                "CUTW     RESW    1",
+                "         WORD    7"));
+        File source = TestPrograms.write(dir, "cuts.txt", lines.toArray(new String[0]));
+
+        for (File program : new File[]{generated, source}) {
+            Assembler serial = TestPrograms.assembler(program, dir, "serial");
+            serial.setParallelism(1);
+            assertEquals(program.getName(), 0, serial.assembleFiles().getErrors());
+            Assembler parallel = TestPrograms.assembler(program, dir, "parallel");
+            parallel.setParallelism(4);
+            assertEquals(program.getName(), 0, parallel.assembleFiles().getErrors());
+
+            assertArrayEquals(program.getName(), TestPrograms.read(dir, "serial.obj"),
+                    TestPrograms.read(dir, "parallel.obj"));
+            assertArrayEquals(program.getName(), TestPrograms.read(dir, "serial.lst"),
+                    TestPrograms.read(dir, "parallel.lst"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pass 1 on several cores must find the errors, addresses and symbols of the serial pass, on a program large enough
+ * to be read in parallel with errors on both sides of the chunk boundaries, and a label defined again two chunks
+ * after its first definition.
+ */
+public class ParallelFirstPassTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void sameOutputsAsTheSerialPass() throws Exception {
+        File source = programWithErrors();
+        assertTrue(source.length() >= Assembler.PARALLEL_THRESHOLD);
+        assertSameOutputs(source, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void sameOutputsAfterTooManyErrors() throws Exception {
+        File source = programWithErrors();
+        // stops in the second chunk
+        assertSameOutputs(source, 3);
+    }
+
+    /**
+     * A generated program of three chunks, with EQU and ORG, and errors inserted at the chunk boundaries.
+     */
+    private File programWithErrors() throws Exception {
+        File generated = TestPrograms.generate(dir, 13, 3 * ParallelFirstPass.CHUNK_SIZE);
+        List<String> lines = new ArrayList<>(Files.readAllLines(generated.toPath()));
+        String first = label(lines, 0, 1);
+        String last = label(lines, lines.size() - 1, -1);
+
+        int size = ParallelFirstPass.CHUNK_SIZE;
+        lines.addAll(2 * size + 100, Arrays.asList(
+                String.format("%-9sWORD    1", first),
+                "         BASE    NOSUCH"));
+        lines.addAll(2 * size, Arrays.asList(
+                "         ORG     " + last,
+                "SAVE     RESW    2",
+                "         ORG     SAVE",
+                "FIELD    RESB    3",
+                "         ORG     SAVE+6"));
+        lines.addAll(size, Arrays.asList(
+                "FORWARD  EQU     " + last,
+                "         BYTE    X'0G'"));
+        lines.addAll(size - 1, Arrays.asList(
+                "         LDA     NOSUCH",
+                "         FOO     " + first));
+        return TestPrograms.write(dir, "errors.txt", lines.toArray(new String[0]));
+    }
+
+    /**
+     * @return the label of the first line from index on in the given direction that has one.
+     */
+    private static String label(List<String> lines, int index, int direction) {
+        for (int i = index; ; i += direction) {
+            String line = lines.get(i);
+            if (line.startsWith("L")) {
+                return line.substring(0, line.indexOf(' '));
+            }
+        }
+    }
+
+    private void assertSameOutputs(File source, long maxErrors) throws Exception {
+        Assembler serial = TestPrograms.assembler(source, dir, "serial");
+        serial.setParallelism(1);
+        serial.setMaxErrors(maxErrors);
+        long errors = serial.assembleFiles().getErrors();
+        Assembler parallel = TestPrograms.assembler(source, dir, "parallel");
+        parallel.setParallelism(4);
+        parallel.setMaxErrors(maxErrors);
+
+        assertTrue(errors > 0);
+        assertEquals(errors, parallel.assembleFiles().getErrors());
+        assertArrayEquals(TestPrograms.read(dir, "serial.lst"), TestPrograms.read(dir, "parallel.lst"));
+        assertArrayEquals(TestPrograms.read(dir, "serial.obj"), TestPrograms.read(dir, "parallel.obj"));
+    }
+}
@@ -0,0 +1,170 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Programs run by the {@link Simulator}: the loop of the simulator benchmark assembled and loaded, and images written
+ * in hex for what the assembler can not write, {@code JSUB} and {@code RSUB}, which are not in its table.
+ */
+public class SimulatorTest {
+
+    private static final long MAX_INSTRUCTIONS = 10_000_000;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void runsAnAssembledProgram() throws Exception {
+        File source = TestPrograms.write(dir, "loop.txt",
+                "LOOP     START   0",
+                "         EXTDEF  DONE,COUNT,BUF",
+                "         LDT     #4095",
+                "OUTER    LDX     #0",
+                "INNER    LDCH    BUF,X",
+                "         ADD     #1",
+                "         STCH    BUF,X",
+                "         TIXR    T",
+                "         JLT     INNER",
+                "         LDA     COUNT",
+                "         SUB     #1",
+                "         STA     COUNT",
+                "         COMP    #0",
+                "         JGT     OUTER",
+                "DONE     J       DONE",
+                "COUNT    WORD    10",
+                "BUF      RESB    4096",
+                "         END     LOOP");
+        assertEquals(0, TestPrograms.assembler(source, dir, "loop").assembleFiles().getErrors());
+        LinkingLoader loader = TestPrograms.load(new File(dir, "loop.obj"));
+        int done = loader.getSymbols().get("DONE");
+        int count = loader.getSymbols().get("COUNT");
+        int buffer = loader.getSymbols().get("BUF");
+
+        Simulator simulator = run(loader.getImage(), loader.getEntry());
+        assertEquals(String.format("idle loop at %06X", done), simulator.getStatus());
+        assertEquals(done, simulator.getRegister(Simulator.PC));
+        byte[] memory = simulator.getMemory();
+        assertEquals(0, word(memory, count));
+        // TIXR T stops before the last byte
+        for (int i = 0; i < 4096; i++) {
+            assertEquals("BUF+" + i, i < 4095 ? 10 : 0, memory[buffer + i]);
+        }
+    }
+
+    @Test
+    public void returnsToTheCaller() throws Exception {
+        // +JSUB 000008, J *, a byte of padding, then the subroutine: LDA #5, RSUB
+        Simulator simulator = run(hex("4B100008 3F2FFD 00 010005 4F0000"), 0);
+        assertEquals("idle loop at 000004", simulator.getStatus());
+        assertEquals(5, simulator.getRegister(Simulator.A));
+        assertEquals(4, simulator.getRegister(Simulator.L));
+
+        // RSUB with the L the program started with
+        simulator = run(hex("4F0000"), 0);
+        assertEquals("returned", simulator.getStatus());
+        assertEquals(Simulator.HALT, simulator.getRegister(Simulator.PC));
+    }
+
+    @Test
+    public void runsTheInstructionsItOverwrites() throws Exception {
+        // +JSUB 000010 runs LDX #7 and RSUB at 10, then the program copies the J * at 16 over the LDX at 10,
+        // which was decoded, and jumps to it
+        Simulator simulator = run(hex("4B100010 030016 0F0010 3F0010 000000 050007 4F0000 3F2FFD"), 0);
+        assertEquals("idle loop at 000010", simulator.getStatus());
+        assertEquals(7, simulator.getRegister(Simulator.X));
+        assertEquals(0x3F2FFD, simulator.getRegister(Simulator.A));
+    }
+
+    @Test
+    public void addressesMemory() throws Exception {
+        // LDA @9, where 9 holds the address C
+        assertEquals(0x123456, run(hex("022006 3F2FFD 000000 00000C 123456"), 0).getRegister(Simulator.A));
+        // LDB #C, then LDA 0 from the base
+        assertEquals(0xABCDEF, run(hex("69000C 034000 3F2FFD 000000 ABCDEF"), 0).getRegister(Simulator.A));
+        // LDX #3, then the SIC instruction LDA C,X
+        assertEquals(0x111111, run(hex("050003 00800C 3F2FFD 000000 000000 111111 222222"), 0)
+                .getRegister(Simulator.A));
+    }
+
+    @Test
+    public void runsRegisterInstructions() throws Exception {
+        // LDA #5, LDS #3, ADDR A,S, MULR S,A, SHIFTL A,4, SHIFTR A,2, DIVR S,A, COMPR A,S, CLEAR S
+        Simulator simulator = run(hex("010005 6D0003 9004 9840 A403 A801 9C40 A004 B440 3F2FFD"), 0);
+        assertEquals(0x14, simulator.getRegister(Simulator.A));
+        assertEquals(0, simulator.getRegister(Simulator.S));
+        // greater than
+        assertEquals(0x020000, simulator.getRegister(Simulator.SW));
+    }
+
+    @Test
+    public void convertsFloats() throws Exception {
+        assertEquals(0x401800000000L, Simulator.fromDouble(1));
+        for (double value : new double[]{1, 0.5, -3.25, 1e10, -1e-10, 123456.789}) {
+            assertEquals(value, Simulator.toDouble(Simulator.fromDouble(value)), Math.abs(value) * 1e-10);
+        }
+
+        // LDA #7, FLOAT, FIX
+        Simulator simulator = run(hex("010007 C0 C4 3F2FFD"), 0);
+        assertEquals(7, simulator.getRegister(Simulator.A));
+        assertEquals(0x403E00000000L, simulator.getRegister(Simulator.F));
+    }
+
+    @Test
+    public void readsAndWritesDevices() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Simulator simulator = new Simulator(new ByteArrayInputStream("Z".getBytes(StandardCharsets.US_ASCII)), output);
+        // RD 0, WD 0
+        simulator.load(hex("DB0000 DF0000 3F2FFD"), 0);
+        simulator.run(MAX_INSTRUCTIONS);
+        assertEquals("Z", new String(output.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void stopsOnInstructionsThatCanNotRun() throws Exception {
+        // DIV #0
+        assertEquals("division by zero at 000000", run(hex("250000 3F2FFD"), 0).getStatus());
+        assertEquals("illegal instruction FF at 000000", run(hex("FF0000"), 0).getStatus());
+        // LDA #1, J 0, which never stops
+        Simulator simulator = new Simulator(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+        simulator.load(hex("010001 3F2FFA"), 0);
+        assertEquals(100, simulator.run(100));
+        assertEquals("instruction limit reached", simulator.getStatus());
+    }
+
+    private static Simulator run(byte[] image, int entry) throws IOException {
+        Simulator simulator = new Simulator(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+        simulator.load(image, entry);
+        simulator.run(MAX_INSTRUCTIONS);
+        return simulator;
+    }
+
+    private static byte[] hex(String hex) {
+        hex = hex.replace(" ", "");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static int word(byte[] memory, int address) {
+        return (memory[address] & 0xFF) << 16 | (memory[address + 1] & 0xFF) << 8 | memory[address + 2] & 0xFF;
+    }
+}
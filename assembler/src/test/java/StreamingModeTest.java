@@ -0,0 +1,78 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The streaming mode checks, lists and encodes in a single pass over its intermediate file, its listing and object
+ * file must be those of the two-pass mode, also when only one of them is written.
+ */
+public class StreamingModeTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void sameOutputsAsTwoPasses() throws Exception {
+        List<File> sources = TestPrograms.sources();
+        for (long seed = 0; seed < 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setForwardRefDensity(seed % 2 == 0 ? 0.5 : 0);
+            sources.add(TestPrograms.generate(dir, generator, seed, 2000));
+        }
+        for (File source : sources) {
+            assertSameOutputs(source, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void sameOutputsAfterTooManyErrors() throws Exception {
+        for (File source : TestPrograms.sources()) {
+            assertSameOutputs(source, 2);
+        }
+    }
+
+    @Test
+    public void sameObjectWithoutTheListing() throws Exception {
+        for (File source : TestPrograms.sources()) {
+            TestPrograms.assembler(source, dir, "two").assembleFiles();
+            Assembler streaming = TestPrograms.assembler(source, dir, "streaming");
+            streaming.setStreaming(true);
+            streaming.setOutputs(false, true);
+            streaming.assembleFiles();
+
+            String name = source.getName();
+            assertArrayEquals(name, TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "streaming.obj"));
+            assertFalse(name, new File(dir, "streaming.lst").exists());
+        }
+    }
+
+    private void assertSameOutputs(File source, long maxErrors) throws Exception {
+        Assembler twoPass = TestPrograms.assembler(source, dir, "two");
+        twoPass.setMaxErrors(maxErrors);
+        long errors = twoPass.assembleFiles().getErrors();
+        Assembler streaming = TestPrograms.assembler(source, dir, "streaming");
+        streaming.setStreaming(true);
+        streaming.setMaxErrors(maxErrors);
+
+        String name = source.getName();
+        assertEquals(name, errors, streaming.assembleFiles().getErrors());
+        assertArrayEquals(name, TestPrograms.read(dir, "two.lst"), TestPrograms.read(dir, "streaming.lst"));
+        assertArrayEquals(name, TestPrograms.read(dir, "two.obj"), TestPrograms.read(dir, "streaming.obj"));
+    }
+}
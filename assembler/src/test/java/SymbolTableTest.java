@@ -0,0 +1,77 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Definition of symbols apart from their values, which can be any int.
+ */
+public class SymbolTableTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestPrograms.temporaryDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        TestPrograms.delete(dir);
+    }
+
+    @Test
+    public void keepsEveryValue() {
+        SymbolTable symtable = new SymbolTable();
+        int id = symtable.intern("X");
+        assertFalse(symtable.isDefined(id));
+        assertFalse(symtable.contains("Y"));
+
+        symtable.put("X", Integer.MIN_VALUE);
+        symtable.put("Y", 0);
+        assertTrue(symtable.isDefined(id));
+        assertEquals(Integer.MIN_VALUE, symtable.get("X"));
+        assertEquals(Integer.MIN_VALUE, symtable.valueOf(id));
+        assertEquals(2, symtable.size());
+
+        symtable.remove("X");
+        assertFalse(symtable.contains("X"));
+        symtable.put("X", 1);
+        assertEquals(Arrays.asList("Y", "X"), symtable.symbols());
+    }
+
+    @Test
+    public void restoresInTheFirstOrder() {
+        SymbolTable symtable = new SymbolTable();
+        symtable.put("X", 0);
+        symtable.put("Y", 0);
+        int id = symtable.idOf("X");
+
+        symtable.remove(id);
+        assertFalse(symtable.isDefined(id));
+        symtable.restore(id, 5);
+        assertEquals(5, symtable.valueOf(id));
+        assertEquals(2, symtable.size());
+        assertEquals(Arrays.asList("X", "Y"), symtable.symbols());
+    }
+
+    @Test
+    public void assemblesTheSmallestValue() throws Exception {
+        File source = TestPrograms.write(dir, "min.txt",
+                "PROG     START   0",
+                "X        EQU     0-2147483647-1",
+                "Y        EQU     X+2147483647",
+                "         WORD    Y",
+                "         END     PROG");
+        assertEquals(0, TestPrograms.assembler(source, dir, "min").assembleFiles().getErrors());
+        byte[] image = TestPrograms.load(new File(dir, "min.obj")).getImage();
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF}, Arrays.copyOf(image, 3));
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The programs the tests assemble: {@code source.txt} and the files under {@code test files/}, found from the module
+ * directory surefire runs in or from the repository root, and programs made by {@link ProgramGenerator}.
+ */
+final class TestPrograms {
+
+    private TestPrograms() {
+        // Prevents instantiation.
+    }
+
+    static File root() {
+        for (File dir : new File[]{new File(".."), new File(".")}) {
+            if (new File(dir, "test files").isDirectory()) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("test files/ not found from " + new File(".").getAbsolutePath());
+    }
+
+    static List<File> sources() {
+        File root = root();
+        List<File> sources = new ArrayList<>();
+        sources.add(new File(root, "source.txt"));
+        File[] files = new File(root, "test files").listFiles();
+        Arrays.sort(files);
+        sources.addAll(Arrays.asList(files));
+        return sources;
+    }
+
+    static File generate(File dir, long seed, int lines) throws IOException {
+        return generate(dir, new ProgramGenerator(), seed, lines);
+    }
+
+    static File generate(File dir, ProgramGenerator generator, long seed, int lines) throws IOException {
+        File file = new File(dir, "generated" + seed + ".txt");
+        generator.setSeed(seed);
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            generator.generate(lines, writer);
+        }
+        return file;
+    }
+
+    static File write(File dir, String name, String... lines) throws IOException {
+        File file = new File(dir, name);
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns an assembler of {@code source} writing {@code <name>.lst} and {@code <name>.obj} in {@code dir}.
+     */
+    static Assembler assembler(File source, File dir, String name) {
+        return new Assembler(source.getPath(), new File(dir, name + ".lst").getPath(),
+                new File(dir, name + ".obj").getPath());
+    }
+
+    /**
+     * Links an object file alone at the address of its first section.
+     */
+    static LinkingLoader load(File object) throws IOException {
+        LinkingLoader loader = new LinkingLoader(-1, 1);
+        loader.load(Collections.singletonList(object));
+        return loader;
+    }
+
+    static byte[] read(File dir, String file) throws IOException {
+        return Files.readAllBytes(new File(dir, file).toPath());
+    }
+
+    static File temporaryDirectory() throws IOException {
+        return Files.createTempDirectory("sicxe-test").toFile();
+    }
+
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
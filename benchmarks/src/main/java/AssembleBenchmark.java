@@ -0,0 +1,63 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole program assembly: the sample programs under {@code test files/} and larger synthetic programs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssembleBenchmark {
+
+    /**
+     * A file under {@code test files/}, or {@code synthetic:N} for a generated program of N statements.
+     */
+    @Param({"test files/srcfile.txt", "test files/EQU test.txt", "test files/ORG test.txt",
+            "test files/reg test.txt", "synthetic:10000", "synthetic:100000", "synthetic:1000000"})
+    public String program;
+
+    private Assembler assembler;
+    private AssemblyContext pass1;
+
+    @Setup
+    public void setUp() throws IOException {
+        File source;
+        if (program.startsWith("synthetic:")) {
+            source = SyntheticProgram.write(Integer.parseInt(program.substring("synthetic:".length())));
+        } else {
+            source = new File(program);
+        }
+        File list = File.createTempFile("bench", ".lst");
+        File object = File.createTempFile("bench", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+        assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+
+        pass1 = new AssemblyContext();
+        assembler.firstPass(pass1);
+    }
+
+    @Benchmark
+    public void assemble() {
+        assembler.assemble();
+    }
+
+    @Benchmark
+    public AssemblyContext firstPass() throws IOException {
+        AssemblyContext context = new AssemblyContext();
+        assembler.firstPass(context);
+        return context;
+    }
+
+    @Benchmark
+    public AssemblyContext secondPass() throws IOException {
+        assembler.secondPass(pass1);
+        return pass1;
+    }
+}
@@ -0,0 +1,142 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenizing the lines of a 1M line program, with their operands stripped of the addressing prefix and cut to their
+ * first term, through {@link Lexer} and {@link Operand#indexOfOperator}, and with the {@code split("\\s+|,")} of each
+ * line and the {@code split} calls on each operand that {@link Statement} and {@link Operand} used to make. Both
+ * find the mnemonic with {@link Tables#lookupMnemonic}, so only the splitting differs.
+ * <p>
+ * {@link #main} prints the time of both over the whole program, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar LexerBenchmark 1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"lexer", "split"})
+    public String tokenizer;
+
+    private String[] program;
+
+    @Setup
+    public void setUp() throws IOException {
+        program = program(lines);
+    }
+
+    private static String[] program(int lines) throws IOException {
+        List<String> program = new ArrayList<>();
+        for (String line : SyntheticProgram.lines(lines)) {
+            if (!line.startsWith(".")) {
+                program.add(line);
+            }
+        }
+        return program.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public int tokenizeAll() {
+        return tokenizer.equals("lexer") ? lexer(program) : split(program);
+    }
+
+    /**
+     * @return the total length of the tokens and of the first terms of the operands.
+     */
+    private static int lexer(String[] program) {
+        int length = 0;
+        for (String line : program) {
+            Lexer tokens = new Lexer(line);
+            for (int i = 0; i < 2; i++) {
+                if (tokens.startsWith(i, '+')) {
+                    tokens.skipFirst(i);
+                }
+            }
+            int first = Tables.lookupMnemonic(tokens.get(0)) != null ? 1 : 2;
+            for (int i = 0; i < tokens.count(); i++) {
+                String token = tokens.get(i);
+                length += token.length();
+                if (i >= first) {
+                    String operand = token.startsWith("@") || token.startsWith("#") ? token.substring(1) : token;
+                    int operator = Operand.indexOfOperator(operand, 0);
+                    length += operator != -1 ? operator : operand.length();
+                }
+            }
+        }
+        return length;
+    }
+
+    private static int split(String[] program) {
+        int length = 0;
+        for (String line : program) {
+            String[] tokens = line.split("\\s+|,");
+            for (int i = 0; i < Math.min(2, tokens.length); i++) {
+                if (tokens[i].startsWith("+")) {
+                    tokens[i] = tokens[i].substring(1);
+                }
+            }
+            int first = Tables.lookupMnemonic(tokens[0]) != null ? 1 : 2;
+            for (int i = 0; i < tokens.length; i++) {
+                length += tokens[i].length();
+                if (i >= first) {
+                    length += firstTerm(tokens[i]).length();
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The splitting of the constructor of {@link Operand} before the lexer.
+     */
+    private static String firstTerm(String line) {
+        boolean expression = line.contains("+") || line.contains("-") || line.contains("*") || line.contains("/");
+        String filteredLine;
+        if (line.startsWith("@")) {
+            filteredLine = line.split("@")[1];
+        } else if (line.startsWith("#")) {
+            filteredLine = line.split("#")[1];
+        } else {
+            filteredLine = line;
+        }
+        if (expression) {
+            String[] terms = filteredLine.split("[+\\-*/]");
+            filteredLine = terms.length > 0 ? terms[0] : "";
+        }
+        return filteredLine;
+    }
+
+    /**
+     * Prints the best time of ten rounds of each tokenizer over the whole program, as CSV
+     * ({@code lines,tokenizer,ms}).
+     */
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] program = program(lines);
+        System.out.println("lines,tokenizer,ms");
+        int[] lengths = new int[2];
+        String[] tokenizers = {"lexer", "split"};
+        for (int t = 0; t < tokenizers.length; t++) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 10; i++) {
+                long start = System.nanoTime();
+                lengths[t] = tokenizers[t].equals("lexer") ? lexer(program) : split(program);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%d,%s,%.1f%n", lines, tokenizers[t], best / 1e6);
+        }
+        if (lengths[0] != lengths[1]) {
+            throw new IllegalStateException("the tokenizers disagree: " + lengths[0] + " and " + lengths[1]);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linking and loading programs of 100 to 10K modules, an object file each, by number of threads. Every module
+ * exports a symbol and refers to the ones of its two neighbours, so each link resolves a few modification records
+ * per module; the time per module should stay flat as the modules grow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkBenchmark {
+
+    // local statements per module, 10K modules have to fit in the 1 MB of memory
+    private static final int STATEMENTS = 16;
+
+    @Param({"100", "1000", "10000"})
+    public int modules;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final List<File> objectFiles = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = Files.createTempDirectory("link").toFile();
+        directory.deleteOnExit();
+        for (int i = 0; i < modules; i++) {
+            File source = new File(directory, "m" + i + ".txt");
+            File object = new File(directory, "m" + i + ".obj");
+            source.deleteOnExit();
+            object.deleteOnExit();
+            try (Writer writer = new FileWriter(source)) {
+                writeModule(writer, i);
+            }
+            Assembler assembler = new Assembler(source.getPath(), "unused", object.getPath());
+            assembler.setParallelism(1);
+            assembler.setOutputs(false, true);
+            assembler.assembleFiles();
+            objectFiles.add(object);
+        }
+    }
+
+    private void writeModule(Writer writer, int i) throws IOException {
+        String next = "E" + (i + 1) % modules;
+        String previous = "E" + (i + modules - 1) % modules;
+        writer.write("M" + i + " START 0\n");
+        writer.write(" EXTDEF E" + i + "\n");
+        writer.write(" EXTREF " + next + (next.equals(previous) ? "" : "," + previous) + "\n");
+        writer.write("E" + i + " +LDA " + next + "\n");
+        for (int j = 0; j < STATEMENTS; j++) {
+            writer.write(j % 2 == 0 ? " LDA DATA\n" : " +STA DATA,X\n");
+        }
+        writer.write(" +STA " + previous + "\n");
+        writer.write("DATA WORD " + next + "-" + previous + "\n");
+        writer.write(" END M" + i + "\n");
+    }
+
+    @Benchmark
+    public LinkingLoader link() throws IOException {
+        LinkingLoader loader = new LinkingLoader(0, parallelism);
+        loader.load(objectFiles);
+        return loader;
+    }
+}
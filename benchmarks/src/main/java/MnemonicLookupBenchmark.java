@@ -0,0 +1,103 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the mnemonic candidates of a 1M line program, the first two tokens of every line, through the index of
+ * {@link Tables#lookupMnemonic} and with the linear {@code equalsIgnoreCase} scan of the operation table that
+ * {@link Statement} used to make twice per line.
+ * <p>
+ * {@link #main} prints the time of both over the whole program, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar MnemonicLookupBenchmark 1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MnemonicLookupBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"index", "scan"})
+    public String lookup;
+
+    private String[] tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        tokens = tokens(lines);
+    }
+
+    private static String[] tokens(int lines) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (String line : SyntheticProgram.lines(lines)) {
+            if (line.startsWith(".")) {
+                continue;
+            }
+            String[] fields = line.trim().split("\\s+");
+            for (int i = 0; i < Math.min(2, fields.length); i++) {
+                tokens.add(fields[i]);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public int lookupAll() {
+        return lookup.equals("index") ? index(tokens) : scan(tokens);
+    }
+
+    private static int index(String[] tokens) {
+        int found = 0;
+        for (String token : tokens) {
+            if (Tables.lookupMnemonic(token) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static int scan(String[] tokens) {
+        List<Mnemonic> table = Tables.getOperationTable();
+        int found = 0;
+        for (String token : tokens) {
+            for (int i = 0; i < table.size(); i++) {
+                if (token.equalsIgnoreCase(table.get(i).getString())) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Prints the best time of ten rounds of each lookup over the whole program, as CSV
+     * ({@code lines,tokens,lookup,ms}).
+     */
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] tokens = tokens(lines);
+        System.out.println("lines,tokens,lookup,ms");
+        for (String lookup : new String[]{"index", "scan"}) {
+            long best = Long.MAX_VALUE;
+            int found = 0;
+            for (int i = 0; i < 10; i++) {
+                long start = System.nanoTime();
+                found += lookup.equals("index") ? index(tokens) : scan(tokens);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%d,%d,%s,%.1f%n", lines, tokens.length, lookup, best / 1e6);
+            if (found == 42) {
+                // keeps the lookups from being optimized away
+                System.out.println();
+            }
+        }
+    }
+}
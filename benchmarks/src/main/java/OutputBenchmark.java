@@ -0,0 +1,47 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole assembly by selected outputs, with the outputs written on the assembling thread or on their own
+ * ({@link Assembler#setConcurrentOutput}). The concurrent output only pays off with a spare core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int statements;
+
+    @Param({"both", "object", "listing"})
+    public String output;
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private Assembler assembler;
+
+    @Setup
+    public void setUp() throws IOException {
+        File source = SyntheticProgram.write(statements);
+        File list = File.createTempFile("bench", ".lst");
+        File object = File.createTempFile("bench", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+        assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+        assembler.setParallelism(1);
+        assembler.setOutputs(!output.equals("object"), !output.equals("listing"));
+        assembler.setConcurrentOutput(concurrent);
+    }
+
+    @Benchmark
+    public AssemblyMetrics assemble() throws IOException {
+        return assembler.assembleFiles();
+    }
+}
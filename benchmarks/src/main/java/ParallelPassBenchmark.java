@@ -0,0 +1,55 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both passes of a large synthetic program by number of threads, 1 being the serial loops.
+ * The speed-up is the ratio of the {@code parallelism=1} score to the others, so run it on a machine with
+ * at least as many cores as the largest parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+public class ParallelPassBenchmark {
+
+    @Param({"2000000", "5000000"})
+    public int statements;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    private Assembler assembler;
+    private AssemblyContext pass1;
+
+    @Setup
+    public void setUp() throws IOException {
+        File source = SyntheticProgram.write(statements);
+        File list = File.createTempFile("bench", ".lst");
+        File object = File.createTempFile("bench", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+        assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+        assembler.setParallelism(parallelism);
+
+        pass1 = new AssemblyContext();
+        assembler.firstPass(pass1);
+    }
+
+    @Benchmark
+    public AssemblyContext firstPass() throws IOException {
+        AssemblyContext context = new AssemblyContext();
+        assembler.firstPass(context);
+        return context;
+    }
+
+    @Benchmark
+    public AssemblyContext secondPass() throws IOException {
+        assembler.secondPass(pass1);
+        return pass1;
+    }
+}
@@ -0,0 +1,91 @@
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Symbol lookup, by name and by id, expression evaluation and instruction encoding over the statements of a program
+ * that already went through pass 1, which bound their operands to the ids of their symbols.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassBenchmark {
+
+    private AssemblyContext context;
+    private Statement[] instructions;
+    private String[] labels;
+    private int[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        File source = SyntheticProgram.write(10_000);
+        File list = File.createTempFile("bench", ".lst");
+        File object = File.createTempFile("bench", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+
+        Assembler assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+        context = new AssemblyContext();
+        assembler.firstPass(context);
+
+        List<Statement> statements = context.getStatements();
+        instructions = statements.stream()
+                .filter(s -> !s.isComment() && s.getMnemonic() != null && !s.getMnemonic().isDirective()
+                        && !s.getMnemonic().isRegisterType())
+                .toArray(Statement[]::new);
+        labels = context.getSymbolTable().symbols().toArray(new String[0]);
+        ids = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            ids[i] = context.getSymbolTable().intern(labels[i]);
+        }
+    }
+
+    private int next(int length) {
+        next = next + 1 >= length ? 0 : next + 1;
+        return next;
+    }
+
+    @Benchmark
+    public int symbolLookup() {
+        return context.getSymbolTable().get(labels[next(labels.length)]);
+    }
+
+    @Benchmark
+    public int symbolLookupById() {
+        return context.getSymbolTable().valueOf(ids[next(ids.length)]);
+    }
+
+    @Benchmark
+    public Expression compileExpression() {
+        return Expression.compile(instructions[next(instructions.length)].getFirstOperand().getFilteredLine2());
+    }
+
+    @Benchmark
+    public int evaluateExpression() {
+        Expression expression = instructions[next(instructions.length)].getFirstOperand().getExpression();
+        expression.forget();
+        return expression.evaluate(context.getSymbolTable()) ? expression.getValue() : 0;
+    }
+
+    @Benchmark
+    public int evaluateExpressionCached() {
+        Statement statement = instructions[next(instructions.length)];
+        return Assembler.evaluateExpression(statement, context.getSymbolTable())
+                ? statement.getFirstOperand().getExpression().getValue() : 0;
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        Statement statement = instructions[next(instructions.length)];
+        Assembler.encode(statement, context.getSymbolTable());
+        blackhole.consume(statement.getInstruction());
+    }
+}
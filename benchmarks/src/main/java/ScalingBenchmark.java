@@ -0,0 +1,78 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Assembles generated programs of growing size and reports wall time and peak heap for each.
+ * <p>
+ * Usage: {@code ScalingBenchmark [lines...]}, by default 1K to 10M lines. Every size runs in memory, in compact mode
+ * and in streaming mode. Results are printed as CSV ({@code lines,mode,millis,peakHeapMB,result}); a run that
+ * exhausts the heap is reported as {@code OOM} instead of stopping the benchmark.
+ * Peak heap is the sum of the peaks of the heap memory pools, so it is an upper bound.
+ * Start it from the repository root with a fixed heap, e.g. {@code java -Xmx4g -cp benchmarks.jar ScalingBenchmark}.
+ */
+public class ScalingBenchmark {
+
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        File list = File.createTempFile("scaling", ".lst");
+        File object = File.createTempFile("scaling", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+
+        System.out.println("lines,mode,millis,peakHeapMB,result");
+        for (int lines : sizes) {
+            File source = SyntheticProgram.write(lines);
+            for (String mode : new String[]{"memory", "compact", "streaming"}) {
+                Assembler assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+                assembler.setCompact(mode.equals("compact"));
+                assembler.setStreaming(mode.equals("streaming"));
+
+                System.gc();
+                resetPeakHeap();
+                String result = "ok";
+                long start = System.nanoTime();
+                try {
+                    assembler.assemble();
+                } catch (OutOfMemoryError e) {
+                    result = "OOM";
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("%d,%s,%d,%.1f,%s%n", lines, mode, millis,
+                        peakHeap() / (1024.0 * 1024.0), result);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            source.delete();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
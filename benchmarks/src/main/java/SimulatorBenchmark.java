@@ -0,0 +1,105 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Simulator} running an assembled program: an inner loop that increments the bytes of a 4K buffer, with
+ * loads, stores, which drop decoded instructions, and a compare and jump per byte, repeated 100 and 1000 times, about
+ * 20K instructions a pass.
+ * <p>
+ * {@link #main} prints the MIPS, e.g. {@code java -cp benchmarks/target/benchmarks.jar SimulatorBenchmark 10000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark {
+
+    @Param({"100", "1000"})
+    public int passes;
+
+    private byte[] image;
+    private int entry;
+    private Simulator simulator;
+
+    @Setup
+    public void setUp() throws IOException {
+        LinkingLoader loader = assemble(passes);
+        image = loader.getImage();
+        entry = loader.getEntry();
+        simulator = newSimulator();
+    }
+
+    private static LinkingLoader assemble(int passes) throws IOException {
+        File source = File.createTempFile("simulate", ".txt");
+        File object = File.createTempFile("simulate", ".obj");
+        source.deleteOnExit();
+        object.deleteOnExit();
+        try (Writer writer = new FileWriter(source)) {
+            writer.write("LOOP     START   0\n");
+            writer.write("         LDT     #4095\n");
+            writer.write("OUTER    LDX     #0\n");
+            writer.write("INNER    LDCH    BUF,X\n");
+            writer.write("         ADD     #1\n");
+            writer.write("         STCH    BUF,X\n");
+            writer.write("         TIXR    T\n");
+            writer.write("         JLT     INNER\n");
+            writer.write("         LDA     COUNT\n");
+            writer.write("         SUB     #1\n");
+            writer.write("         STA     COUNT\n");
+            writer.write("         COMP    #0\n");
+            writer.write("         JGT     OUTER\n");
+            writer.write("DONE     J       DONE\n");
+            writer.write("COUNT    WORD    " + passes + "\n");
+            writer.write("BUF      RESB    4096\n");
+            writer.write("         END     LOOP\n");
+        }
+        Assembler assembler = new Assembler(source.getPath(), "unused", object.getPath());
+        assembler.setOutputs(false, true);
+        assembler.assembleFiles();
+        LinkingLoader loader = new LinkingLoader(-1, 1);
+        loader.load(Collections.singletonList(object));
+        return loader;
+    }
+
+    private static Simulator newSimulator() {
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        };
+        return new Simulator(new ByteArrayInputStream(new byte[0]), discard);
+    }
+
+    @Benchmark
+    public long run() throws IOException {
+        simulator.load(image, entry);
+        return simulator.run(Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs the program a few times and prints the MIPS of each run, as CSV ({@code passes,instructions,ms,mips}).
+     */
+    public static void main(String[] args) throws IOException {
+        int passes = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        LinkingLoader loader = assemble(passes);
+        Simulator simulator = newSimulator();
+        System.out.println("passes,instructions,ms,mips");
+        for (int i = 0; i < 5; i++) {
+            simulator.load(loader.getImage(), loader.getEntry());
+            long start = System.nanoTime();
+            long instructions = simulator.run(Long.MAX_VALUE);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%d,%d,%.1f,%.1f%n", passes, instructions, nanos / 1e6, instructions * 1e3 / nanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of initializing the tables at startup, from the generated {@link InstructionSet} or from the text files
+ * under {@code tables/} (the {@code sicxe.tables} property). Every invocation loads the assembler classes in a
+ * class loader of its own, so the tables are initialized again as in a new JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 50)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"generated", "files"})
+    public String tables;
+
+    private URL classes;
+
+    @Setup
+    public void setUp() {
+        classes = Tables.class.getProtectionDomain().getCodeSource().getLocation();
+        if (tables.equals("files")) {
+            System.setProperty(Tables.TABLES_PROPERTY, "tables");
+        } else {
+            System.clearProperty(Tables.TABLES_PROPERTY);
+        }
+    }
+
+    @Benchmark
+    public Object initializeTables() throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null)) {
+            Method lookup = Class.forName("Tables", true, loader).getDeclaredMethod("lookupMnemonic", String.class);
+            lookup.setAccessible(true);
+            return lookup.invoke(null, "LDA");
+        }
+    }
+}
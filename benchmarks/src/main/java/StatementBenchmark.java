@@ -0,0 +1,38 @@
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing and parsing of single source lines into {@link Statement}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark {
+
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> program = SyntheticProgram.lines(10_000);
+        lines = program.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        next = next + 1 == lines.length ? 0 : next + 1;
+        blackhole.consume(new Statement(lines[next]));
+    }
+
+    @Benchmark
+    public Mnemonic lookupMnemonic() {
+        return Tables.lookupMnemonic("ldch");
+    }
+}
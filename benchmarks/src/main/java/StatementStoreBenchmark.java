@@ -0,0 +1,90 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole assembly with the program kept as a {@link Statement} per line and as a {@link StatementStore}
+ * ({@link Assembler#setCompact}), on the assembling thread.
+ * <p>
+ * {@link #main} prints the heap each representation holds after the checks of pass 1, per line, e.g.
+ * {@code java -Xmx4g -cp benchmarks/target/benchmarks.jar StatementStoreBenchmark 1000000}. Both include the symbol
+ * table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementStoreBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int lines;
+
+    @Param({"statements", "store"})
+    public String representation;
+
+    private Assembler assembler;
+
+    @Setup
+    public void setUp() throws IOException {
+        assembler = newAssembler(SyntheticProgram.write(lines), representation.equals("store"));
+    }
+
+    private static Assembler newAssembler(File source, boolean compact) throws IOException {
+        File list = File.createTempFile("bench", ".lst");
+        File object = File.createTempFile("bench", ".obj");
+        list.deleteOnExit();
+        object.deleteOnExit();
+        Assembler assembler = new Assembler(source.getPath(), list.getPath(), object.getPath());
+        assembler.setCompact(compact);
+        assembler.setParallelism(1);
+        assembler.setConcurrentOutput(false);
+        return assembler;
+    }
+
+    @Benchmark
+    public AssemblyMetrics assemble() throws IOException {
+        return assembler.assembleFiles();
+    }
+
+    /**
+     * Prints the heap held by each representation after pass 1 and the checks, as CSV
+     * ({@code lines,representation,heapMB,bytesPerLine}).
+     */
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File source = SyntheticProgram.write(lines);
+        System.out.println("lines,representation,heapMB,bytesPerLine");
+        for (String representation : new String[]{"statements", "store"}) {
+            Assembler assembler = newAssembler(source, representation.equals("store"));
+            assembler.setOutputs(false, false);
+            long before = usedHeap();
+            AssemblyContext context = new AssemblyContext();
+            Object program;
+            if (representation.equals("store")) {
+                program = assembler.readCompact(context);
+            } else {
+                assembler.firstPass(context);
+                program = context.getStatements();
+            }
+            long heap = usedHeap() - before;
+            System.out.printf("%d,%s,%.1f,%.1f%n", lines, representation, heap / (1024.0 * 1024.0),
+                    (double) heap / lines);
+            if (program.hashCode() == 42 && context.getSymbolCount() == 42) {
+                // keeps the program alive until measured
+                System.out.println();
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
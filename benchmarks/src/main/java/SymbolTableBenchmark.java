@@ -0,0 +1,144 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link SymbolTable} against the {@code HashMap<String, Integer>} it replaced, at 1M symbols: lookups of
+ * defined and undefined symbols in random order, and building the table with and without sizing it up front.
+ * <p>
+ * {@link #main} prints the heap each table holds, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar SymbolTableBenchmark 1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolTableBenchmark {
+
+    @Param({"1000000"})
+    public int symbols;
+
+    @Param({"symbolTable", "hashMap"})
+    public String table;
+
+    private String[] names;
+    private String[] missing;
+    private int[] order;
+    private SymbolTable symbolTable;
+    private HashMap<String, Integer> hashMap;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = names(symbols, "L");
+        missing = names(symbols, "M");
+        order = new int[symbols];
+        Random random = new Random(42);
+        for (int i = 0; i < symbols; i++) {
+            order[i] = random.nextInt(symbols);
+        }
+        symbolTable = buildSymbolTable(names, symbols);
+        hashMap = buildHashMap(names, symbols);
+    }
+
+    private static String[] names(int count, String prefix) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            // new strings, their hash codes are not cached yet
+            names[i] = new String(prefix + i);
+        }
+        return names;
+    }
+
+    private static SymbolTable buildSymbolTable(String[] names, int expected) {
+        SymbolTable symbolTable = new SymbolTable(expected);
+        for (int i = 0; i < names.length; i++) {
+            symbolTable.put(names[i], 3 * i);
+        }
+        return symbolTable;
+    }
+
+    private static HashMap<String, Integer> buildHashMap(String[] names, int expected) {
+        HashMap<String, Integer> hashMap = new HashMap<>(expected * 4 / 3 + 1);
+        for (int i = 0; i < names.length; i++) {
+            hashMap.put(names[i], 3 * i);
+        }
+        return hashMap;
+    }
+
+    private int next() {
+        next = next + 1 >= order.length ? 0 : next + 1;
+        return order[next];
+    }
+
+    @Benchmark
+    public int lookup() {
+        String name = names[next()];
+        if (table.equals("symbolTable")) {
+            return symbolTable.get(name);
+        }
+        // the two probes pass 1 used to make
+        return hashMap.containsKey(name) ? hashMap.get(name) : -1;
+    }
+
+    @Benchmark
+    public int lookupMissing() {
+        String name = missing[next()];
+        if (table.equals("symbolTable")) {
+            return symbolTable.get(name);
+        }
+        Integer value = hashMap.get(name);
+        return value != null ? value : -1;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Object build() {
+        return table.equals("symbolTable") ? buildSymbolTable(names, 0) : buildHashMap(names, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Object buildPresized() {
+        return table.equals("symbolTable") ? buildSymbolTable(names, names.length)
+                : buildHashMap(names, names.length);
+    }
+
+    /**
+     * Prints the heap held by each table, besides the names, as CSV ({@code symbols,table,heapMB}).
+     */
+    public static void main(String[] args) {
+        int symbols = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] names = names(symbols, "L");
+        System.out.println("symbols,table,heapMB");
+        for (String table : new String[]{"symbolTable", "hashMap"}) {
+            long before = usedHeap();
+            Object built = table.equals("symbolTable") ? buildSymbolTable(names, symbols)
+                    : buildHashMap(names, symbols);
+            long after = usedHeap();
+            System.out.printf("%d,%s,%.1f%n", symbols, table, (after - before) / (1024.0 * 1024.0));
+            if (built.hashCode() == 42) {
+                // keeps the table alive until measured
+                System.out.println();
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deterministic, error free SIC/XE programs used as benchmark input, made by {@link ProgramGenerator}
+ * with its default statement mix.
+ */
+final class SyntheticProgram {
+
+    private SyntheticProgram() {
+        // Prevents instantiation.
+    }
+
+    static List<String> lines(int lines) throws IOException {
+        StringWriter program = new StringWriter();
+        new ProgramGenerator().generate(lines, program);
+        return Arrays.asList(program.toString().split("\n"));
+    }
+
+    static File write(int lines) throws IOException {
+        File file = File.createTempFile("synthetic" + lines + "-", ".txt");
+        file.deleteOnExit();
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        new ProgramGenerator().generate(lines, writer);
+        writer.close();
+        return file;
+    }
+}
@@ -1,33 +1,52 @@
 import java.io.*;
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 class Assembler {
-    private static final HashMap<String, Integer> SYMTABLE;
     private static final HashMap<String, Integer> REGTABLE;
-    private static final List<Error> ERRORS;
+
+    static final long STREAMING_THRESHOLD = 64L * 1024 * 1024;
+    static final long MAPPED_INPUT_THRESHOLD = 8L * 1024 * 1024;
+    static final long PARALLEL_THRESHOLD = 1024 * 1024;
+
+    // source bytes per symbol, about one label every three lines, for sizing the symbol table up front
+    static final int BYTES_PER_SYMBOL = 64;
+    static final int MAX_EXPECTED_SYMBOLS = 1 << 20;
+    static final int BYTES_PER_LINE = 32;
+
+    // b and p flags of format 3
+    static final int BASE_RELATIVE = 4;
+    static final int PC_RELATIVE = 2;
 
     private final File source;
     private final File listFile;
     private final File objectFile;
 
-    private List<Statement> statements = new ArrayList<>();
-
-    private String progName;
-    private int progStartAddr;
-    private int progLength;
-
-    private boolean started = false;
-    private boolean ended = false;
-    private int locctr; //location counter
+    private boolean streaming;
+    private boolean streamingSet;
+    private boolean mappedInput;
+    private boolean onePass;
+    private boolean compact;
+    private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    private boolean parallelismSet;
+    private boolean listing = true;
+    private boolean object = true;
+    private boolean concurrentOutput = Runtime.getRuntime().availableProcessors() > 1;
+    private boolean relaxation;
+    private long maxErrors = Long.MAX_VALUE;
 
     static {
-        SYMTABLE = Tables.getSymbolTable();
         REGTABLE = Tables.getREGTABLE();
-        ERRORS = Tables.getErrorsTable();
     }
 
     Assembler(String source, String listFile, String objectFile) {
@@ -35,414 +54,1383 @@ class Assembler {
         this.listFile = new File(listFile);
         this.objectFile = new File(objectFile);
 
-        this.progStartAddr = 0;
-        this.progLength = 0;
-        this.locctr = 0;
+        this.streaming = this.source.length() > STREAMING_THRESHOLD;
+        this.mappedInput = this.source.length() > MAPPED_INPUT_THRESHOLD;
+    }
+
+    /**
+     * Forces (or disables) reading the source through a memory mapping instead of a {@link BufferedReader}.
+     * By default only sources larger than {@link #MAPPED_INPUT_THRESHOLD} bytes are mapped.
+     */
+    void setMappedInput(boolean mappedInput) {
+        this.mappedInput = mappedInput;
+    }
+
+    /**
+     * Forces (or disables) the bounded-memory streaming mode.
+     * By default only sources larger than {@link #STREAMING_THRESHOLD} bytes are streamed, with a warning
+     * (see {@link #warnings()}).
+     */
+    void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        this.streamingSet = true;
+    }
+
+    /**
+     * Enables the one-pass mode, which lists and encodes every statement while reading the source.
+     * Forward references make the object file carry extra text records that patch them,
+     * and undefined symbols are listed after the program instead of above their line.
+     */
+    void setOnePass(boolean onePass) {
+        this.onePass = onePass;
+    }
+
+    /**
+     * Enables the compact mode, which keeps the program in a {@link StatementStore} instead of a {@link Statement}
+     * per line, for programs of millions of lines, even those large enough to be streamed by default. Its passes
+     * are serial, and control sections are errors.
+     */
+    void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Sets the number of threads the passes run on, 1 for the serial loops.
+     * By default it is the parallelism of the common fork/join pool. Pass 1 only runs in parallel for sources of
+     * at least {@link #PARALLEL_THRESHOLD} bytes, and pass 2 for programs of at least two chunks.
+     */
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        this.parallelismSet = true;
+    }
+
+    /**
+     * Selects the files to write, by default both. Without a listing no listing line is formatted, and without
+     * an object file pass 2 does not run; the other file is left alone.
+     */
+    void setOutputs(boolean listing, boolean object) {
+        this.listing = listing;
+        this.object = object;
+    }
+
+    /**
+     * Enables or disables writing the outputs on their own threads, by default enabled on machines with more than
+     * one processor. The listing is then formatted and written by a task of its own while pass 2 encodes, and the
+     * object file is written by another while the text records are packed. Disabled, everything runs on the
+     * assembling thread.
+     */
+    void setConcurrentOutput(boolean concurrentOutput) {
+        this.concurrentOutput = concurrentOutput;
+    }
+
+    /**
+     * Enables the relaxation of the two-pass modes, which makes format 4 every format 3 instruction that can not
+     * reach its target, PC-relative or base-relative, or that refers to an external symbol, and assigns the
+     * addresses again until none has to grow. Without it such instructions are errors. The one-pass, streaming and
+     * compact modes do not relax, and warn that it is ignored.
+     */
+    void setRelaxation(boolean relaxation) {
+        this.relaxation = relaxation;
+    }
+
+    /**
+     * Stops pass 1 at the line that makes the number of lines with errors reach the maximum, by default there is
+     * none. The checks that need the whole symbol table are then skipped, the listing ends at that line with
+     * a note, and the object file reports the errors.
+     */
+    void setMaxErrors(long maxErrors) {
+        this.maxErrors = maxErrors;
     }
 
+    /**
+     * @return what the mode the source is assembled in will not do of what was asked: relaxation and parallel
+     * passes in the one-pass, compact and streaming modes, and, when a large source is streamed without
+     * {@link #setStreaming} being called, the limits of the streaming mode.
+     */
+    List<String> warnings() {
+        List<String> warnings = new ArrayList<>();
+        String mode = onePass ? "one-pass" : compact ? "compact" : streaming ? "streaming" : null;
+        if (mode == null) {
+            return warnings;
+        }
+        if (mode.equals("streaming") && !streamingSet) {
+            warnings.add("the source is larger than " + (STREAMING_THRESHOLD >> 20) + " MB and is streamed:"
+                    + " the passes are serial and control sections are errors, --in-memory assembles it in memory");
+        }
+        if (relaxation) {
+            warnings.add("--relax is ignored by the " + mode + " mode");
+        }
+        if (parallelismSet && parallelism > 1) {
+            warnings.add("--parallelism is ignored by the " + mode + " mode, its passes are serial");
+        }
+        return warnings;
+    }
+
+    /**
+     * Assembles the source file into the listing and object files.
+     * All the state of the run lives in a fresh {@link AssemblyContext}, so an assembler can be reused
+     * and different assemblers can run at the same time on different threads.
+     */
     void assemble() {
         try {
-            firstPass();
-            secondPass();
+            assembleFiles();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void firstPass() throws IOException {
+    /**
+     * Same as {@link #assemble()}, but leaves I/O failures, such as a missing source, to the caller.
+     * The metrics of the run, with its {@link #warnings()}, are added to {@link AssemblerStats} and recorded as a JFR
+     * event.
+     *
+     * @return the metrics of the run.
+     */
+    AssemblyMetrics assembleFiles() throws IOException {
+        AssemblyContext context = new AssemblyContext(expectedSymbols());
+        context.setMaxErrors(maxErrors);
+        for (String warning : warnings()) {
+            context.getMetrics().warn(warning);
+        }
+        AssemblyEvent event = AssemblyEvent.begin();
+        try {
+            if (onePass) {
+                assembleOnePass(context);
+            } else if (compact) {
+                assembleCompact(context);
+            } else if (streaming) {
+                assembleStreaming(context);
+            } else if (listing && object && concurrentOutput) {
+                assembleConcurrently(context);
+            } else {
+                firstPass(context);
+                if (object) {
+                    secondPass(context);
+                }
+            }
+        } catch (IOException e) {
+            AssemblerStats.getInstance().fail();
+            throw e;
+        }
+
+        AssemblyMetrics metrics = context.getMetrics();
+        metrics.finish(context);
+        AssemblerStats.getInstance().add(metrics);
+        event.commit(metrics);
+        return metrics;
+    }
+
+    /**
+     * @return a guess of the number of symbols the program defines, from the size of the source.
+     */
+    private int expectedSymbols() {
+        return (int) Math.min(source.length() / BYTES_PER_SYMBOL, MAX_EXPECTED_SYMBOLS);
+    }
 
-        BufferedReader src = new BufferedReader(new FileReader(source));
-        BufferedWriter list = new BufferedWriter(new FileWriter(listFile));
-        String line;
+    /**
+     * Submits the assembly to a (possibly shared) executor.
+     */
+    Future<?> submit(ExecutorService executor) {
+        return executor.submit(this::assemble);
+    }
 
-        while ((line = src.readLine()) != null) {
-            Statement statement = new Statement(line);
-            if (statement.isComment()) {
-                statements.add(statement);
-                continue;
+    /**
+     * Runs all the assemblers in parallel on the executor and waits until every one of them is done.
+     */
+    static void assembleAll(Collection<Assembler> assemblers, ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Assembler assembler : assemblers) {
+            futures.add(assembler.submit(executor));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Pass 1, and the listing unless it is turned off.
+     */
+    void firstPass(AssemblyContext context) throws IOException {
+        readProgram(context);
+        if (listing) {
+            context.getMetrics().enter(AssemblyMetrics.LISTING);
+            writeListingFile(context);
+        }
+    }
+
+    /**
+     * Both passes, with the listing written by a task of its own while pass 2 encodes. The listing only reads
+     * what pass 1 left in the statements, and pass 2 only adds their object code.
+     */
+    private void assembleConcurrently(AssemblyContext context) throws IOException {
+        readProgram(context);
+        Future<?> list = OutputTasks.submit(() -> writeListingFile(context));
+        try {
+            secondPass(context);
+        } finally {
+            // the time the listing takes longer than pass 2
+            context.getMetrics().enter(AssemblyMetrics.LISTING);
+            OutputTasks.await(list);
+        }
+    }
+
+    /**
+     * Reads the source, assigns the addresses and checks the statements.
+     */
+    private void readProgram(AssemblyContext context) throws IOException {
+        if (relaxation) {
+            context.getMetrics().enter(AssemblyMetrics.PASS1);
+            context.setFormat4(relax());
+        }
+
+        LineSource src = LineSource.open(source, mappedInput);
+        if (parallelism > 1 && source.length() >= PARALLEL_THRESHOLD) {
+            ParallelFirstPass.run(context, src, parallelism);
+        } else {
+            readProgram(context, src);
+        }
+        src.close();
+    }
+
+    /**
+     * Relaxation: runs pass 1 and the checks again and again, each time making format 4 the format 3 instructions
+     * whose target is out of reach of PC-relative and base-relative addressing, or external, until there is none.
+     * Instructions only ever grow, so this ends, at the latest when all of them are format 4.
+     *
+     * @return the indexes of the source statements to make format 4.
+     */
+    private BitSet relax() throws IOException {
+        BitSet format4 = new BitSet();
+        while (true) {
+            AssemblyContext trial = new AssemblyContext(expectedSymbols());
+            trial.setFormat4((BitSet) format4.clone());
+            trial.setMaxErrors(maxErrors);
+            try (LineSource src = LineSource.open(source, mappedInput)) {
+                readProgram(trial, src);
+            }
+            if (trial.isAborted()) {
+                // so will the assembly
+                return format4;
             }
 
-            if (statement.getError() != null) {
-                statements.add(statement);
-                continue;
+            boolean grown = false;
+            int index = 0;
+            for (Statement statement : trial.getStatements()) {
+                if (statement.isLiteral()) {
+                    // placed by pass 1, not read
+                    continue;
+                }
+                if (statement.getSize() == 3 && !statement.isType4() && isAddress(statement)
+                        && (statement.hasError(Error.OUT_OF_RANGE) || statement.hasError(Error.EXTERNAL_NEEDS_FORMAT4))) {
+                    format4.set(index);
+                    grown = true;
+                }
+                index++;
+            }
+            if (!grown) {
+                return format4;
             }
+        }
+    }
 
-            if (statement.getMnemonic().getString().equalsIgnoreCase("START") && !started) {
-                // Save #[OPERAND] as starting address, and #[LABEL] as program name.
-                // parseInt converts a string of base radix (16) to an integer
-                progStartAddr = Integer.parseInt(statement.getFirstOperand().getLine(), 16);
-                progName = statement.getLabel();
+    /**
+     * @return true if the operand of the statement refers to a symbol, so it has a target to bring in reach. A
+     * constant out of range is left an error rather than growing the program.
+     */
+    private static boolean isAddress(Statement statement) {
+        return statement.hasFirstOperand() && statement.getFirstOperand().getExpression().hasSymbols();
+    }
 
-                // Initialize LOCCTR to starting address.
-                locctr = progStartAddr;
+    /**
+     * Serial pass 1 over the source, and the checks.
+     */
+    private static void readProgram(AssemblyContext context, LineSource src) throws IOException {
+        List<Statement> statements = context.getStatements();
+        AssemblyMetrics metrics = context.getMetrics();
+        CharSequence line;
 
-                // Write line to list file.
-                statement.setAddress(locctr);
-                statements.add(statement);
-                SYMTABLE.put(statement.getLabel(), locctr);
-                started = true;
-                continue;
-            } else if (!started) {
-                // Initialize LOCCTR to 0.
-                statement.setError(ERRORS.get(10));
-                locctr = 0;
+        while ((line = src.readLine()) != null) {
+            metrics.enter(AssemblyMetrics.PARSE);
+            Statement statement = new Statement(line);
+            metrics.enter(AssemblyMetrics.PASS1);
+            boolean more = define(context, statement, statements::add);
+            metrics.enter(AssemblyMetrics.READ);
+            if (!more) {
                 break;
             }
+        }
 
-            int growthSize = 0;
+        if (context.isAborted()) {
+            // the symbols after the last line read are missing
+            return;
+        }
 
-            if (statement.getMnemonic().getString().equalsIgnoreCase("END") && !ended) {
-                statement.setAddress(locctr);
-                if (statement.hasFirstOperand()) {
-                    if (!statement.getFirstOperand().getLine().equalsIgnoreCase(progName)) {
-                        statement.setError(ERRORS.get(12));
-                    }
+        // symtable and hex numbers errors handling
+        metrics.enter(AssemblyMetrics.VALIDATE);
+        boolean relocatable = context.isRelocatable();
+        long errors = 0;
+        for (Statement statement : statements) {
+            // pass 1 counted the lines it found errors in
+            boolean counted = statement.hasErrors();
+            validate(statement, statement.getSection().getSymbolTable());
+            if (relocatable) {
+                validateLinkage(statement);
+            }
+            if (!counted && statement.hasErrors()) {
+                errors++;
+            }
+        }
+        context.countErrors(errors);
+    }
+
+    /**
+     * Printer: the listing of the program checked by pass 1, and the symbol table.
+     */
+    private void writeListingFile(AssemblyContext context) throws IOException {
+        List<Statement> statements = context.getStatements();
+        BufferedWriter list = newWriter(listFile);
+        if (parallelism > 1 && statements.size() >= 2 * ParallelFirstPass.CHUNK_SIZE) {
+            ParallelFirstPass.writeListing(list, statements, parallelism);
+        } else {
+            for (Statement statement : statements) {
+                writeListing(list, statement);
+            }
+        }
+        writeSymbolTable(list, context);
+        list.close();
+    }
+
+    /**
+     * Pass 1 work for a single statement: assigns its address and defines its label.
+     * Every statement that belongs to the program is handed to the sink once its address is known.
+     * A statement with errors is counted, and stops pass 1 once the lines with errors reach the maximum.
+     *
+     * @return false if pass 1 must stop reading the source.
+     */
+    static boolean define(AssemblyContext context, Statement statement, StatementSink sink) throws IOException {
+        boolean more = defineStatement(context, statement, sink);
+        if (statement.hasErrors()) {
+            context.countErrors(1);
+            if (more && context.getErrors() >= context.getMaxErrors()) {
+                context.setAborted(true);
+                return false;
+            }
+        }
+        return more;
+    }
+
+    private static boolean defineStatement(AssemblyContext context, Statement statement, StatementSink sink)
+            throws IOException {
+        SymbolTable symtable = context.getSymbolTable();
+        int locctr = context.getLocctr();
+        context.getMetrics().count(statement);
+        statement.setSection(context.getSection());
+        if (context.nextFormat4()) {
+            statement.setType4();
+        }
+
+        if (statement.isComment()) {
+            sink.accept(statement);
+            return true;
+        }
+
+        if (!statement.hasErrors() && statement.getMnemonic().isDirective()) {
+            // Directives other than END need an operand, and START a hexadecimal one.
+            if (!statement.hasFirstOperand()) {
+                if (!statement.getMnemonic().getString().equalsIgnoreCase("END")
+                        && !statement.getMnemonic().getString().equalsIgnoreCase("CSECT")
+                        && !statement.getMnemonic().getString().equalsIgnoreCase("LTORG")
+                        && !statement.getMnemonic().getString().equalsIgnoreCase("NOBASE")) {
+                    statement.addError(Error.MISSING_OPERAND);
                 }
-                statements.add(statement);
-                progLength = locctr - progStartAddr - 1;
-                ended = true;
-                break;
+            } else if (statement.getMnemonic().getString().equalsIgnoreCase("START")
+                    && (!isHex(statement.getFirstOperand().getLine()) || statement.getFirstOperand().getLine().isEmpty())) {
+                statement.addError(Error.NOT_HEX);
             }
+        }
 
-            if (statement.hasLabel()) {
-                // Search SYMTABLE for LABEL.
-                if (SYMTABLE.containsKey(statement.getLabel()) || statement.getLabel().contains("[+\\-*/]")) {
-                    statement.setError(ERRORS.get(0));
-                } else {
-                    // Insert (LABEL, LOCCTR) into SYMTABLE.
-                    SYMTABLE.put(statement.getLabel(), locctr);
+        if (statement.hasErrors()) {
+            sink.accept(statement);
+            return true;
+        }
+
+        if (statement.getMnemonic().getString().equalsIgnoreCase("START") && !context.isStarted()) {
+            // Save #[OPERAND] as starting address, and #[LABEL] as program name.
+            // parseInt converts a string of base radix (16) to an integer
+            context.setProgStartAddr(Integer.parseInt(statement.getFirstOperand().getLine(), 16));
+            context.setProgName(statement.getLabel());
+
+            // Initialize LOCCTR to starting address.
+            locctr = context.getProgStartAddr();
+            context.setLocctr(locctr);
+
+            // Write line to list file.
+            statement.setAddress(locctr);
+            sink.accept(statement);
+            symtable.put(statement.getLabel(), locctr);
+            context.setStarted(true);
+            return true;
+        } else if (!context.isStarted()) {
+            // Initialize LOCCTR to 0.
+            statement.addError(Error.MISSING_START);
+            context.setLocctr(0);
+            statement.setAddress(0);
+            sink.accept(statement);
+            return false;
+        }
+
+        int growthSize = 0;
+
+        if (statement.getMnemonic().getString().equalsIgnoreCase("END") && !context.isEnded()) {
+            statement.setAddress(locctr);
+            if (statement.hasFirstOperand()) {
+                if (!statement.getFirstOperand().getLine().equalsIgnoreCase(context.getProgName())) {
+                    statement.addError(Error.END_LABEL);
                 }
             }
-            boolean locctrChanged = false;
-            if (statement.getMnemonic().isDirective()) {
-                int expression;
+            sink.accept(statement);
+            // the literals still waiting go after the program
+            placeLiterals(context, sink);
+            endSection(context);
+            context.setEnded(true);
+            return false;
+        }
 
-                String[] operand;
-                switch (statement.getMnemonic().getString()) {
-                    case "WORD":
-                        growthSize = 3;
-                        statement.setInstruction(String.format("%06X", Integer.parseInt(statement.getFirstOperand().getLine())));
-                        break;
+        if (statement.getMnemonic().isDirective() && isLinkage(statement.getMnemonic().getString())) {
+            defineLinkage(context, statement, sink);
+            statement.setAddress(context.getLocctr());
+            sink.accept(statement);
+            return true;
+        }
 
-                    case "RESW":
-                        growthSize = Integer.parseInt(statement.getFirstOperand().getLine()) * 3;
+        if (statement.hasLabel()) {
+            // Search SYMTABLE for LABEL.
+            if (symtable.contains(statement.getLabel()) || statement.getLabel().contains("[+\\-*/]")) {
+                statement.addError(Error.DUPLICATE_LABEL);
+            } else {
+                // Insert (LABEL, LOCCTR) into SYMTABLE.
+                symtable.put(statement.getLabel(), locctr);
+            }
+        }
+        boolean locctrChanged = false;
+        if (statement.getMnemonic().isDirective()) {
+            int expression;
+
+            switch (statement.getMnemonic().getString()) {
+                case "WORD":
+                    growthSize = 3;
+                    String value = statement.getFirstOperand().getLine();
+                    if (!isNum(value.startsWith("-") ? value.substring(1) : value)) {
+                        // an expression, evaluated by validate once every symbol is defined
+                        statement.setInstruction(null);
+                        bind(statement, symtable);
                         break;
+                    }
+                    int word = Integer.parseInt(value);
+                    statement.setInstruction(new byte[]{(byte) (word >> 16), (byte) (word >> 8), (byte) word});
+                    break;
 
-                    case "RESB":
-                        growthSize = Integer.parseInt(statement.getFirstOperand().getLine());
+                case "RESW":
+                case "RESB":
+                    if (!isNum(statement.getFirstOperand().getLine())) {
+                        statement.addError(Error.UNDEFINED_SYMBOL);
                         break;
+                    }
+                    growthSize = Integer.parseInt(statement.getFirstOperand().getLine());
+                    if (statement.getMnemonic().getString().equals("RESW")) {
+                        growthSize *= 3;
+                    }
+                    break;
 
-                    case "BYTE":
-                        // Find length of constant in bytes.
-                        // Add length to LOCCTR.
-                        operand = statement.getFirstOperand().getLine().split("'");
-                        String dataType = operand[0];
-                        int length = operand[1].length();
-
-                        switch (dataType) {
-                            case "c":
-                            case "C":
-                                String s = operand[1];
-                                StringBuilder sb = new StringBuilder();
-
-                                for (char c : s.toCharArray())
-                                    sb.append(Integer.toHexString((int) c));
-
-                                BigInteger mInt = new BigInteger(sb.toString());
-                                statement.setInstruction(mInt.toString());
-                                growthSize = length;
-                                break;
-                            case "x":
-                            case "X":
-                                if (length % 2 != 0) {
-                                    length++;
-                                    statement.setError(ERRORS.get(20));
-                                }
-                                statement.setInstruction(operand[1]);
-                                growthSize = length / 2;
-                                break;
-                            default:
-                                statement.setError(ERRORS.get(11));
-                        }
+                case "BYTE":
+                    // Find length of constant in bytes.
+                    // Add length to LOCCTR.
+                    growthSize = defineConstant(statement, statement.getFirstOperand().getLine(), statement);
+                    break;
 
-                        if (dataType.equalsIgnoreCase("x")) {
-                            if (!isHex(operand[1])) {
-                                statement.setError(ERRORS.get(6));
-                            }
-                        }
+                case "LTORG":
+                    if (statement.hasLabel()) {
+                        statement.addError(Error.LABEL_NOT_ALLOWED);
                         break;
+                    }
+                    if (statement.hasFirstOperand()) {
+                        statement.addError(Error.CANNOT_HAVE_OPERAND);
+                        break;
+                    }
+                    if (!context.isLiteralPoolsEnabled()) {
+                        statement.addError(Error.LITERALS_UNSUPPORTED);
+                        break;
+                    }
+                    statement.setAddress(locctr);
+                    sink.accept(statement);
+                    placeLiterals(context, sink);
+                    locctrChanged = true;
+                    break;
 
-                    case "ORG":
-                        if (statement.hasLabel()) {
-                            statement.setError(ERRORS.get(18));
-                            break;
-                        }
-                        expression = evaluateExpression(statement);
-                        if (expression != -1) {
-                            statement.setAddress(locctr);
-                            statements.add(statement);
-                            locctr = expression;
-                            locctrChanged = true;
-                            break;
+                case "BASE":
+                    // the base register value, evaluated by validate once every symbol is defined
+                    bind(statement, symtable);
+                    context.setBase(statement);
+                    context.getBases().add(statement);
+                    break;
 
-                        } else {
-                            statement.setError(ERRORS.get(5));
+                case "NOBASE":
+                    if (statement.hasFirstOperand()) {
+                        statement.addError(Error.CANNOT_HAVE_OPERAND);
+                        break;
+                    }
+                    context.setBase(null);
+                    break;
+
+                case "ORG":
+                    if (statement.hasLabel()) {
+                        statement.addError(Error.LABEL_NOT_ALLOWED);
+                        break;
+                    }
+                    bind(statement, symtable);
+                    if (evaluateExpression(statement, symtable)) {
+                        statement.setAddress(locctr);
+                        sink.accept(statement);
+                        context.setLocctr(statement.getFirstOperand().getExpression().getValue());
+                        locctrChanged = true;
+                    }
+                    break;
+                case "EQU":
+                    bind(statement, symtable);
+                    if (evaluateExpression(statement, symtable)) {
+                        if (!statement.hasLabel()) {
+                            statement.addError(Error.REQUIRES_LABEL);
                             break;
                         }
-                    case "EQU":
-                        expression = evaluateExpression(statement);
-                        if (expression != -1) {
-                            if (!statement.hasLabel()) {
-                                statement.setError(ERRORS.get(17));
-                                break;
-                            }
-                            SYMTABLE.replace(statement.getLabel(), expression);
+                        // defined above, a duplicate label is given the value too
+                        symtable.put(statement.getLabel(), statement.getFirstOperand().getExpression().getValue());
+                        if (context.getSection().relocate(statement.getFirstOperand().getExpression(),
+                                new ArrayList<>()) != 1) {
+                            context.getSection().setAbsolute(statement.getLabel());
                         }
-                        break;
-                    default:
-                        // Set error flag (invalid operation code).
-                        statement.setError(ERRORS.get(4));
-                }
+                    }
+                    break;
+                default:
+                    // Set error flag (invalid operation code).
+                    statement.addError(Error.UNRECOGNIZED_OPERATION);
+            }
 
-                // could be changed by ORG
-                if (!locctrChanged) {
-                    statement.setAddress(locctr);
-                    statements.add(statement);
-                    locctr += growthSize;
+            // could be changed by ORG
+            if (!locctrChanged) {
+                statement.setAddress(locctr);
+                sink.accept(statement);
+                context.setLocctr(locctr + growthSize);
+            }
+            return true;
+        }
+
+        if (statement.hasFirstOperand() && statement.getFirstOperand().isLiteral() && context.isLiteralPoolsEnabled()) {
+            useLiteral(context, statement);
+        }
+        if (!statement.getMnemonic().isRegisterType()) {
+            bind(statement, symtable);
+        }
+        statement.setBase(context.getBase());
+
+        growthSize = statement.getSize();
+        statement.setAddress(locctr);
+        sink.accept(statement);
+
+        context.setLocctr(locctr + growthSize);
+        return true;
+    }
+
+    /**
+     * Binds the operand of the statement to the symbol table of its section, so validate and encode read its
+     * symbols by id.
+     */
+    private static void bind(Statement statement, SymbolTable symtable) {
+        if (statement.hasFirstOperand()) {
+            statement.getFirstOperand().getExpression().bind(symtable);
+        }
+    }
+
+    /**
+     * Converts the constant of BYTE or of a literal, {@code C'...'} or {@code X'...'}, into the object code of the
+     * target. Errors go to the statement.
+     *
+     * @return the length of the constant in bytes.
+     */
+    private static int defineConstant(Statement statement, String constant, Statement target) {
+        int open = constant.indexOf('\'');
+        if (open == -1) {
+            statement.addError(Error.NOT_DATA_TYPE);
+            return 0;
+        }
+        int close = constant.indexOf('\'', open + 1);
+        String dataType = constant.substring(0, open);
+        String data = constant.substring(open + 1, close == -1 ? constant.length() : close);
+        int length = data.length();
+
+        switch (dataType) {
+            case "c":
+            case "C":
+                target.setInstruction(data.getBytes(StandardCharsets.ISO_8859_1));
+                return length;
+            case "x":
+            case "X":
+                if (length % 2 != 0) {
+                    length++;
+                    statement.addError(Error.ODD_HEX);
+                }
+                if (!isHex(data)) {
+                    statement.addError(Error.NOT_HEX);
+                } else {
+                    target.setInstruction(parseHex(data));
                 }
-                continue;
+                return length / 2;
+            default:
+                statement.addError(Error.NOT_DATA_TYPE);
+                return 0;
+        }
+    }
+
+    /**
+     * Puts the literal of the statement's operand into the next pool, unless the pool already has one with the
+     * same value, and makes the operand refer to its entry.
+     */
+    private static void useLiteral(AssemblyContext context, Statement statement) {
+        Operand operand = statement.getFirstOperand();
+        String literal = operand.getLine();
+        // a space can not be part of a label, so the symbol is only the entry's
+        String symbol = literal + " " + context.getLiteralPools();
+        Statement entry = Statement.literal(literal, symbol, 0);
+        int size = defineConstant(statement, literal.substring(1), entry);
+
+        // =C'A' and =X'41' are the same literal
+        String value = entry.getInstruction() != null ? hex(entry.getInstruction()) : literal;
+        Statement pooled = context.getLiterals().get(value);
+        if (pooled == null) {
+            pooled = Statement.literal(literal, symbol, size);
+            pooled.setInstruction(entry.getInstruction());
+            context.getLiterals().put(value, pooled);
+        }
+        operand.setLiteral(pooled.getLabel());
+    }
+
+    /**
+     * Places the literals used since the last pool at the location counter, in the order they were first used.
+     */
+    private static void placeLiterals(AssemblyContext context, StatementSink sink) throws IOException {
+        if (context.getLiterals().isEmpty()) {
+            return;
+        }
+        int locctr = context.getLocctr();
+        for (Statement entry : context.getLiterals().values()) {
+            entry.setAddress(locctr);
+            entry.setSection(context.getSection());
+            context.getSymbolTable().put(entry.getLabel(), locctr);
+            sink.accept(entry);
+            locctr += entry.getSize();
+        }
+        context.setLocctr(locctr);
+        context.getLiterals().clear();
+        context.setLiteralPools(context.getLiteralPools() + 1);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static boolean isLinkage(String directive) {
+        return directive.equals("CSECT") || directive.equals("EXTDEF") || directive.equals("EXTREF");
+    }
+
+    /**
+     * Pass 1 work for CSECT, which ends the section and starts the next one, and for EXTDEF and EXTREF,
+     * which list the symbols the section exports and imports. The exported symbols are checked by
+     * {@link #validateLinkage} once they are all defined.
+     */
+    private static void defineLinkage(AssemblyContext context, Statement statement, StatementSink sink)
+            throws IOException {
+        ControlSection section = context.getSection();
+        String directive = statement.getMnemonic().getString();
+        if (!context.isControlSections()) {
+            statement.addError(Error.CONTROL_SECTIONS_UNSUPPORTED);
+            return;
+        }
+
+        if (directive.equals("CSECT")) {
+            if (!statement.hasLabel()) {
+                statement.addError(Error.REQUIRES_LABEL);
+            } else if (statement.hasFirstOperand()) {
+                statement.addError(Error.CANNOT_HAVE_OPERAND);
+            } else if (context.hasSection(statement.getLabel())) {
+                statement.addError(Error.DUPLICATE_LABEL);
+            } else {
+                // a section ends with the literals it used
+                placeLiterals(context, sink);
+                endSection(context);
+                context.startSection(statement.getLabel());
+                context.setLocctr(0);
+                context.setBase(null);
+                context.getSymbolTable().put(statement.getLabel(), 0);
+                statement.setSection(context.getSection());
             }
+            return;
+        }
 
-            growthSize = statement.getMnemonic().getSize();
-            statement.setAddress(locctr);
-            statements.add(statement);
+        if (statement.hasLabel()) {
+            statement.addError(Error.LABEL_NOT_ALLOWED);
+            return;
+        }
+        for (String symbol : statement.getOperandList()) {
+            if (directive.equals("EXTDEF")) {
+                section.getExtDefs().add(symbol);
+            } else if (section.getSymbolTable().contains(symbol)) {
+                statement.addError(Error.DUPLICATE_LABEL);
+            } else {
+                // imported symbols are 0 until the loader adds their address
+                section.getSymbolTable().put(symbol, 0);
+                section.getExtRefs().add(symbol);
+            }
+        }
+    }
 
-            locctr += growthSize;
+    private static void endSection(AssemblyContext context) {
+        ControlSection section = context.getSection();
+        section.setLength(context.getLocctr() - section.getStartAddr());
+    }
 
+    /**
+     * Checks the statements of a program that has to be linked: the symbols of EXTDEF have to be defined in the
+     * section, external symbols can only be referred to by format 4 instructions and WORD, and the loader has to be
+     * able to relocate the addresses of those.
+     */
+    static void validateLinkage(Statement statement) {
+        if (statement.isComment() || statement.hasErrors() || statement.getMnemonic() == null
+                || statement.getMnemonic().isRegisterType() || !statement.hasFirstOperand()) {
+            return;
+        }
+        ControlSection section = statement.getSection();
+        String mnemonic = statement.getMnemonic().getString();
+        if (mnemonic.equals("EXTDEF")) {
+            for (String symbol : statement.getOperandList()) {
+                if (!section.getSymbolTable().contains(symbol) || section.isExternal(symbol)) {
+                    statement.addError(Error.UNDEFINED_SYMBOL);
+                }
+            }
+            return;
+        }
+        if (statement.getMnemonic().isDirective() && !mnemonic.equals("WORD")) {
+            return;
         }
 
-        // symtable and hex numbers errors handling
-        for (Statement statement : statements) {
-            if (!statement.isComment() && statement.getMnemonic() != null) {
-                if (!statement.getMnemonic().isRegisterType() && !statement.getMnemonic().isDirective() &&
-                        statement.hasFirstOperand()) {
-                    if (statement.getFirstOperand().isIndirect()) {
-                        boolean isLabel = false;
-                        if (SYMTABLE.containsKey(statement.getFirstOperand().getFilteredLine())) {
-                            isLabel = true;
-                        }
-                        if (!isLabel && !isHex(statement.getFirstOperand().getFilteredLine())) {
-                            statement.setError(ERRORS.get(6));
-                        }
-                        statement.getFirstOperand().setSymAddress(isLabel);
-                    }
+        Expression expression = statement.getFirstOperand().getExpression();
+        if (!isRelocated(statement)) {
+            if (section.isExternal(expression)) {
+                statement.addError(Error.EXTERNAL_NEEDS_FORMAT4);
+            }
+        } else if (section.relocate(expression, new ArrayList<>()) == -1) {
+            statement.addError(Error.ILLEGAL_RELOCATABLE);
+        }
+    }
 
-                    if (statement.getFirstOperand().isImmediate()) {
-                        boolean isLabel = false;
-                        if (SYMTABLE.containsKey(statement.getFirstOperand().getFilteredLine())) {
-                            isLabel = true;
-                        }
-                        if (!isLabel && !isValidNum(statement.getFirstOperand().getFilteredLine())) {
-                            statement.setError(ERRORS.get(5));
-                        }
-                        statement.getFirstOperand().setSymAddress(isLabel);
-                    }
+    /**
+     * @return true for the statements whose address the loader may have to modify: WORD, and format 4 instructions,
+     * whose operand is an expression with symbols.
+     */
+    private static boolean isRelocated(Statement statement) {
+        return (statement.isType4() || statement.getMnemonic().getString().equals("WORD"))
+                && statement.hasFirstOperand() && statement.getFirstOperand().getExpression().hasSymbols();
+    }
 
-                    if (statement.getFirstOperand().isSimple()) {
-                        if (!SYMTABLE.containsKey(statement.getFirstOperand().getFilteredLine())) {
-                            statement.setError(ERRORS.get(5));
-                        }
-                        statement.getFirstOperand().setSymAddress(true);
+    /**
+     * Checks the operand of a memory reference instruction against the complete symbol table.
+     */
+    static void validate(Statement statement, SymbolTable symtable) {
+        if (!statement.isComment() && statement.getMnemonic() != null && !statement.hasErrors()
+                && statement.getMnemonic().getString().equals("WORD")
+                && (statement.getInstruction() == null || statement.getFirstOperand().getExpression().hasSymbols())) {
+            // an expression
+            if (evaluateExpression(statement, symtable)) {
+                int word = statement.getFirstOperand().getExpression().getValue();
+                statement.setInstruction(new byte[]{(byte) (word >> 16), (byte) (word >> 8), (byte) word});
+            }
+            return;
+        }
+        if (!statement.isComment() && statement.getMnemonic() != null && !statement.hasErrors()
+                && statement.getMnemonic().getString().equals("BASE")) {
+            evaluateExpression(statement, symtable);
+            return;
+        }
+        if (!statement.isComment() && statement.getMnemonic() != null) {
+            if (!statement.getMnemonic().isDirective() && !statement.hasFirstOperand()) {
+                statement.addError(Error.MISSING_OPERAND);
+            }
+            if (!statement.getMnemonic().isRegisterType() && !statement.getMnemonic().isDirective() &&
+                    statement.hasFirstOperand()) {
+                Operand operand = statement.getFirstOperand();
+                Expression expression = operand.getExpression();
+                // An operand that refers to a symbol is an address, the others are absolute values.
+                operand.setSymAddress(expression.hasSymbols());
+
+                if (!expression.isValid()) {
+                    statement.addError(Error.CANNOT_EVALUATE);
+                } else if (operand.isLiteral() && operand.getLiteral() == null) {
+                    statement.addError(Error.LITERALS_UNSUPPORTED);
+                } else if (!expression.evaluate(symtable)) {
+                    // an undefined symbol, looked up again only now, or a division by zero
+                    if (!expression.isDefined(symtable)) {
+                        statement.addError(operand.isIndirect() && !isHex(operand.getFilteredLine())
+                                ? Error.NOT_HEX : Error.UNDEFINED_SYMBOL);
+                    } else {
+                        statement.addError(Error.CANNOT_EVALUATE);
+                    }
+                } else if (operand.isImmediate() && !expression.hasSymbols()) {
+                    if (expression.getValue() < 0 || expression.getValue() > (statement.isType4() ? 0xFFFFF : 4095)) {
+                        statement.addError(Error.OUT_OF_RANGE);
                     }
+                } else if (operand.isSimple() && !expression.hasSymbols()) {
+                    statement.addError(Error.UNDEFINED_SYMBOL);
+                } else if (!statement.isType4() && expression.hasSymbols()
+                        && (statement.getSection() == null || !statement.getSection().isExternal(expression))
+                        && relativeAddressing(statement, expression.getValue(), symtable) == 0) {
+                    statement.addError(Error.OUT_OF_RANGE);
                 }
             }
         }
+    }
 
+    static void writeListing(Writer list, Statement statement) throws IOException {
+        writeErrors(list, statement.getErrors());
+        if (!statement.isComment()) {
+            list.write(formatAddress(statement.getAddress()));
+            list.write('\t');
+        }
+        list.append(statement.getLine()).append('\n');
+    }
 
-        // printer
-        for (Statement statement : statements) {
-            if (statement.getError() != null) {
-                list.write("\t" + statement.getError().getError() + "\n");
+    /**
+     * @return the value as {@code %06X} formats it, without a formatter for every listing line and text record.
+     */
+    static String formatAddress(int value) {
+        if (value < 0 || value > 0xFFFFFF) {
+            return String.format("%06X", value);
+        }
+        char[] digits = new char[6];
+        for (int i = digits.length - 1; i >= 0; i--, value >>= 4) {
+            digits[i] = "0123456789ABCDEF".charAt(value & 0xF);
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Writes the messages of the diagnostics, by code.
+     *
+     * @param errors the codes, as returned by {@link Statement#getErrors()}.
+     */
+    static void writeErrors(Writer list, long errors) throws IOException {
+        for (; errors != 0; errors &= errors - 1) {
+            list.write("\t" + Error.message(Long.numberOfTrailingZeros(errors)) + "\n");
+        }
+    }
+
+    static void writeSymbolTable(Writer list, AssemblyContext context) throws IOException {
+        writeSymbolTableHeading(list, context);
+        for (ControlSection section : context.getSections()) {
+            if (context.getSections().size() > 1) {
+                list.write(String.format("\n\t\t\t%s\n", section.getName()));
             }
-            if (!statement.isComment()) {
-                list.write(String.format("%06X\t%s\n", statement.getAddress(), statement.getLine()));
-            } else {
-                list.write(String.format("%s\n", statement.getLine()));
+            SymbolTable symtable = section.getSymbolTable();
+            for (String s : symtable.symbols()) {
+                if (s.indexOf(' ') != -1) {
+                    // a literal, listed in its pool
+                    continue;
+                }
+                list.write(symbolTableLine(s, symtable.get(s)));
             }
         }
+    }
 
-        if (!ended) {
-            list.write(ERRORS.get(9).getError() + "\n");
+    /**
+     * Writes what comes before the symbols: why the program ended early, if it did, and the title.
+     */
+    static void writeSymbolTableHeading(Writer list, AssemblyContext context) throws IOException {
+        if (context.isAborted()) {
+            list.write(Error.message(Error.TOO_MANY_ERRORS) + "\n");
+        } else if (!context.isEnded()) {
+            list.write(Error.message(Error.MISSING_END) + "\n");
         }
 
         list.write("\n\n-----------------------------------------------\n\n");
         list.write("\t\t\t\t SYMBOL TABLE \n\n");
         list.write("\t\t\tName\t\t\tValue\n");
         list.write("\t\t   -----------------------\n");
-
-        for (String s : SYMTABLE.keySet()) {
-            list.write(String.format("\t\t\t%s\t" + (s.length() < 4 ? "\t" : "") + "\t\t%06X\n", s, SYMTABLE.get(s)));
-        }
-
-        list.close();
     }
 
-    private void secondPass() throws IOException {
+    /**
+     * @return the line of the symbol in the symbol table.
+     */
+    static String symbolTableLine(String symbol, int value) {
+        return "\t\t\t" + symbol + (symbol.length() < 4 ? "\t\t" : "\t") + "\t\t" + formatAddress(value) + "\n";
+    }
 
-        BufferedWriter object = new BufferedWriter(new FileWriter(objectFile));
+    void secondPass(AssemblyContext context) throws IOException {
+        List<Statement> statements = context.getStatements();
+        AssemblyMetrics metrics = context.getMetrics();
+        metrics.enter(AssemblyMetrics.OBJECT);
 
-        // if there is errors in statements skip pass 2
-        for (Statement statement : statements) {
-            if (statement.getError() != null) {
-                object.write("\t\t\n\n\n *** Error in assembly cannot generate object file ***\n\n\n");
-                object.close();
+        try (Writer object = openOutput(objectFile)) {
+            // if there is errors in statements skip pass 2
+            if (context.getErrors() > 0) {
+                writeErrorObject(object);
                 return;
             }
-        }
 
+            if (context.isRelocatable()) {
+                writeSections(object, context);
+                return;
+            }
 
-        // Remove comments
-        statements.removeIf(Statement::isComment);
-        statements.removeIf(statement -> statement.getMnemonic().isDirective() && statement.getInstruction() == null);
+            writeHeader(object, context);
+            if (parallelism > 1 && statements.size() >= 2 * ParallelEncoder.CHUNK_SIZE) {
+                ParallelEncoder.write(object, context, parallelism);
+            } else {
+                TextRecordWriter records = new TextRecordWriter(object, context.getProgStartAddr());
+                for (Statement statement : statements) {
+                    metrics.enter(AssemblyMetrics.ENCODE);
+                    boolean inText = encode(statement, context.getSymbolTable());
+                    metrics.enter(AssemblyMetrics.OBJECT);
+                    if (inText) {
+                        records.add(statement);
+                    }
+                }
+                records.finish();
+            }
+            writeEnd(object, context);
+        }
+    }
 
-        boolean baseRelative = false;
+    /**
+     * Pass 2 of a program that has to be linked, with the records of each control section in turn: its header,
+     * the symbols it defines and refers to, its text records, what the loader has to modify, and its end.
+     */
+    private static void writeSections(Writer object, AssemblyContext context) throws IOException {
+        List<Statement> statements = context.getStatements();
+        AssemblyMetrics metrics = context.getMetrics();
+        ControlSection program = context.getSections().get(0);
+        int next = 0;
+
+        for (ControlSection section : context.getSections()) {
+            if (section != program) {
+                object.write("\n");
+            }
+            writeHeader(object, section);
+            writeLinkage(object, section);
+
+            StringBuilder modifications = new StringBuilder();
+            TextRecordWriter records = new TextRecordWriter(object, section.getStartAddr());
+            while (next < statements.size() && statements.get(next).getSection() == section) {
+                Statement statement = statements.get(next++);
+                metrics.enter(AssemblyMetrics.ENCODE);
+                boolean inText = encode(statement, section.getSymbolTable());
+                if (inText) {
+                    relocate(statement, modifications);
+                }
+                metrics.enter(AssemblyMetrics.OBJECT);
+                if (inText) {
+                    records.add(statement);
+                }
+            }
+            records.finish();
+            object.write(modifications.toString());
+            object.write(section == program ? String.format("E%06X", section.getStartAddr()) : "E");
+        }
+    }
 
-        for (Statement statement : statements) {
-            StringBuilder instruction = new StringBuilder();
+    /**
+     * Writes the define (D) records of the symbols the section exports and the refer (R) records of the ones it
+     * imports.
+     */
+    private static void writeLinkage(Writer object, ControlSection section) throws IOException {
+        List<String> extDefs = section.getExtDefs();
+        for (int i = 0; i < extDefs.size(); i += 6) {
+            StringBuilder record = new StringBuilder("D");
+            for (int j = i; j < Math.min(i + 6, extDefs.size()); j++) {
+                String symbol = extDefs.get(j);
+                record.append(j > i ? "^" : "").append(appendSpace(symbol))
+                        .append(String.format("^%06X", section.getSymbolTable().get(symbol)));
+            }
+            object.write(record.append('\n').toString());
+        }
 
-            if (statement.getInstruction() != null) {
-                continue;
+        List<String> extRefs = new ArrayList<>(section.getExtRefs());
+        for (int i = 0; i < extRefs.size(); i += 12) {
+            StringBuilder record = new StringBuilder("R");
+            for (int j = i; j < Math.min(i + 12, extRefs.size()); j++) {
+                record.append(j > i ? "^" : "").append(appendSpace(extRefs.get(j)));
             }
+            object.write(record.append('\n').toString());
+        }
+    }
 
-            // for register type instructions
-            if (statement.getMnemonic().getSize() == 2 && statement.getMnemonic().isRegisterType()) {
-                instruction.append(statement.getMnemonic().getOpcode());
-                instruction.append(REGTABLE.get(statement.getFirstOperand().getLine()));
-                if (statement.getMnemonic().isTwoOperands()) {
-                    instruction.append(REGTABLE.get(statement.getSecondOperand().getLine()));
-                } else {
-                    instruction.append(0);
-                }
-                statement.setInstruction(instruction.toString());
-                continue;
+    /**
+     * Adds the modification (M) records of a statement whose address the loader has to modify. The address of
+     * a relative value is made relative to the start of its section, to which the loader adds where it put the
+     * section.
+     */
+    private static void relocate(Statement statement, StringBuilder modifications) {
+        if (!isRelocated(statement)) {
+            return;
+        }
+        ControlSection section = statement.getSection();
+        List<String> symbols = new ArrayList<>();
+        boolean word = !statement.isType4();
+        byte[] instruction = statement.getInstruction();
+        if (section.relocate(statement.getFirstOperand().getExpression(), symbols) == 1
+                && section.getStartAddr() != 0) {
+            int address = statement.getFirstOperand().getExpression().getValue() - section.getStartAddr();
+            if (word) {
+                instruction[0] = (byte) (address >> 16);
+            } else {
+                instruction[1] = (byte) (instruction[1] & 0xF0 | address >> 16 & 0xF);
             }
+            instruction[instruction.length - 2] = (byte) (address >> 8);
+            instruction[instruction.length - 1] = (byte) address;
+        }
 
-            if (statement.getMnemonic().getSize() != 2) {
+        // format 4 addresses are the last 5 half bytes, words all 6
+        String field = String.format(word ? "M%06X^06^" : "M%06X^05^", statement.getAddress() + (word ? 0 : 1));
+        for (String symbol : symbols) {
+            modifications.append(field).append(symbol).append('\n');
+        }
+    }
 
-                int ni;
-                if (statement.getFirstOperand().isIndirect()) {
-                    ni = 2;
-                } else if (statement.getFirstOperand().isImmediate()) {
-                    ni = 1;
-                } else {
-                    assert statement.getFirstOperand().isSimple();
-                    ni = 3;
-                }
+    /**
+     * Generates the object code of a single statement.
+     *
+     * @return true if the statement goes into a text record.
+     */
+    static boolean encode(Statement statement, SymbolTable symtable) {
+        // Comments, and directives that reserve no data, have no object code.
+        if (statement.isComment()) {
+            return false;
+        }
+        if (statement.getMnemonic().isDirective()) {
+            return statement.getInstruction() != null;
+        }
+
+        // for register type instructions: opcode, r1, r2
+        if (statement.getSize() == 2 && statement.getMnemonic().isRegisterType()) {
+            byte[] instruction = new byte[2];
+            int r1 = register(statement.getFirstOperand());
+            int r2 = statement.getMnemonic().isTwoOperands() ? register(statement.getSecondOperand()) : 0;
+            instruction[0] = (byte) statement.getMnemonic().getOpcodeByte();
+            instruction[1] = (byte) (r1 << 4 | r2);
+            statement.setInstruction(instruction);
+            return true;
+        }
 
-                // append the first char only of the opcode
-                instruction.append(statement.getMnemonic().getOpcode().charAt(0));
+        if (statement.getSize() != 2) {
 
-                // add n and i to second half of the first byte
-                int secondHalf = Integer.parseInt(String.valueOf(statement.getMnemonic().getOpcode().charAt(1)), 16);
-                secondHalf += ni;
+            int ni;
+            if (statement.getFirstOperand().isIndirect()) {
+                ni = 2;
+            } else if (statement.getFirstOperand().isImmediate()) {
+                ni = 1;
+            } else {
+                assert statement.getFirstOperand().isSimple();
+                ni = 3;
+            }
 
-                instruction.append(String.format("%01X", secondHalf));
+            // Checked by validate, and usually already evaluated.
+            int displacement = evaluateExpression(statement, symtable)
+                    ? statement.getFirstOperand().getExpression().getValue() : 0;
+
+            // b and p, PC-relative if the target is in reach, else relative to the base
+            int relative = statement.getFirstOperand().isSymAddress() && !statement.isType4()
+                    ? relativeAddressing(statement, displacement, symtable) : 0;
+            if (relative == PC_RELATIVE) {
+                displacement -= statement.getAddress() + statement.getSize();
+            } else if (relative == BASE_RELATIVE) {
+                displacement -= statement.getBase().getFirstOperand().getExpression().getValue();
+            }
 
-                // builder for the flags byte
-                StringBuilder secondByte = new StringBuilder();
+            // x b p e flags in the high half of the second byte
+            int flags = (statement.isIndexed() ? 8 : 0)
+                    | relative
+                    | (statement.isType4() ? 1 : 0);
+
+            byte[] instruction = new byte[statement.getSize()];
+            // add n and i to the low bits of the opcode
+            instruction[0] = (byte) (statement.getMnemonic().getOpcodeByte() | ni);
+            if (statement.isType4()) {
+                // 20 bit address
+                instruction[1] = (byte) (flags << 4 | (displacement >> 16 & 0xF));
+                instruction[2] = (byte) (displacement >> 8);
+                instruction[3] = (byte) displacement;
+            } else {
+                // 12 bit displacement, negative values in two's complement
+                instruction[1] = (byte) (flags << 4 | (displacement >> 8 & 0xF));
+                instruction[2] = (byte) displacement;
+            }
+            statement.setInstruction(instruction);
+        }
+        return true;
+    }
 
-                // append indexed flag
-                secondByte.append(statement.isIndexed() ? 1 : 0);
+    /**
+     * Picks the addressing of a format 3 instruction whose operand is an address: PC-relative if the target is
+     * within -2048 to 2047 bytes of the next instruction, else relative to the base in effect if it is within
+     * 0 to 4095 bytes above the base.
+     *
+     * @return {@link #PC_RELATIVE}, {@link #BASE_RELATIVE}, or 0 if the target is in reach of neither.
+     */
+    static int relativeAddressing(Statement statement, int target, SymbolTable symtable) {
+        int pc = target - (statement.getAddress() + statement.getSize());
+        if (pc >= -2048 && pc <= 2047) {
+            return PC_RELATIVE;
+        }
+        Statement base = statement.getBase();
+        if (base != null && !base.hasErrors() && base.getFirstOperand().getExpression().evaluate(symtable)) {
+            int displacement = target - base.getFirstOperand().getExpression().getValue();
+            if (displacement >= 0 && displacement <= 4095) {
+                return BASE_RELATIVE;
+            }
+        }
+        return 0;
+    }
 
-                // append base relative flag
-                //noinspection ConstantConditions
-                secondByte.append(baseRelative ? 1 : 0);
+    static void writeErrorObject(Writer object) throws IOException {
+        object.write("\t\t\n\n\n *** Error in assembly cannot generate object file ***\n\n\n");
+    }
 
-                // append pc relative flag
-                secondByte.append(statement.getFirstOperand().isSymAddress() && !statement.isType4() ? 1 : 0);
+    static void writeHeader(Writer object, AssemblyContext context) throws IOException {
+        writeHeader(object, context.getSections().get(0));
+    }
 
-                // append format 4 flag
-                secondByte.append(statement.isType4() ? 1 : 0);
+    private static void writeHeader(Writer object, ControlSection section) throws IOException {
+        String headerRecord = "H";
+        headerRecord += appendSpace(section.getName()) + "^";
+        headerRecord += String.format("%06X^", section.getStartAddr());
+        headerRecord += String.format("%06X\n", section.getLength());
+        object.write(headerRecord);
+    }
 
-                // convert from binary to int
-                int secondByteValue = Integer.parseInt(secondByte.toString(), 2);
-                // convert from int to hex string then append to the instruction
-                instruction.append(String.format("%01X", secondByteValue));
+    static void writeEnd(Writer object, AssemblyContext context) throws IOException {
+        object.write("E" + String.format("%06X", context.getProgStartAddr()));
+    }
 
-                int displacement;
-                if (statement.isType4()) {
+    /**
+     * Streaming variant of the two passes for sources too large to keep in memory.
+     * Pass 1 spills a compact record per statement to an intermediate file and forgets the statement,
+     * so only the symbol table grows with the program. The listing and the object file are then
+     * produced together by streaming the intermediate file back once, next to the source.
+     */
+    private void assembleStreaming(AssemblyContext context) throws IOException {
+        // the statements are not kept for a pass over each section
+        context.setControlSections(false);
+        SymbolTable symtable = context.getSymbolTable();
+        AssemblyMetrics metrics = context.getMetrics();
+        File intermediate = File.createTempFile("sicxe", ".int");
 
-                    displacement = evaluateExpression(statement);
-                    instruction.append(String.format("%05X", displacement));
-                    statement.setInstruction(instruction.toString());
-                    continue;
+        try {
+            try (LineSource src = LineSource.open(source, mappedInput);
+                 IntermediateFile.Writer pass1 = new IntermediateFile.Writer(intermediate)) {
+                CharSequence line;
+                while ((line = src.readLine()) != null) {
+                    metrics.enter(AssemblyMetrics.PARSE);
+                    Statement statement = new Statement(line);
+                    metrics.enter(AssemblyMetrics.PASS1);
+                    boolean more = define(context, statement, pass1::write);
+                    metrics.enter(AssemblyMetrics.READ);
+                    if (!more) {
+                        break;
+                    }
+                    pass1.nextLine();
                 }
+            }
 
-                if (statement.getFirstOperand().isSymAddress()) {
-                    int PC = statement.getAddress() + statement.getMnemonic().getSize();
-                    int TA = evaluateExpression(statement);
-                    displacement = TA - PC;
-                    if (displacement < 0) {
-                        String cutterDisp = String.format("%X", displacement);
-                        cutterDisp = cutterDisp.substring(5);
-                        assert cutterDisp.length() == 3;
-                        instruction.append(cutterDisp);
-                    } else {
-                        instruction.append(String.format("%03X", displacement));
+            // A single pass over the intermediate file checks, lists and encodes each statement. The object code is
+            // written as it is encoded, and replaced by the error object once a line has errors.
+            long errors = 0;
+            // a null listing or object file is not closed
+            try (Writer list = listing ? openOutput(listFile) : null;
+                 Writer objectCode = object && context.getErrors() == 0 ? openOutput(objectFile) : null;
+                 IntermediateFile.Reader reader = new IntermediateFile.Reader(intermediate,
+                         LineSource.open(source, mappedInput))) {
+                TextRecordWriter records = null;
+                if (objectCode != null) {
+                    metrics.enter(AssemblyMetrics.OBJECT);
+                    writeHeader(objectCode, context);
+                    records = new TextRecordWriter(objectCode, context.getProgStartAddr());
+                }
+                metrics.enter(AssemblyMetrics.READ);
+                Statement statement;
+                while ((statement = reader.next()) != null) {
+                    metrics.enter(AssemblyMetrics.VALIDATE);
+                    // pass 1 counted the lines it found errors in, and after it stopped early symbols are missing
+                    boolean counted = statement.hasErrors();
+                    if (!context.isAborted()) {
+                        validate(statement, symtable);
                     }
-                    statement.setInstruction(instruction.toString());
-
-                } else {
-                    displacement = evaluateExpression(statement);
-                    instruction.append(String.format("%03X", displacement));
-                    statement.setInstruction(instruction.toString());
+                    if (!counted && statement.hasErrors()) {
+                        errors++;
+                    }
+                    if (list != null) {
+                        metrics.enter(AssemblyMetrics.LISTING);
+                        writeListing(list, statement);
+                    }
+                    if (records != null && errors == 0) {
+                        metrics.enter(AssemblyMetrics.ENCODE);
+                        boolean inText = encode(statement, symtable);
+                        metrics.enter(AssemblyMetrics.OBJECT);
+                        if (inText) {
+                            records.add(statement);
+                        }
+                    }
+                    metrics.enter(AssemblyMetrics.READ);
+                }
+                context.countErrors(errors);
+                if (list != null) {
+                    metrics.enter(AssemblyMetrics.LISTING);
+                    writeSymbolTable(list, context);
+                }
+                if (records != null && errors == 0) {
+                    metrics.enter(AssemblyMetrics.OBJECT);
+                    records.finish();
+                    writeEnd(objectCode, context);
+                }
+            }
+            if (object && context.getErrors() > 0) {
+                metrics.enter(AssemblyMetrics.OBJECT);
+                try (Writer objectCode = openOutput(objectFile)) {
+                    writeErrorObject(objectCode);
                 }
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            intermediate.delete();
+        }
+    }
 
+    /**
+     * Compact variant of the two passes: pass 1 keeps the program in a {@link StatementStore} and drops the
+     * statements, and the checks, the listing and pass 2 run over the store.
+     */
+    private void assembleCompact(AssemblyContext context) throws IOException {
+        AssemblyMetrics metrics = context.getMetrics();
+        StatementStore store = readCompact(context);
+
+        if (listing) {
+            metrics.enter(AssemblyMetrics.LISTING);
+            try (Writer list = openOutput(listFile)) {
+                store.writeListing(list);
+                writeSymbolTable(list, context);
+            }
+        }
+        if (!object) {
+            return;
+        }
 
+        metrics.enter(AssemblyMetrics.OBJECT);
+        try (Writer object = openOutput(objectFile)) {
+            if (context.getErrors() > 0) {
+                writeErrorObject(object);
+                return;
             }
+            writeHeader(object, context);
+            TextRecordWriter records = new TextRecordWriter(object, context.getProgStartAddr());
+            metrics.enter(AssemblyMetrics.ENCODE);
+            store.encode(records);
+            metrics.enter(AssemblyMetrics.OBJECT);
+            records.finish();
+            writeEnd(object, context);
+        }
+    }
 
+    /**
+     * Pass 1 into a {@link StatementStore}, and the checks.
+     */
+    StatementStore readCompact(AssemblyContext context) throws IOException {
+        // the store has a single symbol table
+        context.setControlSections(false);
+        AssemblyMetrics metrics = context.getMetrics();
+        StatementStore store = new StatementStore(context.getSymbolTable(),
+                (int) Math.min(source.length() / BYTES_PER_LINE, Integer.MAX_VALUE / 2),
+                (int) Math.min(source.length(), Integer.MAX_VALUE / 2));
+
+        try (LineSource src = LineSource.open(source, mappedInput)) {
+            CharSequence line;
+            while ((line = src.readLine()) != null) {
+                metrics.enter(AssemblyMetrics.PARSE);
+                Statement statement = new Statement(line);
+                metrics.enter(AssemblyMetrics.PASS1);
+                boolean more = define(context, statement, store);
+                metrics.enter(AssemblyMetrics.READ);
+                if (!more) {
+                    break;
+                }
+            }
+        }
 
+        if (!context.isAborted()) {
+            metrics.enter(AssemblyMetrics.VALIDATE);
+            context.countErrors(store.validate());
         }
+        return store;
+    }
 
-        String headerRecord = "H";
-        headerRecord += appendSpace(progName) + "^";
-        headerRecord += String.format("%06X^", progStartAddr);
-        headerRecord += String.format("%06X\n", progLength);
-        object.write(headerRecord);
+    /**
+     * One-pass variant: every statement is listed and encoded while the source is read, and is not kept.
+     * Forward references are patched in when their symbol is defined, see {@link OnePassWriter}.
+     */
+    private void assembleOnePass(AssemblyContext context) throws IOException {
+        context.setControlSections(false);
+        AssemblyMetrics metrics = context.getMetrics();
+        OnePassWriter output = new OnePassWriter(context, listing ? listFile : null, object ? objectFile : null);
 
-        int size = 0;
-        StringBuilder record = new StringBuilder();
-        boolean instructionsExist = false;
-        for (Statement statement : statements) {
-            if (statement.getInstruction() != null) {
-                instructionsExist = true;
+        LineSource src = LineSource.open(source, mappedInput);
+        CharSequence line;
+
+        while ((line = src.readLine()) != null) {
+            metrics.enter(AssemblyMetrics.PARSE);
+            Statement statement = new Statement(line);
+            metrics.enter(AssemblyMetrics.PASS1);
+            boolean more = define(context, statement, output);
+            if (statement.hasLabel()) {
+                output.define(statement.getLabel());
+            }
+            metrics.enter(AssemblyMetrics.READ);
+            if (!more) {
                 break;
             }
         }
+        src.close();
 
-        if (instructionsExist) {
-            object.write("T");
-            object.write(String.format("%06X^", progStartAddr));
-            for (Statement statement : statements) {
-                if (size + (statement.getInstruction().length() / 2) <= 30 && !statement.getMnemonic().isDirective()) {
-                    record.append(statement.getInstruction());
-                    size += (statement.getInstruction().length() / 2);
-                } else {
-                    object.write(String.format("%02X^", size) + record.toString() + "\n");
-                    size = 0;
-                    record = new StringBuilder();
-                    object.write("T" + String.format("%06X^", statement.getAddress()));
-                    record.append(statement.getInstruction());
-                    size += (statement.getInstruction().length() / 2);
-                }
-            }
-            object.write(String.format("%02X^", size) + record.toString() + "\n");
-        }
+        output.close();
+    }
 
+    /**
+     * Opens a listing or object file, in the charset of the source.
+     */
+    static BufferedWriter newWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), LineSource.CHARSET));
+    }
 
-        object.write("E" + String.format("%06X", progStartAddr));
+    /**
+     * Opens an output file, written on a thread of its own if the output is concurrent.
+     */
+    private Writer openOutput(File file) throws IOException {
+        return concurrentOutput ? new AsyncWriter(file) : newWriter(file);
+    }
 
-        object.close();
+    /**
+     * Receives the statements of the program in source order during pass 1.
+     */
+    interface StatementSink {
+        void accept(Statement statement) throws IOException;
     }
 
     private static String appendSpace(String s) {
@@ -453,71 +1441,59 @@ class Assembler {
         return progName.toString();
     }
 
-    @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    private boolean isHex(String s) {
-        return s.matches("^[a-fA-F0-9]*$");
+    static int register(Operand operand) {
+        return REGTABLE.get(operand.getLine().toUpperCase(Locale.ROOT));
     }
 
-    private int evaluateExpression(Statement statement) {
-        int result;
-
-        int firstOperand;
-        int secondOperand;
-
-        String[] tokens = statement.getFirstOperand().getFilteredLine2().split("[+\\-*/]");
-        if (SYMTABLE.containsKey(tokens[0])) {
-            firstOperand = SYMTABLE.get(tokens[0]);
-        } else if (isNum(tokens[0])) {
-            firstOperand = Integer.parseInt(tokens[0]);
-        } else {
-            statement.setError(ERRORS.get(5));
-            return -1;
+    /**
+     * Converts a string of hex digits to bytes, an odd length string is padded with a leading zero.
+     */
+    private static byte[] parseHex(String s) {
+        byte[] bytes = new byte[(s.length() + 1) / 2];
+        int digit = bytes.length * 2 - s.length();
+        for (int i = 0; i < s.length(); i++, digit++) {
+            bytes[digit / 2] |= (byte) (Character.digit(s.charAt(i), 16) << (digit % 2 == 0 ? 4 : 0));
         }
-        if (tokens.length > 1) {
-
-            char op = statement.getFirstOperand().getFilteredLine2().charAt(tokens[0].length());
-
-            if (SYMTABLE.containsKey(tokens[1])) {
-                secondOperand = SYMTABLE.get(tokens[1]);
-            } else if (isNum(tokens[1])) {
-                secondOperand = Integer.parseInt(tokens[1]);
-            } else {
-                statement.setError(ERRORS.get(5));
-                return -1;
-            }
-
-            switch (op) {
-                case '+':
-                    result = firstOperand + secondOperand;
-                    break;
-
-                case '-':
-                    result = firstOperand - secondOperand;
-                    break;
-
-                case '*':
-                    result = firstOperand * secondOperand;
-                    break;
-
-                case '/':
-                    result = firstOperand / secondOperand;
-                    break;
+        return bytes;
+    }
 
-                default:
-                    statement.setError(ERRORS.get(5));
-                    return -1;
+    @SuppressWarnings("BooleanMethodIsAlwaysInverted")
+    static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                return false;
             }
-        } else {
-            result = firstOperand;
         }
-        return result;
+        return true;
     }
 
-    private boolean isValidNum(String s) {
-        return s.matches("^[0-9]*$") && Integer.parseInt(s) < 4095;
+    /**
+     * Evaluates the operand of the statement, its value is then kept by the operand's {@link Expression}.
+     *
+     * @return false, after setting the error of the statement, if the operand can not be evaluated.
+     */
+    static boolean evaluateExpression(Statement statement, SymbolTable symtable) {
+        Expression expression = statement.getFirstOperand().getExpression();
+        if (expression.evaluate(symtable)) {
+            return true;
+        }
+        // malformed, undefined symbol or division by zero
+        statement.addError(expression.isValid() && !expression.isDefined(symtable)
+                ? Error.UNDEFINED_SYMBOL : Error.CANNOT_EVALUATE);
+        return false;
     }
 
-    private boolean isNum(String s) {
-        return s.matches("^[0-9]*$");
+    private static boolean isNum(String s) {
+        if (s.isEmpty() || s.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,154 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client of {@link AssemblerDaemon}, it takes the same arguments as {@link Main} and has the daemon assemble.
+ * A source of {@code -} is read from the standard input and sent with the request, and a listing or object file
+ * of {@code -} is returned and written to the standard output. Errors of the listing are printed to the standard error.
+ * <p>
+ * Usage: {@code AssemblerClient [--port=N] [--stop] <arguments of Main>}. The token sent with the requests is read
+ * from {@link AssemblerDaemon#tokenFile(int)}. The exit status is 0 once the files are written, 1 if the daemon could
+ * not assemble and 2 on bad arguments or if no daemon is running.
+ */
+class AssemblerClient {
+
+    public static void main(String[] args) throws IOException {
+        int port = AssemblerDaemon.DEFAULT_PORT;
+        boolean stop = false;
+        List<String> arguments = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.equals("--stop")) {
+                stop = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+
+        CommandLine commandLine;
+        try {
+            commandLine = CommandLine.parse(arguments);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: AssemblerClient [--port=N] [--stop] " + CommandLine.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        byte[] token;
+        try {
+            token = AssemblerDaemon.readToken(port);
+        } catch (IOException e) {
+            System.err.println("no token of an assembler daemon on port " + port + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        int status;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            status = stop ? stop(socket, token) : assemble(socket, token, commandLine);
+        } catch (ConnectException e) {
+            System.err.println("no assembler daemon on port " + port + ", start one with Main --daemon");
+            status = 2;
+        }
+        System.exit(status);
+    }
+
+    private static int assemble(Socket socket, byte[] token, CommandLine commandLine) throws IOException {
+        // the daemon runs in another directory
+        byte[] inline = null;
+        if (commandLine.getSource().equals("-")) {
+            inline = readAll(System.in);
+        } else {
+            commandLine.setSource(new File(commandLine.getSource()).getAbsolutePath());
+        }
+        if (!commandLine.getListFile().equals("-")) {
+            commandLine.setListFile(new File(commandLine.getListFile()).getAbsolutePath());
+        }
+        if (!commandLine.getObjectFile().equals("-")) {
+            commandLine.setObjectFile(new File(commandLine.getObjectFile()).getAbsolutePath());
+        }
+
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+        AssemblerDaemon.writeLine(out, "assemble");
+        writeToken(out, token);
+        for (String arg : commandLine.toArguments()) {
+            AssemblerDaemon.writeLine(out, "arg " + arg);
+        }
+        if (inline != null) {
+            AssemblerDaemon.writeLine(out, "inline " + inline.length);
+        }
+        AssemblerDaemon.writeLine(out, "");
+        if (inline != null) {
+            out.write(inline);
+        }
+        out.flush();
+
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        List<String> response = AssemblerDaemon.readHeader(in);
+        if (response.isEmpty() || !response.get(0).equals("ok")) {
+            System.err.println(response.isEmpty() ? "no response" : response.get(0));
+            return 1;
+        }
+        List<Integer> blocks = new ArrayList<>();
+        for (String line : response.subList(1, response.size())) {
+            String[] field = line.split(" ", 2);
+            if (field[0].equals("errors") && !commandLine.isListing() && !field[1].equals("0")) {
+                // no listing to take the messages from
+                System.err.println(field[1] + " errors");
+            } else if (field[0].equals("warning")) {
+                System.err.println("warning: " + field[1]);
+            } else if (field[0].equals("diagnostic") || field[0].equals("stats")) {
+                System.err.println(field[1]);
+            } else if (field[0].equals("list") || field[0].equals("object")) {
+                blocks.add(Integer.parseInt(field[1]));
+            }
+        }
+        for (int size : blocks) {
+            byte[] block = new byte[size];
+            new DataInputStream(in).readFully(block);
+            System.out.write(block);
+        }
+        System.out.flush();
+        return 0;
+    }
+
+    private static int stop(Socket socket, byte[] token) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        AssemblerDaemon.writeLine(out, "stop");
+        writeToken(out, token);
+        AssemblerDaemon.writeLine(out, "");
+        out.flush();
+        List<String> response = AssemblerDaemon.readHeader(socket.getInputStream());
+        return !response.isEmpty() && response.get(0).equals("ok") ? 0 : 1;
+    }
+
+    private static void writeToken(OutputStream out, byte[] token) throws IOException {
+        out.write("token ".getBytes(StandardCharsets.US_ASCII));
+        out.write(token);
+        out.write('\n');
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived assembler that takes requests on a localhost socket, so the tables are loaded and the JIT is warmed up
+ * once instead of for every assembly. Requests are handled concurrently, one connection each.
+ * <p>
+ * A message is a header of text lines ended by an empty line, followed by the byte blocks the header announces.
+ * Every request carries a {@code token <token>} line with the token the daemon writes at start to
+ * {@link #tokenFile(int)}, a file in the home directory that only its owner can read, so only the user running the
+ * daemon can have it read and write files; other requests are answered {@code failed unauthorized}.
+ * A request is {@code assemble}, then an {@code arg <argument>} line per argument of {@link CommandLine},
+ * and {@code inline <bytes>} when the source, of at most {@link #MAX_INLINE} bytes, is sent in the request.
+ * The files must be absolute paths, and {@code -} stands for the inline source, and for a listing or object file
+ * to be returned in the response.
+ * The response is {@code ok} or {@code failed <reason>}, then {@code errors <count>}, a {@code warning <message>}
+ * line per {@link AssemblyMetrics#getWarnings() warning} of the run, a
+ * {@code diagnostic <message>\t<listing line>} line per error of the listing if one was written,
+ * a {@code stats <line>} line per line of the {@code --stats} summary, and {@code list <bytes>} and
+ * {@code object <bytes>} for the returned files.
+ * A {@code stop} request shuts the daemon down once the running requests are answered.
+ */
+class AssemblerDaemon {
+
+    static final int DEFAULT_PORT = 4690;
+    static final int MAX_INLINE = 64 * 1024 * 1024;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final ServerSocket server;
+    private final ExecutorService executor;
+    private final Set<String> errorMessages = new HashSet<>();
+    private final byte[] token;
+    private final File tokenFile;
+
+    AssemblerDaemon(int port, int threads) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.token = newToken();
+        this.tokenFile = tokenFile(getPort());
+        try {
+            writeToken(tokenFile.toPath(), token);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        // loads the tables before the first request
+        for (Error error : Tables.getErrorsTable()) {
+            errorMessages.add(error.getError().trim());
+        }
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the file the token of the daemon on a port is written to.
+     */
+    static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".sicxe-daemon-" + port + ".token");
+    }
+
+    private static byte[] newToken() {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Creates the token file readable and writable only by its owner (0600), replacing the file of a daemon that
+     * was not stopped.
+     */
+    private static void writeToken(Path file, byte[] token) throws IOException {
+        Files.deleteIfExists(file);
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+            Files.createFile(file);
+            File created = file.toFile();
+            if (!created.setReadable(false, false) || !created.setReadable(true, true)
+                    || !created.setWritable(false, false) || !created.setWritable(true, true)) {
+                Files.delete(file);
+                throw new IOException("cannot make " + file + " private");
+            }
+        }
+        Files.write(file, token);
+    }
+
+    /**
+     * Reads the token of the daemon on a port, for a client.
+     *
+     * @throws IOException if there is no token file, or it can be read by other users.
+     */
+    static byte[] readToken(int port) throws IOException {
+        Path file = tokenFile(port).toPath();
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+            if (!EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE).containsAll(permissions)) {
+                throw new IOException(file + " can be accessed by other users, it must have permissions 0600");
+            }
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+        }
+        return Files.readAllBytes(file);
+    }
+
+    /**
+     * Accepts requests until the daemon is stopped, and waits for the running ones.
+     */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException e) {
+                    if (server.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                executor.execute(() -> handle(socket));
+            }
+        } finally {
+            executor.shutdown();
+            tokenFile.delete();
+        }
+    }
+
+    void stop() throws IOException {
+        server.close();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            List<String> request = readHeader(in);
+            if (request.isEmpty()) {
+                return;
+            }
+            if (!authorized(request)) {
+                writeLine(out, "failed unauthorized");
+                writeLine(out, "");
+                out.flush();
+                return;
+            }
+            switch (request.get(0)) {
+                case "assemble":
+                    assemble(request, in, out);
+                    break;
+                case "stop":
+                    writeLine(out, "ok");
+                    writeLine(out, "");
+                    out.flush();
+                    stop();
+                    break;
+                default:
+                    writeLine(out, "failed unknown request " + request.get(0));
+                    writeLine(out, "");
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the client went away, there is no one to answer
+        }
+    }
+
+    private boolean authorized(List<String> request) {
+        for (String line : request) {
+            if (line.startsWith("token ")) {
+                // compares in constant time
+                return MessageDigest.isEqual(token, line.substring("token ".length()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return false;
+    }
+
+    private void assemble(List<String> request, InputStream in, OutputStream out) throws IOException {
+        List<File> temporary = new ArrayList<>();
+        try {
+            List<String> args = new ArrayList<>();
+            byte[] inline = null;
+            for (String line : request.subList(1, request.size())) {
+                String[] field = line.split(" ", 2);
+                if (field[0].equals("arg") && field.length == 2) {
+                    args.add(field[1]);
+                } else if (field[0].equals("inline") && field.length == 2) {
+                    int size;
+                    try {
+                        size = Integer.parseInt(field[1]);
+                    } catch (NumberFormatException e) {
+                        size = -1;
+                    }
+                    if (size < 0 || size > MAX_INLINE) {
+                        throw new IllegalArgumentException("bad inline size " + field[1] + ", at most " + MAX_INLINE);
+                    }
+                    inline = new byte[size];
+                    new DataInputStream(in).readFully(inline);
+                }
+            }
+
+            CommandLine commandLine = CommandLine.parse(args);
+            if (commandLine.getSource().equals("-")) {
+                if (inline == null) {
+                    throw new IllegalArgumentException("no inline source");
+                }
+                File source = temporary("source", temporary);
+                Files.write(source.toPath(), inline);
+                commandLine.setSource(source.getPath());
+            }
+            boolean returnList = commandLine.getListFile().equals("-");
+            if (returnList) {
+                commandLine.setListFile(temporary("list", temporary).getPath());
+            }
+            boolean returnObject = commandLine.getObjectFile().equals("-");
+            if (returnObject) {
+                commandLine.setObjectFile(temporary("object", temporary).getPath());
+            }
+            for (String file : new String[]{commandLine.getSource(), commandLine.getListFile(), commandLine.getObjectFile()}) {
+                if (!new File(file).isAbsolute()) {
+                    throw new IllegalArgumentException("not an absolute path: " + file);
+                }
+            }
+
+            AssemblyMetrics metrics = commandLine.newAssembler().assembleFiles();
+
+            File listFile = new File(commandLine.getListFile());
+            boolean listing = commandLine.isListing();
+            byte[] list = returnList && listing ? Files.readAllBytes(listFile.toPath()) : null;
+            byte[] object = returnObject && commandLine.isObject()
+                    ? Files.readAllBytes(new File(commandLine.getObjectFile()).toPath()) : null;
+            List<String> diagnostics = listing ? diagnostics(listFile) : new ArrayList<>();
+            writeLine(out, "ok");
+            writeLine(out, "errors " + metrics.getErrors());
+            for (String warning : metrics.getWarnings()) {
+                writeLine(out, "warning " + warning);
+            }
+            for (String diagnostic : diagnostics) {
+                writeLine(out, "diagnostic " + diagnostic);
+            }
+            if (commandLine.isStats()) {
+                for (String line : metrics.summary().split("\n")) {
+                    writeLine(out, "stats " + line);
+                }
+            }
+            if (list != null) {
+                writeLine(out, "list " + list.length);
+            }
+            if (object != null) {
+                writeLine(out, "object " + object.length);
+            }
+            writeLine(out, "");
+            if (list != null) {
+                out.write(list);
+            }
+            if (object != null) {
+                out.write(object);
+            }
+        } catch (IOException | RuntimeException e) {
+            // IllegalArgumentException for a bad request, anything else is reported rather than left unanswered
+            writeLine(out, "failed " + String.valueOf(e.getMessage()).replace('\n', ' '));
+            writeLine(out, "");
+        } finally {
+            for (File file : temporary) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the error messages of the listing, each with the line it is written above.
+     */
+    private List<String> diagnostics(File listFile) throws IOException {
+        List<String> diagnostics = new ArrayList<>();
+        try (BufferedReader listing = Files.newBufferedReader(listFile.toPath(), LineSource.CHARSET)) {
+            String pending = null;
+            String line;
+            while ((line = listing.readLine()) != null) {
+                String message = errorMessages.contains(line.trim()) ? line.trim() : null;
+                if (pending != null) {
+                    diagnostics.add(message != null || line.isEmpty() ? pending : pending + "\t" + line);
+                }
+                pending = message;
+            }
+            if (pending != null) {
+                diagnostics.add(pending);
+            }
+        }
+        return diagnostics;
+    }
+
+    private static File temporary(String name, List<File> temporary) throws IOException {
+        File file = File.createTempFile("sicxe-" + name, null);
+        temporary.add(file);
+        return file;
+    }
+
+    /**
+     * @return the lines up to the empty line that ends the header, none at the end of the stream.
+     */
+    static List<String> readHeader(InputStream in) throws IOException {
+        List<String> header = new ArrayList<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            header.add(line);
+        }
+        if (line == null && !header.isEmpty()) {
+            throw new EOFException("incomplete header");
+        }
+        return header;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                return line.size() == 0 ? null : line.toString("UTF-8");
+            }
+            line.write(b);
+        }
+        return line.toString("UTF-8");
+    }
+
+    static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+}
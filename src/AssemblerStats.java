@@ -0,0 +1,203 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of all the assemblies of the JVM, added up from the {@link AssemblyMetrics} of every run.
+ * Assemblies running at the same time, as in the daemon, add to it concurrently.
+ * <p>
+ * {@link #register()} publishes it as the MBean {@value #OBJECT_NAME}. The daemon registers it, a one-shot run
+ * does not, since it would only make it start slower.
+ */
+class AssemblerStats implements AssemblerStatsMBean {
+
+    static final String OBJECT_NAME = "sicxe:type=Assembler";
+
+    private static final AssemblerStats INSTANCE = new AssemblerStats();
+
+    private final LongAdder assemblies = new LongAdder();
+    private final LongAdder failedAssemblies = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder[] phaseNanos = adders(AssemblyMetrics.PHASES.length);
+    private final LongAdder[] statements = adders(AssemblyMetrics.KINDS.length);
+
+    private volatile AssemblyMetrics last;
+
+    static AssemblerStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the stats with the platform MBean server, if they are not already.
+     */
+    static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(INSTANCE, name);
+        }
+    }
+
+    void add(AssemblyMetrics metrics) {
+        assemblies.increment();
+        errors.add(metrics.getErrors());
+        totalNanos.add(metrics.getNanos());
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i].add(metrics.getPhaseNanos(i));
+        }
+        for (int i = 0; i < statements.length; i++) {
+            statements[i].add(metrics.getStatements(i));
+        }
+        last = metrics;
+    }
+
+    /**
+     * Counts an assembly that failed on an I/O error.
+     */
+    void fail() {
+        failedAssemblies.increment();
+    }
+
+    @Override
+    public long getAssemblies() {
+        return assemblies.sum();
+    }
+
+    @Override
+    public long getFailedAssemblies() {
+        return failedAssemblies.sum();
+    }
+
+    @Override
+    public long getLines() {
+        long lines = 0;
+        for (LongAdder kind : statements) {
+            lines += kind.sum();
+        }
+        return lines;
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getComments() {
+        return statements[AssemblyMetrics.COMMENT].sum();
+    }
+
+    @Override
+    public long getDirectives() {
+        return statements[AssemblyMetrics.DIRECTIVE].sum();
+    }
+
+    @Override
+    public long getFormat1Instructions() {
+        return statements[AssemblyMetrics.FORMAT1].sum();
+    }
+
+    @Override
+    public long getFormat2Instructions() {
+        return statements[AssemblyMetrics.FORMAT2].sum();
+    }
+
+    @Override
+    public long getFormat3Instructions() {
+        return statements[AssemblyMetrics.FORMAT3].sum();
+    }
+
+    @Override
+    public long getFormat4Instructions() {
+        return statements[AssemblyMetrics.FORMAT4].sum();
+    }
+
+    @Override
+    public long getUnrecognizedStatements() {
+        return statements[AssemblyMetrics.UNRECOGNIZED].sum();
+    }
+
+    @Override
+    public long getReadNanos() {
+        return phaseNanos[AssemblyMetrics.READ].sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return phaseNanos[AssemblyMetrics.PARSE].sum();
+    }
+
+    @Override
+    public long getPass1Nanos() {
+        return phaseNanos[AssemblyMetrics.PASS1].sum();
+    }
+
+    @Override
+    public long getValidateNanos() {
+        return phaseNanos[AssemblyMetrics.VALIDATE].sum();
+    }
+
+    @Override
+    public long getListingNanos() {
+        return phaseNanos[AssemblyMetrics.LISTING].sum();
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return phaseNanos[AssemblyMetrics.ENCODE].sum();
+    }
+
+    @Override
+    public long getObjectNanos() {
+        return phaseNanos[AssemblyMetrics.OBJECT].sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public double getLastLinesPerSecond() {
+        AssemblyMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getLinesPerSecond();
+    }
+
+    @Override
+    public int getLastSymbols() {
+        AssemblyMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getSymbols();
+    }
+
+    @Override
+    public long getLastErrors() {
+        AssemblyMetrics metrics = last;
+        return metrics == null ? 0 : metrics.getErrors();
+    }
+
+    @Override
+    public void reset() {
+        assemblies.reset();
+        failedAssemblies.reset();
+        errors.reset();
+        totalNanos.reset();
+        for (LongAdder adder : phaseNanos) {
+            adder.reset();
+        }
+        for (LongAdder adder : statements) {
+            adder.reset();
+        }
+        last = null;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Management interface of {@link AssemblerStats}. The counts and times add up every assembly of the JVM,
+ * the {@code Last} attributes are of the latest one.
+ */
+public interface AssemblerStatsMBean {
+
+    long getAssemblies();
+
+    long getFailedAssemblies();
+
+    long getLines();
+
+    long getErrors();
+
+    long getComments();
+
+    long getDirectives();
+
+    long getFormat1Instructions();
+
+    long getFormat2Instructions();
+
+    long getFormat3Instructions();
+
+    long getFormat4Instructions();
+
+    long getUnrecognizedStatements();
+
+    long getReadNanos();
+
+    long getParseNanos();
+
+    long getPass1Nanos();
+
+    long getValidateNanos();
+
+    long getListingNanos();
+
+    long getEncodeNanos();
+
+    long getObjectNanos();
+
+    long getTotalNanos();
+
+    double getLastLinesPerSecond();
+
+    int getLastSymbols();
+
+    long getLastErrors();
+
+    void reset();
+}
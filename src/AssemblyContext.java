@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Mutable state of a single assembly run.
+ * Every call to {@link Assembler#assemble()} works on a fresh context, so assemblers never share symbols.
+ * <p>
+ * The program is the first {@link ControlSection}, the one started by START; pass 1 works on the last one.
+ */
+class AssemblyContext {
+
+    private final List<ControlSection> sections = new ArrayList<>();
+    private final HashMap<String, ControlSection> sectionsByName = new HashMap<>();
+    private final List<Statement> statements = new ArrayList<>();
+    private final AssemblyMetrics metrics = new AssemblyMetrics();
+
+    private ControlSection section;
+    private boolean controlSections = true;
+
+    // literals waiting for the next pool, by value
+    private final LinkedHashMap<String, Statement> literals = new LinkedHashMap<>();
+    private int literalPools;
+    private boolean literalPoolsEnabled = true;
+
+    // BASE statement in effect, and every one pass 1 has seen
+    private Statement base;
+    private final List<Statement> bases = new ArrayList<>();
+
+    // statements the relaxation made format 4, by index in the source
+    private BitSet format4 = new BitSet();
+    private int statementIndex;
+
+    // lines with errors so far, and the number that stops pass 1
+    private long errors;
+    private long maxErrors = Long.MAX_VALUE;
+    private boolean aborted;
+
+    private boolean started = false;
+    private boolean ended = false;
+    private int locctr; //location counter
+
+    AssemblyContext() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSymbols the number of symbols the program is expected to define, the symbol table of the
+     *                        program makes room for them up front.
+     */
+    AssemblyContext(int expectedSymbols) {
+        section = new ControlSection(expectedSymbols);
+        sections.add(section);
+    }
+
+    /**
+     * @return the symbol table of the section pass 1 is in.
+     */
+    SymbolTable getSymbolTable() {
+        return section.getSymbolTable();
+    }
+
+    /**
+     * @return the number of symbols of all the sections.
+     */
+    int getSymbolCount() {
+        int symbols = 0;
+        for (ControlSection section : sections) {
+            symbols += section.getSymbolTable().size();
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the section pass 1 is in.
+     */
+    ControlSection getSection() {
+        return section;
+    }
+
+    List<ControlSection> getSections() {
+        return sections;
+    }
+
+    /**
+     * Ends the section pass 1 is in and starts a new one at address 0.
+     */
+    void startSection(String name) {
+        section = new ControlSection(name);
+        sections.add(section);
+        sectionsByName.put(name, section);
+    }
+
+    boolean hasSection(String name) {
+        return name.equals(getProgName()) || sectionsByName.containsKey(name);
+    }
+
+    /**
+     * @return true if the program has to be linked: it has several sections, or imports or exports symbols.
+     * Its object file then carries define, refer and modification records.
+     */
+    boolean isRelocatable() {
+        ControlSection program = sections.get(0);
+        return sections.size() > 1 || !program.getExtDefs().isEmpty() || !program.getExtRefs().isEmpty();
+    }
+
+    /**
+     * @return false if CSECT, EXTDEF and EXTREF are errors, in the modes that do not keep the program.
+     */
+    boolean isControlSections() {
+        return controlSections;
+    }
+
+    void setControlSections(boolean controlSections) {
+        this.controlSections = controlSections;
+    }
+
+    List<Statement> getStatements() {
+        return statements;
+    }
+
+    AssemblyMetrics getMetrics() {
+        return metrics;
+    }
+
+    String getProgName() {
+        return sections.get(0).getName();
+    }
+
+    void setProgName(String progName) {
+        sections.get(0).setName(progName);
+    }
+
+    int getProgStartAddr() {
+        return sections.get(0).getStartAddr();
+    }
+
+    void setProgStartAddr(int progStartAddr) {
+        sections.get(0).setStartAddr(progStartAddr);
+    }
+
+    int getProgLength() {
+        return sections.get(0).getLength();
+    }
+
+    void setProgLength(int progLength) {
+        sections.get(0).setLength(progLength);
+    }
+
+    /**
+     * @return the literals used since the last pool, the entries of the next one.
+     */
+    LinkedHashMap<String, Statement> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return the number of literal pools placed so far.
+     */
+    int getLiteralPools() {
+        return literalPools;
+    }
+
+    void setLiteralPools(int literalPools) {
+        this.literalPools = literalPools;
+    }
+
+    /**
+     * @return false if literals and LTORG are errors, in the modes that only keep the source lines.
+     */
+    boolean isLiteralPoolsEnabled() {
+        return literalPoolsEnabled;
+    }
+
+    void setLiteralPoolsEnabled(boolean literalPoolsEnabled) {
+        this.literalPoolsEnabled = literalPoolsEnabled;
+    }
+
+    /**
+     * @return the BASE statement in effect, null before the first one, after NOBASE and in a new section.
+     */
+    Statement getBase() {
+        return base;
+    }
+
+    void setBase(Statement base) {
+        this.base = base;
+    }
+
+    /**
+     * @return the BASE statements of the program, in source order.
+     */
+    List<Statement> getBases() {
+        return bases;
+    }
+
+    /**
+     * Counts lines found to have errors, each once: pass 1 counts the lines it finds errors in, and the checks
+     * after it the lines they find the first error in.
+     */
+    void countErrors(long lines) {
+        errors += lines;
+    }
+
+    /**
+     * @return the number of lines with errors so far, the object file is only written if there are none.
+     */
+    long getErrors() {
+        return errors;
+    }
+
+    long getMaxErrors() {
+        return maxErrors;
+    }
+
+    void setMaxErrors(long maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return true if pass 1 stopped reading the source because the lines with errors reached the maximum.
+     */
+    boolean isAborted() {
+        return aborted;
+    }
+
+    void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
+    BitSet getFormat4() {
+        return format4;
+    }
+
+    /**
+     * Sets the statements pass 1 makes format 4, by their index among the source statements.
+     */
+    void setFormat4(BitSet format4) {
+        this.format4 = format4;
+    }
+
+    /**
+     * Counts a source statement pass 1 defines.
+     *
+     * @return true if the relaxation made it format 4.
+     */
+    boolean nextFormat4() {
+        return format4.get(statementIndex++);
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    void setStarted(boolean started) {
+        this.started = started;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    void setEnded(boolean ended) {
+        this.ended = ended;
+    }
+
+    int getLocctr() {
+        return locctr;
+    }
+
+    void setLocctr(int locctr) {
+        this.locctr = locctr;
+    }
+}
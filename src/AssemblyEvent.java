@@ -0,0 +1,135 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JFR event {@value #NAME} of an assembly run, with the time of each phase and the counters of its
+ * {@link AssemblyMetrics}.
+ * <p>
+ * The sources compile for Java 8, where {@code jdk.jfr} is not part of the platform API, so the event type is defined
+ * at run time through {@code jdk.jfr.EventFactory}, once a flight recording is started. Without JFR, or without
+ * a recording, the event does nothing.
+ */
+final class AssemblyEvent {
+
+    static final String NAME = "sicxe.Assembly";
+
+    private static final AssemblyEvent NONE = new AssemblyEvent(null);
+
+    // long fields, the phases are time spans in nanoseconds
+    private static final String[] FIELDS = {"read", "parse", "pass1", "validate", "listing", "encode", "object",
+            "lines", "errors", "symbols", "comments", "directives", "format1", "format2", "format3", "format4",
+            "unrecognized"};
+
+    private static Method isInitialized;
+    private static Object factory;
+    private static Method newEvent;
+    private static Method begin;
+    private static Method set;
+    private static Method commit;
+    private static boolean unavailable;
+
+    private final Object event;
+
+    private AssemblyEvent(Object event) {
+        this.event = event;
+    }
+
+    /**
+     * Starts the event of a run.
+     */
+    static AssemblyEvent begin() {
+        try {
+            Object event = newEvent();
+            if (event == null) {
+                return NONE;
+            }
+            begin.invoke(event);
+            return new AssemblyEvent(event);
+        } catch (ReflectiveOperationException e) {
+            unavailable = true;
+            return NONE;
+        }
+    }
+
+    /**
+     * Ends the event and commits it with the metrics of the run.
+     */
+    void commit(AssemblyMetrics metrics) {
+        if (event == null) {
+            return;
+        }
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < AssemblyMetrics.PHASES.length; i++) {
+            values.add(metrics.getPhaseNanos(i));
+        }
+        values.add(metrics.getLines());
+        values.add(metrics.getErrors());
+        values.add((long) metrics.getSymbols());
+        for (int i = 0; i < AssemblyMetrics.KINDS.length; i++) {
+            values.add(metrics.getStatements(i));
+        }
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                set.invoke(event, i, values.get(i));
+            }
+            commit.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            unavailable = true;
+        }
+    }
+
+    /**
+     * @return a new event, or null if JFR is not available or not recording yet.
+     */
+    private static synchronized Object newEvent() throws ReflectiveOperationException {
+        if (unavailable) {
+            return null;
+        }
+        if (isInitialized == null) {
+            try {
+                isInitialized = Class.forName("jdk.jfr.FlightRecorder").getMethod("isInitialized");
+            } catch (ClassNotFoundException e) {
+                unavailable = true;
+                return null;
+            }
+        }
+        if (factory == null) {
+            if (!(Boolean) isInitialized.invoke(null)) {
+                return null;
+            }
+            defineEvent();
+        }
+        return newEvent.invoke(factory);
+    }
+
+    private static void defineEvent() throws ReflectiveOperationException {
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+        List<Object> annotations = Arrays.asList(
+                annotation.newInstance(Class.forName("jdk.jfr.Name"), NAME),
+                annotation.newInstance(Class.forName("jdk.jfr.Label"), "Assembly"),
+                annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[]{"SIC/XE Assembler"}));
+        Object nanoseconds = annotation.newInstance(Class.forName("jdk.jfr.Timespan"), "NANOSECONDS");
+        List<Object> fields = new ArrayList<>();
+        for (int i = 0; i < FIELDS.length; i++) {
+            List<Object> timespan = i < AssemblyMetrics.PHASES.length
+                    ? Collections.singletonList(nanoseconds) : Collections.emptyList();
+            fields.add(field.newInstance(long.class, FIELDS[i], timespan));
+        }
+
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        Class<?> event = Class.forName("jdk.jfr.Event");
+        factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+        newEvent = eventFactory.getMethod("newEvent");
+        begin = event.getMethod("begin");
+        set = event.getMethod("set", int.class, Object.class);
+        commit = event.getMethod("commit");
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Phase timings and counters of a single assembly run, kept in its {@link AssemblyContext}.
+ * <p>
+ * The time is split by switching between phases: {@link #enter(int)} adds the time since the last switch to the
+ * phase being left, so the phases always add up to the whole run, and a phase can be entered in the middle of
+ * another one and left back to it. Only the thread driving the run switches phases, the parallel parts count as the
+ * phase they were started in. A listing written while pass 2 encodes only counts for the time pass 2 waits for it.
+ */
+class AssemblyMetrics {
+
+    static final int READ = 0;
+    static final int PARSE = 1;
+    static final int PASS1 = 2;
+    static final int VALIDATE = 3;
+    static final int LISTING = 4;
+    static final int ENCODE = 5;
+    static final int OBJECT = 6;
+    static final String[] PHASES = {"read", "parse", "pass 1", "validate", "listing", "encode", "object"};
+
+    // statement kinds
+    static final int COMMENT = 0;
+    static final int DIRECTIVE = 1;
+    static final int FORMAT1 = 2;
+    static final int FORMAT2 = 3;
+    static final int FORMAT3 = 4;
+    static final int FORMAT4 = 5;
+    static final int UNRECOGNIZED = 6;
+    static final String[] KINDS = {"comments", "directives", "format 1", "format 2", "format 3", "format 4",
+            "unrecognized"};
+
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] statements = new long[KINDS.length];
+    private final long start = System.nanoTime();
+    private long since = start;
+    private int phase = READ;
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private long errors;
+    private int symbols;
+    private long nanos;
+
+    /**
+     * Switches to a phase.
+     *
+     * @return the phase that was left, to switch back to.
+     */
+    int enter(int phase) {
+        long now = System.nanoTime();
+        phaseNanos[this.phase] += now - since;
+        since = now;
+        int left = this.phase;
+        this.phase = phase;
+        return left;
+    }
+
+    /**
+     * Counts a statement of the program by its kind, called once per statement by pass 1.
+     */
+    void count(Statement statement) {
+        if (statement.isComment()) {
+            statements[COMMENT]++;
+        } else if (statement.getMnemonic() == null) {
+            statements[UNRECOGNIZED]++;
+        } else if (statement.getMnemonic().isDirective()) {
+            statements[DIRECTIVE]++;
+        } else {
+            statements[FORMAT1 + Math.min(Math.max(statement.getSize(), 1), 4) - 1]++;
+        }
+    }
+
+    /**
+     * Ends the run, the time since the last switch goes to the current phase.
+     */
+    void finish(AssemblyContext context) {
+        enter(phase);
+        errors = context.getErrors();
+        if (!context.isEnded() && !context.isAborted()) {
+            // missing END statement
+            errors++;
+        }
+        nanos = since - start;
+        symbols = context.getSymbolCount();
+    }
+
+    long getPhaseNanos(int phase) {
+        return phaseNanos[phase];
+    }
+
+    long getStatements(int kind) {
+        return statements[kind];
+    }
+
+    /**
+     * @return the number of statements pass 1 went through, comments included.
+     */
+    long getLines() {
+        long lines = 0;
+        for (long count : statements) {
+            lines += count;
+        }
+        return lines;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Records something asked of the run that its mode does not do.
+     */
+    void warn(String warning) {
+        warnings.add(warning);
+    }
+
+    List<String> getWarnings() {
+        return warnings;
+    }
+
+    int getSymbols() {
+        return symbols;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    double getLinesPerSecond() {
+        return nanos == 0 ? 0 : getLines() * 1e9 / nanos;
+    }
+
+    /**
+     * @return the statistics for {@code --stats}, one line each.
+     */
+    String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-14s%10.1f ms\n", "total", nanos / 1e6));
+        for (int i = 0; i < PHASES.length; i++) {
+            summary.append(String.format("  %-12s%10.1f ms %5.1f%%\n", PHASES[i], phaseNanos[i] / 1e6,
+                    nanos == 0 ? 0 : phaseNanos[i] * 100.0 / nanos));
+        }
+        summary.append(String.format("%-14s%10d (%.0f lines/s)\n", "lines", getLines(), getLinesPerSecond()));
+        for (int i = 0; i < KINDS.length; i++) {
+            summary.append(String.format("  %-12s%10d\n", KINDS[i], statements[i]));
+        }
+        summary.append(String.format("%-14s%10d\n", "symbols", symbols));
+        summary.append(String.format("%-14s%10d\n", "errors", errors));
+        return summary.toString();
+    }
+}
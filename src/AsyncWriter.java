@@ -0,0 +1,139 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer of a file whose writes happen on an {@link OutputTasks} thread, so producing the output overlaps with
+ * writing it. Characters are collected in blocks that go to the writing thread through a short queue; when the
+ * queue is full the producer waits, so only a few blocks are ever held.
+ */
+class AsyncWriter extends Writer {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int QUEUED_BLOCKS = 4;
+
+    private static final Block END = new Block(0);
+
+    private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+    private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 2);
+    private final Future<?> task;
+
+    private Block block = new Block(BLOCK_SIZE);
+    private boolean closed;
+
+    AsyncWriter(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), LineSource.CHARSET);
+        this.task = OutputTasks.submit(() -> {
+            try (Writer writer = out) {
+                Block block;
+                while ((block = take()) != END) {
+                    writer.write(block.chars, 0, block.length);
+                    block.length = 0;
+                    free.offer(block);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, block.chars.length - block.length);
+            System.arraycopy(chars, offset, block.chars, block.length, n);
+            block.length += n;
+            offset += n;
+            length -= n;
+            if (block.length == block.chars.length) {
+                next();
+            }
+        }
+    }
+
+    @Override
+    public void write(String s, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, block.chars.length - block.length);
+            s.getChars(offset, offset + n, block.chars, block.length);
+            block.length += n;
+            offset += n;
+            length -= n;
+            if (block.length == block.chars.length) {
+                next();
+            }
+        }
+    }
+
+    /**
+     * Does nothing, the blocks are written as they fill up and the rest on {@link #close()}.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes what is left and waits until the file is written and closed.
+     *
+     * @throws IOException if writing the file failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (block.length > 0) {
+            hand(block);
+        }
+        hand(END);
+        OutputTasks.await(task);
+    }
+
+    /**
+     * Hands the full block over and starts another one.
+     */
+    private void next() throws IOException {
+        hand(block);
+        Block recycled = free.poll();
+        block = recycled != null ? recycled : new Block(BLOCK_SIZE);
+    }
+
+    private void hand(Block block) throws IOException {
+        try {
+            while (!blocks.offer(block, 10, TimeUnit.MILLISECONDS)) {
+                if (task.isDone()) {
+                    // the writing thread failed, report why
+                    OutputTasks.await(task);
+                    throw new IOException("output closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing the output");
+        }
+    }
+
+    private Block take() throws InterruptedIOException {
+        try {
+            return blocks.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while writing the output");
+        }
+    }
+
+    private static final class Block {
+
+        final char[] chars;
+        int length;
+
+        Block(int size) {
+            this.chars = new char[size];
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arguments of the assembler, shared by {@link Main} and the daemon client {@link AssemblerClient}.
+ * <p>
+ * Usage: {@code [--one-pass] [--streaming|--in-memory] [--compact] [--mapped] [--parallelism=N]
+ * [--output=both|object|listing] [--relax] [--max-errors=N] [--stats] [source [listFile [objectFile]]]}, the files are
+ * source.txt, listFile and objectFile by default. Streaming and mapped input are chosen by the size of the source
+ * unless forced, {@code --in-memory} never streams. {@code --compact} keeps the program in a {@link StatementStore}
+ * ({@link Assembler#setCompact}). Only one of {@code --one-pass}, {@code --streaming} and {@code --compact} can be
+ * given, and {@code --relax} and a parallelism above 1 need none of them. {@code --output} selects the files
+ * written, the other one is left alone. {@code --relax} picks format 3 or 4 for every instruction
+ * ({@link Assembler#setRelaxation}). {@code --max-errors} stops pass 1 once that many lines have errors
+ * ({@link Assembler#setMaxErrors}). {@code --stats} prints the {@link AssemblyMetrics} of the run to the standard
+ * error.
+ */
+class CommandLine {
+
+    static final String USAGE = "[--one-pass] [--streaming|--in-memory] [--compact] [--mapped] [--parallelism=N]"
+            + " [--output=both|object|listing] [--relax] [--max-errors=N] [--stats] [source [listFile [objectFile]]]";
+
+    private final List<String> options = new ArrayList<>();
+    private String source = "source.txt";
+    private String listFile = "listFile";
+    private String objectFile = "objectFile";
+
+    private boolean onePass;
+    private boolean streaming;
+    private boolean inMemory;
+    private boolean compact;
+    private boolean mappedInput;
+    private int parallelism;
+    private boolean relaxation;
+    private long maxErrors;
+    private boolean stats;
+    private boolean listing = true;
+    private boolean object = true;
+
+    /**
+     * @throws IllegalArgumentException on an unknown option, options that contradict each other or too many files.
+     */
+    static CommandLine parse(List<String> args) {
+        CommandLine commandLine = new CommandLine();
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            String[] option = arg.split("=", 2);
+            switch (option[0]) {
+                case "--one-pass":
+                    commandLine.onePass = true;
+                    break;
+                case "--streaming":
+                    commandLine.streaming = true;
+                    break;
+                case "--in-memory":
+                    commandLine.inMemory = true;
+                    break;
+                case "--compact":
+                    commandLine.compact = true;
+                    break;
+                case "--mapped":
+                    commandLine.mappedInput = true;
+                    break;
+                case "--parallelism":
+                    if (option.length < 2) {
+                        throw new IllegalArgumentException("--parallelism needs a value");
+                    }
+                    try {
+                        commandLine.parallelism = Integer.parseInt(option[1]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("bad parallelism " + option[1]);
+                    }
+                    if (commandLine.parallelism < 1) {
+                        throw new IllegalArgumentException("bad parallelism " + option[1]);
+                    }
+                    break;
+                case "--output":
+                    String output = option.length < 2 ? "" : option[1];
+                    if (!output.equals("both") && !output.equals("object") && !output.equals("listing")) {
+                        throw new IllegalArgumentException("bad output " + output + ", both, object or listing");
+                    }
+                    commandLine.listing = !output.equals("object");
+                    commandLine.object = !output.equals("listing");
+                    break;
+                case "--relax":
+                    commandLine.relaxation = true;
+                    break;
+                case "--max-errors":
+                    if (option.length < 2) {
+                        throw new IllegalArgumentException("--max-errors needs a value");
+                    }
+                    try {
+                        commandLine.maxErrors = Long.parseLong(option[1]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("bad max errors " + option[1]);
+                    }
+                    if (commandLine.maxErrors < 1) {
+                        throw new IllegalArgumentException("bad max errors " + option[1]);
+                    }
+                    break;
+                case "--stats":
+                    commandLine.stats = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+            commandLine.options.add(arg);
+        }
+
+        commandLine.checkModes();
+        if (files.size() > 3) {
+            throw new IllegalArgumentException("too many files");
+        }
+        if (files.size() > 0) {
+            commandLine.source = files.get(0);
+        }
+        if (files.size() > 1) {
+            commandLine.listFile = files.get(1);
+        }
+        if (files.size() > 2) {
+            commandLine.objectFile = files.get(2);
+        }
+        return commandLine;
+    }
+
+    private void checkModes() {
+        if (streaming && inMemory) {
+            throw new IllegalArgumentException("--streaming and --in-memory contradict each other");
+        }
+        String mode = null;
+        for (String option : new String[]{onePass ? "--one-pass" : null, streaming ? "--streaming" : null,
+                compact ? "--compact" : null}) {
+            if (option != null && mode != null) {
+                throw new IllegalArgumentException(mode + " and " + option + " are different modes");
+            }
+            mode = option != null ? option : mode;
+        }
+        if (mode != null && relaxation) {
+            throw new IllegalArgumentException("--relax needs the two-pass assembler, not " + mode);
+        }
+        if (mode != null && parallelism > 1) {
+            throw new IllegalArgumentException("--parallelism needs the two-pass assembler, " + mode + " is serial");
+        }
+    }
+
+    /**
+     * @return the options followed by the three files, as they would be parsed again.
+     */
+    List<String> toArguments() {
+        List<String> args = new ArrayList<>(options);
+        args.add(source);
+        args.add(listFile);
+        args.add(objectFile);
+        return args;
+    }
+
+    Assembler newAssembler() {
+        Assembler assembler = new Assembler(source, listFile, objectFile);
+        assembler.setOnePass(onePass);
+        if (streaming || inMemory) {
+            assembler.setStreaming(streaming);
+        }
+        assembler.setCompact(compact);
+        if (mappedInput) {
+            assembler.setMappedInput(true);
+        }
+        if (parallelism > 0) {
+            assembler.setParallelism(parallelism);
+        }
+        assembler.setOutputs(listing, object);
+        assembler.setRelaxation(relaxation);
+        if (maxErrors > 0) {
+            assembler.setMaxErrors(maxErrors);
+        }
+        return assembler;
+    }
+
+    boolean isListing() {
+        return listing;
+    }
+
+    boolean isObject() {
+        return object;
+    }
+
+    boolean isStats() {
+        return stats;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    String getListFile() {
+        return listFile;
+    }
+
+    void setListFile(String listFile) {
+        this.listFile = listFile;
+    }
+
+    String getObjectFile() {
+        return objectFile;
+    }
+
+    void setObjectFile(String objectFile) {
+        this.objectFile = objectFile;
+    }
+}
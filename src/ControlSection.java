@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Part of a program that is assembled on its own and placed by the linking loader: the one started by START, and
+ * one per CSECT. Every section has its own symbols, starts at its own address, and exports the symbols listed by
+ * EXTDEF to the other sections, which import them with EXTREF.
+ * <p>
+ * External symbols are kept in the symbol table with the value 0, so expressions that refer to them are defined
+ * and evaluate to what the loader has to add to.
+ */
+class ControlSection {
+
+    private final SymbolTable symbolTable;
+    // symbols defined by EQU with a value that is not an address
+    private final Set<String> absolute = new HashSet<>();
+    private final List<String> extDefs = new ArrayList<>();
+    private final Set<String> extRefs = new LinkedHashSet<>();
+
+    private String name;
+    private int startAddr;
+    private int length;
+
+    /**
+     * @param expectedSymbols the number of symbols the symbol table makes room for.
+     */
+    ControlSection(int expectedSymbols) {
+        symbolTable = new SymbolTable(expectedSymbols);
+    }
+
+    ControlSection(String name) {
+        this.name = name;
+        symbolTable = new SymbolTable();
+    }
+
+    SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    int getStartAddr() {
+        return startAddr;
+    }
+
+    void setStartAddr(int startAddr) {
+        this.startAddr = startAddr;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return the symbols of the EXTDEF statements, in source order.
+     */
+    List<String> getExtDefs() {
+        return extDefs;
+    }
+
+    /**
+     * @return the symbols of the EXTREF statements, in source order.
+     */
+    Set<String> getExtRefs() {
+        return extRefs;
+    }
+
+    boolean isExternal(String symbol) {
+        return extRefs.contains(symbol);
+    }
+
+    /**
+     * Marks a symbol defined by EQU as an absolute value, which the loader leaves alone.
+     */
+    void setAbsolute(String symbol) {
+        absolute.add(symbol);
+    }
+
+    /**
+     * @return true if the expression refers to an external symbol.
+     */
+    boolean isExternal(Expression expression) {
+        for (String symbol : expression.getSymbols()) {
+            if (extRefs.contains(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out what the loader has to add to the value of an expression: the address of this section if the
+     * value is an address in it, and the addresses of the external symbols the expression refers to.
+     *
+     * @param modifications receives the symbols to add, signed, e.g. {@code +COPY} and {@code -BUFFER}.
+     * @return 1 for an address in this section, 0 for an absolute value, or -1 if the value can not be relocated,
+     * e.g. the sum of two addresses.
+     */
+    int relocate(Expression expression, List<String> modifications) {
+        List<String> symbols = expression.getSymbols();
+        int[] coefficients = expression.getCoefficients();
+        if (coefficients == null) {
+            // addresses multiplied or divided
+            for (String symbol : symbols) {
+                if (!absolute.contains(symbol)) {
+                    return -1;
+                }
+            }
+            return 0;
+        }
+
+        int relative = 0;
+        for (int i = 0; i < symbols.size(); i++) {
+            String symbol = symbols.get(i);
+            if (extRefs.contains(symbol)) {
+                if (coefficients[i] == 1 || coefficients[i] == -1) {
+                    modifications.add((coefficients[i] > 0 ? "+" : "-") + symbol);
+                } else if (coefficients[i] != 0) {
+                    return -1;
+                }
+            } else if (!absolute.contains(symbol)) {
+                relative += coefficients[i];
+            }
+        }
+        if (relative == 1) {
+            modifications.add("+" + name);
+        }
+        return relative == 0 || relative == 1 ? relative : -1;
+    }
+}
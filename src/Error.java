@@ -1,11 +1,52 @@
+/**
+ * Message of a diagnostic, from the errors table.
+ * <p>
+ * Diagnostics are identified by stable codes, the constants below, which are the positions of their messages in the
+ * table. A statement keeps the codes of all its diagnostics as a bit set, so there are at most 64.
+ */
 class Error {
 
+    static final int DUPLICATE_LABEL = 0;
+    static final int CANNOT_HAVE_LABEL = 1;
+    static final int CANNOT_HAVE_OPERAND = 2;
+    static final int WRONG_PREFIX = 3;
+    static final int UNRECOGNIZED_OPERATION = 4;
+    static final int UNDEFINED_SYMBOL = 5;
+    static final int NOT_HEX = 6;
+    static final int NOT_FORMAT4 = 7;
+    static final int ILLEGAL_REGISTER = 8;
+    static final int MISSING_END = 9;
+    static final int MISSING_START = 10;
+    static final int NOT_DATA_TYPE = 11;
+    static final int END_LABEL = 12;
+    static final int MISSING_OPERAND = 13;
+    static final int ILLEGAL_LABEL = 14;
+    static final int NOT_INDEXED = 15;
+    static final int MISSING_SOURCE_REGISTER = 16;
+    static final int REQUIRES_LABEL = 17;
+    static final int LABEL_NOT_ALLOWED = 18;
+    static final int CANNOT_EVALUATE = 19;
+    static final int ODD_HEX = 20;
+    static final int EXTERNAL_NEEDS_FORMAT4 = 21;
+    static final int ILLEGAL_RELOCATABLE = 22;
+    static final int CONTROL_SECTIONS_UNSUPPORTED = 23;
+    static final int LITERALS_UNSUPPORTED = 24;
+    static final int OUT_OF_RANGE = 25;
+    static final int TOO_MANY_ERRORS = 26;
+
     private String error;
 
     Error(String error) {
         this.error = error;
     }
 
+    /**
+     * @return the message of the diagnostic with the code.
+     */
+    static String message(int code) {
+        return Tables.getErrorsTable().get(code).getError();
+    }
+
     public String getError() {
         return error;
     }
@@ -0,0 +1,431 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Operand expression compiled to a postfix program.
+ * <p>
+ * Terms are symbols and decimal constants, combined with + - * / (usual precedence, left to right),
+ * unary minus and parentheses, e.g. {@code (BUFEND-BUFFER)/3}. Constant subexpressions are folded when compiling.
+ * Evaluation does not allocate, and its result is kept until {@link #forget()}, so an operand that pass 1 already
+ * evaluated is not evaluated again in pass 2. Once {@link #bind bound} to a symbol table, the expression reads its
+ * symbols from that table by id.
+ */
+class Expression {
+
+    private static final int CONSTANT = 0;
+    private static final int SYMBOL = 1;
+    private static final int ADD = 2;
+    private static final int SUBTRACT = 3;
+    private static final int MULTIPLY = 4;
+    private static final int DIVIDE = 5;
+    private static final int NEGATE = 6;
+
+    // opcodes, CONSTANT and SYMBOL are followed by the value or the symbol index
+    private final int[] code;
+    private final String[] symbols;
+    private final int[] stack;
+    private final boolean valid;
+
+    // ids of the symbols in the table they are bound to
+    private int[] ids;
+    private SymbolTable bound;
+
+    private boolean evaluated;
+    private int value;
+
+    private Expression(int[] code, String[] symbols, int depth, boolean valid) {
+        this.code = code;
+        this.symbols = symbols;
+        this.stack = new int[depth];
+        this.valid = valid;
+        forget();
+    }
+
+    static Expression compile(String expression) {
+        Parser parser = new Parser(expression);
+        Node tree = parser.parseSum();
+        if (tree == null || parser.position != expression.length()) {
+            return new Expression(new int[0], new String[0], 0, false);
+        }
+        tree = fold(tree);
+        if (tree == null) {
+            return new Expression(new int[0], new String[0], 0, false);
+        }
+
+        List<String> symbols = new ArrayList<>();
+        int[] code = new int[2 * size(tree)];
+        int[] length = {0};
+        int depth = emit(tree, code, length, symbols);
+        return new Expression(Arrays.copyOf(code, length[0]), symbols.toArray(new String[0]), depth, true);
+    }
+
+    /**
+     * @return an expression that is a single symbol, whatever characters the symbol has.
+     */
+    static Expression symbol(String symbol) {
+        return new Expression(new int[]{SYMBOL, 0}, new String[]{symbol}, 1, true);
+    }
+
+    /**
+     * @return false if the expression is malformed, it can not be evaluated then.
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the distinct symbols the expression refers to.
+     */
+    List<String> getSymbols() {
+        return Collections.unmodifiableList(Arrays.asList(symbols));
+    }
+
+    boolean hasSymbols() {
+        return symbols.length > 0;
+    }
+
+    /**
+     * @return true if the expression is a single symbol, e.g. {@code BUFFER}.
+     */
+    boolean isSymbol() {
+        return valid && code.length == 2 && code[0] == SYMBOL;
+    }
+
+    /**
+     * Interns the symbols of the expression in the symbol table, so evaluating against it reads them by id.
+     */
+    void bind(SymbolTable symtable) {
+        if (bound == symtable) {
+            return;
+        }
+        int[] ids = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            ids[i] = symtable.intern(symbols[i]);
+        }
+        this.ids = ids;
+        bound = symtable;
+    }
+
+    /**
+     * @return true if every symbol of the expression is in the symbol table.
+     */
+    boolean isDefined(SymbolTable symtable) {
+        for (int i = 0; i < symbols.length; i++) {
+            if (!symtable.isDefined(idOf(symtable, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param ids ids of symbols in the table.
+     * @return true if the expression refers to one of the symbols.
+     */
+    boolean refersTo(SymbolTable symtable, BitSet ids) {
+        for (int i = 0; i < symbols.length; i++) {
+            int id = idOf(symtable, i);
+            if (id >= 0 && ids.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the expression, unless it was already. The value is then returned by {@link #getValue()}.
+     *
+     * @return false if the expression is malformed, refers to an undefined symbol or divides by zero.
+     */
+    boolean evaluate(SymbolTable symtable) {
+        if (evaluated) {
+            return true;
+        }
+        if (!valid) {
+            return false;
+        }
+
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT:
+                    stack[++top] = code[++pc];
+                    break;
+                case SYMBOL:
+                    int id = idOf(symtable, code[++pc]);
+                    if (!symtable.isDefined(id)) {
+                        return false;
+                    }
+                    stack[++top] = symtable.valueOf(id);
+                    break;
+                case NEGATE:
+                    stack[top] = -stack[top];
+                    break;
+                default:
+                    int right = stack[top--];
+                    int left = stack[top];
+                    if (code[pc] == DIVIDE && right == 0) {
+                        return false;
+                    }
+                    stack[top] = apply(code[pc], left, right);
+            }
+        }
+        value = stack[0];
+        evaluated = true;
+        return true;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    private int idOf(SymbolTable symtable, int symbol) {
+        return symtable == bound ? ids[symbol] : symtable.idOf(symbols[symbol]);
+    }
+
+    /**
+     * Counts how many times each symbol is added to the value, e.g. 1 and -1 for {@code BUFEND-BUFFER}, which tells
+     * the loader what to relocate.
+     *
+     * @return the counts in the order of {@link #getSymbols()}, or null if the expression multiplies or divides
+     * a symbol.
+     */
+    int[] getCoefficients() {
+        if (!valid) {
+            return null;
+        }
+        int[][] terms = new int[stack.length][];
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT:
+                    pc++;
+                    terms[++top] = new int[symbols.length];
+                    break;
+                case SYMBOL:
+                    terms[++top] = new int[symbols.length];
+                    terms[top][code[++pc]] = 1;
+                    break;
+                case NEGATE:
+                    for (int i = 0; i < symbols.length; i++) {
+                        terms[top][i] = -terms[top][i];
+                    }
+                    break;
+                case ADD:
+                case SUBTRACT:
+                    int sign = code[pc] == ADD ? 1 : -1;
+                    int[] right = terms[top--];
+                    for (int i = 0; i < right.length; i++) {
+                        terms[top][i] += sign * right[i];
+                    }
+                    break;
+                default:
+                    // constants alone are folded when compiling, so a symbol is multiplied or divided
+                    return null;
+            }
+        }
+        return terms[0];
+    }
+
+    /**
+     * Drops the kept value, for when the symbols may have changed.
+     */
+    void forget() {
+        evaluated = valid && code.length == 2 && code[0] == CONSTANT;
+        value = evaluated ? code[1] : 0;
+    }
+
+    private static int apply(int operator, int left, int right) {
+        switch (operator) {
+            case ADD:
+                return left + right;
+            case SUBTRACT:
+                return left - right;
+            case MULTIPLY:
+                return left * right;
+            default:
+                return left / right;
+        }
+    }
+
+    /**
+     * @return the tree with its constant subexpressions folded, or null if one divides by zero.
+     */
+    private static Node fold(Node node) {
+        if (node.operator == CONSTANT || node.operator == SYMBOL) {
+            return node;
+        }
+        Node left = fold(node.left);
+        Node right = node.right == null ? null : fold(node.right);
+        if (left == null || (node.right != null && right == null)) {
+            return null;
+        }
+        if (node.operator == NEGATE) {
+            return left.operator == CONSTANT ? Node.constant(-left.value) : new Node(NEGATE, left, null);
+        }
+        if (left.operator == CONSTANT && right.operator == CONSTANT) {
+            if (node.operator == DIVIDE && right.value == 0) {
+                return null;
+            }
+            return Node.constant(apply(node.operator, left.value, right.value));
+        }
+        return new Node(node.operator, left, right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : 1 + size(node.left) + size(node.right);
+    }
+
+    /**
+     * Appends the postfix code of the tree.
+     *
+     * @return the stack depth it needs.
+     */
+    private static int emit(Node node, int[] code, int[] length, List<String> symbols) {
+        switch (node.operator) {
+            case CONSTANT:
+                code[length[0]++] = CONSTANT;
+                code[length[0]++] = node.value;
+                return 1;
+            case SYMBOL:
+                int index = symbols.indexOf(node.symbol);
+                if (index == -1) {
+                    index = symbols.size();
+                    symbols.add(node.symbol);
+                }
+                code[length[0]++] = SYMBOL;
+                code[length[0]++] = index;
+                return 1;
+            case NEGATE:
+                int depth = emit(node.left, code, length, symbols);
+                code[length[0]++] = NEGATE;
+                return depth;
+            default:
+                int left = emit(node.left, code, length, symbols);
+                int right = emit(node.right, code, length, symbols);
+                code[length[0]++] = node.operator;
+                return Math.max(left, right + 1);
+        }
+    }
+
+    /**
+     * Parse tree, only used while compiling.
+     */
+    private static final class Node {
+
+        final int operator;
+        final Node left;
+        final Node right;
+        int value;
+        String symbol;
+
+        Node(int operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        static Node constant(int value) {
+            Node node = new Node(CONSTANT, null, null);
+            node.value = value;
+            return node;
+        }
+
+        static Node symbol(String symbol) {
+            Node node = new Node(SYMBOL, null, null);
+            node.symbol = symbol;
+            return node;
+        }
+    }
+
+    /**
+     * Recursive descent parser, each method returns null on a syntax error.
+     */
+    private static final class Parser {
+
+        private final String expression;
+        private int position;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        // sum: product (('+' | '-') product)*
+        Node parseSum() {
+            Node left = parseProduct();
+            while (left != null && (peek() == '+' || peek() == '-')) {
+                int operator = expression.charAt(position++) == '+' ? ADD : SUBTRACT;
+                Node right = parseProduct();
+                left = right == null ? null : new Node(operator, left, right);
+            }
+            return left;
+        }
+
+        // product: factor (('*' | '/') factor)*
+        Node parseProduct() {
+            Node left = parseFactor();
+            while (left != null && (peek() == '*' || peek() == '/')) {
+                int operator = expression.charAt(position++) == '*' ? MULTIPLY : DIVIDE;
+                Node right = parseFactor();
+                left = right == null ? null : new Node(operator, left, right);
+            }
+            return left;
+        }
+
+        // factor: '-' factor | '(' sum ')' | number | symbol
+        Node parseFactor() {
+            char c = peek();
+            if (c == '-') {
+                position++;
+                Node operand = parseFactor();
+                return operand == null ? null : new Node(NEGATE, operand, null);
+            }
+            if (c == '(') {
+                position++;
+                Node sum = parseSum();
+                if (sum == null || peek() != ')') {
+                    return null;
+                }
+                position++;
+                return sum;
+            }
+
+            int start = position;
+            while (position < expression.length() && !isDelimiter(expression.charAt(position))) {
+                position++;
+            }
+            String term = expression.substring(start, position);
+            if (term.isEmpty()) {
+                return null;
+            }
+            if (!isDigits(term)) {
+                return Node.symbol(term);
+            }
+            try {
+                return Node.constant(Integer.parseInt(term));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private char peek() {
+            return position < expression.length() ? expression.charAt(position) : 0;
+        }
+
+        private static boolean isDelimiter(char c) {
+            return c == '+' || c == '-' || c == '*' || c == '/' || c == '(' || c == ')';
+        }
+
+        private static boolean isDigits(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
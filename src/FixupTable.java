@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Forward references of the one-pass mode.
+ * An instruction, {@code WORD} or {@code BASE} whose operand refers to symbols that are not defined yet is put on the
+ * fixup chain of each of them, and is handed to the sink once the last one is defined. A format 3 instruction under
+ * BASE also waits for the symbols of the base.
+ */
+class FixupTable {
+
+    private final Assembler.StatementSink sink;
+
+    private final HashMap<String, List<Fixup>> chains = new HashMap<>();
+    // waiting statements in source order
+    private final Set<Fixup> pending = new LinkedHashSet<>();
+
+    FixupTable(Assembler.StatementSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Puts the statement on the chains of the symbols it refers to that are not defined yet.
+     *
+     * @return false if the statement has to wait for a forward reference.
+     */
+    boolean add(Statement statement, SymbolTable symtable) {
+        if (statement.isComment() || statement.getMnemonic() == null
+                || statement.getMnemonic().isRegisterType() || !statement.hasFirstOperand()) {
+            return true;
+        }
+        boolean directive = statement.getMnemonic().isDirective();
+        String mnemonic = statement.getMnemonic().getString();
+        if (directive && !mnemonic.equals("BASE") && !mnemonic.equals("WORD")
+                || mnemonic.equals("WORD") && statement.getInstruction() != null) {
+            // a WORD constant is already encoded
+            return true;
+        }
+
+        List<String> symbols = statement.getFirstOperand().getExpression().getSymbols();
+        if (!directive && statement.getBase() != null && !statement.isType4() && !symbols.isEmpty()) {
+            // the target may only be in reach of the base
+            symbols = new ArrayList<>(symbols);
+            symbols.addAll(statement.getBase().getFirstOperand().getExpression().getSymbols());
+        }
+
+        Fixup fixup = null;
+        for (String symbol : symbols) {
+            if (!symtable.contains(symbol)) {
+                if (fixup == null) {
+                    fixup = new Fixup(statement);
+                    pending.add(fixup);
+                }
+                chains.computeIfAbsent(symbol, s -> new ArrayList<>()).add(fixup);
+                fixup.unresolved++;
+            }
+        }
+        return fixup == null;
+    }
+
+    /**
+     * Called once a symbol got its value, hands over the statements that were waiting only for it.
+     */
+    void define(String symbol) throws IOException {
+        List<Fixup> chain = chains.remove(symbol);
+        if (chain == null) {
+            return;
+        }
+        for (Fixup fixup : chain) {
+            if (--fixup.unresolved == 0) {
+                pending.remove(fixup);
+                sink.accept(fixup.statement);
+            }
+        }
+    }
+
+    /**
+     * Hands the statements still waiting at the end of the program, which refer to undefined symbols,
+     * to the other sink in source order.
+     */
+    void finish(Assembler.StatementSink undefined) throws IOException {
+        for (Fixup fixup : pending) {
+            undefined.accept(fixup.statement);
+        }
+        pending.clear();
+        chains.clear();
+    }
+
+    /**
+     * @return the number of statements waiting for a forward reference.
+     */
+    int size() {
+        return pending.size();
+    }
+
+    private static final class Fixup {
+
+        final Statement statement;
+        int unresolved;
+
+        Fixup(Statement statement) {
+            this.statement = statement;
+        }
+    }
+}
@@ -0,0 +1,777 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Assembler for an editor: keeps the source in memory and reassembles it after line edits,
+ * reusing as much of the previous run as possible.
+ * <p>
+ * Only edited lines are parsed again. Pass 1 (addresses and labels) is redone from the first edited line on, after
+ * taking back the symbols defined from there. Past the edits, it stops at the first line that leaves the location
+ * counter and base as in the previous run, unless a later line defines, or has an EQU or ORG refer to, a symbol
+ * whose definitions differ: the lines after it keep their addresses, and their symbols are defined again from the
+ * cache. A statement is validated and encoded again when pass 1 went over it, or when it refers to a symbol whose
+ * value changed, which the lines referring to each symbol are kept for. What pass 1 defined on each line is kept in
+ * arrays by line, so taking it back and defining it again reads no statements.
+ * <p>
+ * The listing and the symbol table are cached by blocks of lines, and the text records by runs of statements from a
+ * data directive to a later one, which a data directive starting a record makes independent of each other. A block or
+ * run is made again when one of its lines changed, and the {@link Output} only joins them when asked for its text.
+ */
+class IncrementalAssembler {
+
+    private static final int BLOCK_SIZE = 256;
+    private static final int MIN_ROWS = 1024;
+
+    private final List<Line> lines = new ArrayList<>();
+    private final AssemblyContext context = new AssemblyContext();
+
+    // by line index, in step with lines: the id of the label (-1 without one), whether pass 1 evaluates the operand
+    // (EQU and ORG), and the symbol pass 1 defined or replaced on the line (-1 for none), its value after, whether it
+    // replaced the value of a duplicate label, and the value it replaced
+    private int[] labelIds = new int[MIN_ROWS];
+    private boolean[] evaluated = new boolean[MIN_ROWS];
+    private int[] definedIds = new int[MIN_ROWS];
+    private int[] definedValues = new int[MIN_ROWS];
+    private boolean[] replaced = new boolean[MIN_ROWS];
+    private int[] replacedValues = new int[MIN_ROWS];
+
+    // index of the START statement, -1 before it is seen
+    private int startLine = -1;
+    // index of the statement pass 1 stopped at (END or missing START), or the number of lines
+    private int stopLine;
+
+    // the symbols as they were before the reassembly, by id, for the ids stamped with the reassembly; and the line
+    // that last defined each, whose symbol table line has its value
+    private int reassembly;
+    private int[] stamps = new int[0];
+    private boolean[] wereDefined = new boolean[0];
+    private int[] previousValues = new int[0];
+    private Line[] definers = new Line[0];
+
+    // by id, the lines whose operand refers to the symbol, the removed ones are dropped when next met
+    private final List<List<Line>> users = new ArrayList<>();
+
+    private Line current;
+    private final Assembler.StatementSink sink = statement -> current.inProgram = true;
+
+    IncrementalAssembler(List<String> source) {
+        // a section or a literal pool would have to be taken back as a whole
+        context.setControlSections(false);
+        context.setLiteralPoolsEnabled(false);
+        replaceLines(0, 0, source, new BitSet());
+        stopLine = lines.size();
+        reassembly++;
+        reassemble(0, 0, new BitSet(), 0);
+    }
+
+    /**
+     * Applies the edits in order and reassembles.
+     *
+     * @return the listing and object file of the edited source.
+     */
+    Output apply(List<LineEdit> edits) {
+        // Lines before the lowest edited line keep their index through all the edits.
+        int first = lines.size();
+        for (LineEdit edit : edits) {
+            first = Math.min(first, edit.getLine());
+        }
+
+        // Take back what pass 1 did to the symbol table from there on, latest first,
+        // remembering the values the symbols had.
+        reassembly++;
+        SymbolTable symtable = context.getSymbolTable();
+        for (int i = Math.min(stopLine, lines.size() - 1); i >= first; i--) {
+            int id = definedIds[i];
+            if (id != -1) {
+                keepPrevious(id);
+                if (replaced[i]) {
+                    symtable.restore(id, replacedValues[i]);
+                } else {
+                    symtable.remove(id);
+                }
+            }
+        }
+
+        // The symbols of the removed lines are defined differently, and pass 1 can only stop after the inserted ones.
+        BitSet redefined = new BitSet();
+        int after = first;
+        int size = lines.size();
+        for (LineEdit edit : edits) {
+            int at = edit.getLine();
+            // the blocks and runs around the edit end elsewhere
+            for (int i = Math.max(at - 1, 0); i <= at + edit.getRemoved() && i < lines.size(); i++) {
+                touch(lines.get(i));
+            }
+            replaceLines(at, edit.getRemoved(), edit.getInserted(), redefined);
+
+            if (after > at) {
+                after = after >= at + edit.getRemoved() ? after + edit.getInserted().size() - edit.getRemoved() : at;
+            }
+            after = Math.max(after, at + edit.getInserted().size());
+        }
+
+        if (first <= stopLine) {
+            reassemble(first, after, redefined, lines.size() - size);
+        } else {
+            // Edits after END do not change the program.
+            stopLine = Math.min(stopLine, lines.size());
+        }
+        return output();
+    }
+
+    Output output() {
+        int last = Math.min(stopLine, lines.size() - 1);
+        List<Span> blocks = new ArrayList<>();
+        boolean hasErrors = false;
+        for (int i = 0; i <= last; ) {
+            Line line = lines.get(i);
+            Span block = line.block;
+            if (!heads(line, block, i, last)) {
+                block = block(i, last);
+            }
+            blocks.add(block);
+            hasErrors |= block.errors;
+            i += block.length;
+        }
+
+        List<String> listing = new ArrayList<>(2 * blocks.size() + 1);
+        List<String> object = new ArrayList<>();
+        try {
+            for (Span block : blocks) {
+                listing.add(block.listing);
+            }
+            StringWriter heading = new StringWriter();
+            Assembler.writeSymbolTableHeading(heading, context);
+            listing.add(heading.toString());
+            // in the order the symbols were first defined, as the symbol table lists them
+            for (Span block : blocks) {
+                listing.add(block.symbols);
+            }
+
+            StringWriter header = new StringWriter();
+            if (hasErrors) {
+                Assembler.writeErrorObject(header);
+                object.add(header.toString());
+            } else {
+                Assembler.writeHeader(header, context);
+                object.add(header.toString());
+                addRecords(object, last);
+                StringWriter end = new StringWriter();
+                Assembler.writeEnd(end, context);
+                object.add(end.toString());
+            }
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return new Output(listing, object);
+    }
+
+    /**
+     * @return the listing lines, symbol table lines and errors of the lines from index from, up to the next block
+     * that is still valid, at most {@link #BLOCK_SIZE} of them and none after last.
+     */
+    private Span block(int from, int last) {
+        SymbolTable symtable = context.getSymbolTable();
+        StringBuilder listing = new StringBuilder();
+        StringBuilder symbols = new StringBuilder();
+        boolean errors = false;
+        int to = from;
+        do {
+            Line line = lines.get(to);
+            if (line.inProgram) {
+                listing.append(line.listing);
+                errors |= line.statement.hasErrors();
+            }
+            if (definedIds[to] != -1 && !replaced[to]) {
+                symbols.append(Assembler.symbolTableLine(line.statement.getLabel(), symtable.valueOf(definedIds[to])));
+            }
+            to++;
+        } while (to <= last && to - from < BLOCK_SIZE && !heads(lines.get(to), lines.get(to).block, to, last));
+
+        Span block = new Span(lines.get(from), to - from);
+        block.listing = listing.toString();
+        block.symbols = symbols.toString();
+        block.errors = errors;
+        for (int i = from; i < to; i++) {
+            Line line = lines.get(i);
+            if (line.block != null) {
+                line.block.valid = false;
+            }
+            line.block = block;
+        }
+        return block;
+    }
+
+    /**
+     * Adds the text records of the lines up to last. A data directive starts a record, so the records from one to
+     * a later one only depend on the statements in between, and are taken from the cache unless one of them changed.
+     */
+    private void addRecords(List<String> object, int last) throws IOException {
+        for (int i = 0; i <= last; ) {
+            Line line = lines.get(i);
+            Span run = line.run;
+            // the first run starts its first record at the start of the program
+            int start = i == 0 ? context.getProgStartAddr() : -1;
+            if (!heads(line, run, i, last) || run.start != start) {
+                run = run(i, last, start);
+            }
+            object.add(run.records);
+            i += run.length;
+        }
+    }
+
+    /**
+     * @param start the address of the first record for the first run, -1 to continue after a data directive.
+     * @return the text records of the statements from the line at index from up to a data directive, the first
+     * after {@link #BLOCK_SIZE} lines or that starts a run still valid, or up to last.
+     */
+    private Span run(int from, int last, int start) throws IOException {
+        StringWriter records = new StringWriter();
+        TextRecordWriter writer = start != -1
+                ? new TextRecordWriter(records, start) : TextRecordWriter.continuing(records);
+        boolean text = false;
+        int to = from;
+        for (; to <= last; to++) {
+            Line line = lines.get(to);
+            if (line.inProgram && line.inText) {
+                if (text && line.statement.getMnemonic().isDirective()
+                        && (to - from >= BLOCK_SIZE || heads(line, line.run, to, last))) {
+                    break;
+                }
+                writer.add(line.statement);
+                text = true;
+            }
+        }
+        if (text) {
+            writer.finish();
+        }
+
+        Span run = new Span(lines.get(from), to - from);
+        run.records = records.toString();
+        run.start = start;
+        for (int i = from; i < to; i++) {
+            Line line = lines.get(i);
+            if (line.run != null) {
+                line.run.valid = false;
+            }
+            line.run = run;
+        }
+        return run;
+    }
+
+    /**
+     * @return whether the span is still valid and starts at the line, at index i, and ends by last.
+     */
+    private static boolean heads(Line line, Span span, int i, int last) {
+        return span != null && span.valid && span.head == line && i + span.length <= last + 1;
+    }
+
+    /**
+     * Drops the cached block and run of the line.
+     */
+    private static void touch(Line line) {
+        if (line.block != null) {
+            line.block.valid = false;
+        }
+        if (line.run != null) {
+            line.run.valid = false;
+        }
+    }
+
+    /**
+     * @param first   index of the first edited line.
+     * @param after   index of the first line after the edits, pass 1 does not stop before it.
+     * @param redefined the symbols of the lines the edits removed, more are added whose definitions differ.
+     * @param shift   the number of lines the edits added, less the number they removed.
+     */
+    private void reassemble(int first, int after, BitSet redefined, int shift) {
+        SymbolTable symtable = context.getSymbolTable();
+
+        // What pass 1 left at the end, and where it stopped, for stopping at a line the previous run also reached.
+        int previousStop = stopLine + shift;
+        boolean ended = context.isEnded();
+        int progLength = context.getProgLength();
+        int locctr = context.getLocctr();
+        String progName = context.getProgName();
+        int progStartAddr = context.getProgStartAddr();
+        List<Statement> bases = context.getBases();
+        List<Statement> previousBases = new ArrayList<>(bases);
+
+        // Restore the pass 1 state as it was before the first edited line.
+        if (startLine >= first) {
+            startLine = -1;
+            context.setStarted(false);
+            context.setProgName(null);
+            context.setProgStartAddr(0);
+        }
+        context.setEnded(false);
+        context.setProgLength(0);
+        context.setLocctr(first == 0 ? 0 : lines.get(first - 1).locctrAfter);
+        context.setBase(first == 0 ? null : lines.get(first - 1).baseAfter);
+        // The BASE statements of the lines before come first, the others are defined again or were removed.
+        bases.subList(first == 0 ? 0 : lines.get(first - 1).basesAfter, bases.size()).clear();
+
+        stopLine = lines.size();
+        int check = after;
+        boolean converged = false;
+        int i = first;
+        for (; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            Statement statement = line.statement;
+            touch(line);
+            // what pass 1 did with the line in the previous run
+            boolean reached = line.reached;
+            int previousId = definedIds[i];
+            int previousValue = definedValues[i];
+            int previousLocctr = line.locctrAfter;
+            Statement previousBase = line.baseAfter;
+            int previousBaseCount = line.basesAfter;
+
+            int labelId = labelIds[i];
+            boolean wasDefined = false;
+            int wasValue = 0;
+            if (labelId != -1) {
+                keepPrevious(labelId);
+                wasDefined = symtable.isDefined(labelId);
+                wasValue = wasDefined ? symtable.valueOf(labelId) : 0;
+            }
+
+            statement.setErrors(line.parseErrors);
+            if (statement.hasFirstOperand()) {
+                statement.getFirstOperand().forget();
+            }
+            line.inProgram = false;
+            current = line;
+            boolean more;
+            try {
+                more = Assembler.define(context, statement, sink);
+            } catch (IOException e) {
+                // the sink does no I/O
+                throw new UncheckedIOException(e);
+            }
+
+            // A label is defined once, but EQU also replaces the value of a duplicate one.
+            definedIds[i] = -1;
+            if (labelId != -1 && symtable.isDefined(labelId)
+                    && (!wasDefined || symtable.valueOf(labelId) != wasValue)) {
+                definedIds[i] = labelId;
+                definedValues[i] = symtable.valueOf(labelId);
+                replaced[i] = wasDefined;
+                replacedValues[i] = wasValue;
+                definers[labelId] = line;
+            }
+            if (definedIds[i] != (reached ? previousId : -1)
+                    || definedIds[i] != -1 && definedValues[i] != previousValue) {
+                if (reached && previousId != -1) {
+                    redefined.set(previousId);
+                }
+                if (definedIds[i] != -1) {
+                    redefined.set(definedIds[i]);
+                }
+            }
+            line.reached = true;
+            line.definedErrors = statement.getErrors();
+            line.locctrAfter = context.getLocctr();
+            line.baseAfter = context.getBase();
+            line.basesAfter = bases.size();
+            if (startLine == -1 && context.isStarted()) {
+                startLine = i;
+            }
+            if (!more) {
+                stopLine = i;
+                break;
+            }
+
+            // A statement before START would have stopped the previous run, so past one the program had started.
+            if (i >= check && reached && i < previousStop && !statement.isComment() && context.isStarted()
+                    && Objects.equals(context.getProgName(), progName) && context.getProgStartAddr() == progStartAddr
+                    && context.getLocctr() == previousLocctr && context.getBase() == previousBase
+                    && bases.size() == previousBaseCount) {
+                int dependent = firstDependent(i + 1, previousStop, redefined);
+                if (dependent == -1) {
+                    converged = true;
+                    break;
+                }
+                check = dependent;
+            }
+        }
+
+        if (converged) {
+            // The rest of the program comes out as before: its symbols are defined again and pass 1 ends as it did.
+            for (int j = i + 1; j <= previousStop && j < lines.size(); j++) {
+                if (definedIds[j] != -1) {
+                    symtable.restore(definedIds[j], definedValues[j]);
+                }
+            }
+            bases.addAll(previousBases.subList(bases.size(), previousBases.size()));
+            context.setEnded(ended);
+            context.setProgLength(progLength);
+            context.setLocctr(locctr);
+            stopLine = previousStop;
+        } else {
+            // The lines after the stop are out of the program, and their symbols were taken back.
+            for (int j = stopLine + 1; j < lines.size(); j++) {
+                Line line = lines.get(j);
+                if (definedIds[j] != -1) {
+                    redefined.set(definedIds[j]);
+                }
+                touch(line);
+                line.reached = false;
+                line.inProgram = false;
+                definedIds[j] = -1;
+            }
+            i = Math.min(stopLine, lines.size() - 1);
+        }
+
+        // Symbols that were added, dropped or moved; their symbol table lines change.
+        BitSet changed = new BitSet();
+        for (int id = redefined.nextSetBit(0); id >= 0; id = redefined.nextSetBit(id + 1)) {
+            if (symtable.isDefined(id) != wereDefined[id]
+                    || wereDefined[id] && symtable.valueOf(id) != previousValues[id]) {
+                changed.set(id);
+                if (definers[id] != null) {
+                    touch(definers[id]);
+                }
+            }
+        }
+
+        // The lines pass 1 went over, from first to i, and those that refer to a symbol that changed.
+        for (int j = first; j <= i; j++) {
+            Line line = lines.get(j);
+            line.checked = reassembly;
+            if (line.inProgram) {
+                check(line, true);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Line> dependents = dependents(changed);
+        if (dependents != null) {
+            for (Line line : dependents) {
+                if (line.inProgram) {
+                    check(line, false);
+                }
+            }
+        } else {
+            for (int j = 0; j <= Math.min(stopLine, lines.size() - 1); j++) {
+                Line line = lines.get(j);
+                if ((j < first || j > i) && line.inProgram && refersTo(line.statement, symtable, changed)) {
+                    check(line, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the lines pass 1 did not go over whose operand refers to one of the symbols, or null if a BASE
+     * statement does, on which the statements it is the base of also depend.
+     */
+    private List<Line> dependents(BitSet symbols) {
+        List<Line> dependents = new ArrayList<>();
+        for (int id = symbols.nextSetBit(0); id >= 0 && id < users.size(); id = symbols.nextSetBit(id + 1)) {
+            if (users.get(id) == null) {
+                continue;
+            }
+            users.get(id).removeIf(line -> line.removed);
+            for (Line line : users.get(id)) {
+                if (line.base) {
+                    return null;
+                }
+                // a line can refer to several of the symbols
+                if (line.checked != reassembly) {
+                    line.checked = reassembly;
+                    dependents.add(line);
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Validates and encodes the statement of the line again, and formats its listing line if it changed.
+     *
+     * @param redefined whether pass 1 went over the statement, otherwise it refers to a symbol that changed.
+     */
+    private void check(Line line, boolean redefined) {
+        SymbolTable symtable = context.getSymbolTable();
+        Statement statement = line.statement;
+        touch(line);
+        if (!redefined) {
+            statement.setErrors(line.definedErrors);
+            statement.getFirstOperand().forget();
+        }
+        Assembler.validate(statement, symtable);
+        boolean moved = statement.getAddress() != line.address;
+
+        if (!statement.hasErrors()) {
+            // Errors found while encoding are not reported, like in pass 2.
+            line.inText = Assembler.encode(statement, symtable);
+            statement.setErrors(0);
+        }
+
+        if (line.listing == null || moved || statement.getErrors() != line.listedErrors) {
+            StringWriter listing = new StringWriter();
+            try {
+                Assembler.writeListing(listing, statement);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            line.listing = listing.toString();
+            line.listedErrors = statement.getErrors();
+        }
+        line.address = statement.getAddress();
+    }
+
+    /**
+     * @return the index of the first line from {@code from} until {@code to} whose pass 1 could come out differently
+     * with the symbols: it has one as label, or is an EQU or ORG that refers to one whose value changed; or -1.
+     */
+    private int firstDependent(int from, int to, BitSet symbols) {
+        if (symbols.isEmpty()) {
+            return -1;
+        }
+        SymbolTable symtable = context.getSymbolTable();
+        BitSet changed = new BitSet();
+        for (int id = symbols.nextSetBit(0); id >= 0; id = symbols.nextSetBit(id + 1)) {
+            // a later line defining the symbol has its label in symbols, so the value now is the one it ends with
+            if (symtable.isDefined(id) != wereDefined[id]
+                    || wereDefined[id] && symtable.valueOf(id) != previousValues[id]) {
+                changed.set(id);
+            }
+        }
+        for (int i = from; i < to && i < lines.size(); i++) {
+            if (labelIds[i] != -1 && symbols.get(labelIds[i])
+                    || evaluated[i] && !changed.isEmpty() && refersTo(lines.get(i).symbolIds, changed)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remembers the value of the symbol before the reassembly, unless it already is.
+     */
+    private void keepPrevious(int id) {
+        if (stamps[id] != reassembly) {
+            SymbolTable symtable = context.getSymbolTable();
+            stamps[id] = reassembly;
+            wereDefined[id] = symtable.isDefined(id);
+            previousValues[id] = wereDefined[id] ? symtable.valueOf(id) : 0;
+        }
+    }
+
+    /**
+     * Replaces removed lines at the index with the parsed texts, pass 1 has not been over them. The symbols pass 1
+     * defined on the removed lines are added to redefined.
+     */
+    private void replaceLines(int at, int removed, List<String> texts, BitSet redefined) {
+        SymbolTable symtable = context.getSymbolTable();
+        for (int i = at; i < at + removed; i++) {
+            if (definedIds[i] != -1) {
+                redefined.set(definedIds[i]);
+            }
+            lines.get(i).removed = true;
+        }
+        int size = lines.size();
+        int count = texts.size();
+        if (size - removed + count > labelIds.length) {
+            int capacity = Math.max(size - removed + count, labelIds.length + (labelIds.length >> 1));
+            labelIds = Arrays.copyOf(labelIds, capacity);
+            evaluated = Arrays.copyOf(evaluated, capacity);
+            definedIds = Arrays.copyOf(definedIds, capacity);
+            definedValues = Arrays.copyOf(definedValues, capacity);
+            replaced = Arrays.copyOf(replaced, capacity);
+            replacedValues = Arrays.copyOf(replacedValues, capacity);
+        }
+        moveRows(at + removed, at + count, size - at - removed);
+
+        List<Line> added = new ArrayList<>(count);
+        int ids = stamps.length;
+        for (int i = 0; i < count; i++) {
+            Line line = new Line(texts.get(i), symtable);
+            Statement statement = line.statement;
+            added.add(line);
+            for (int id : line.symbolIds) {
+                while (users.size() <= id) {
+                    users.add(null);
+                }
+                if (users.get(id) == null) {
+                    users.set(id, new ArrayList<>());
+                }
+                users.get(id).add(line);
+            }
+            int row = at + i;
+            labelIds[row] = statement.getLabel() != null ? symtable.intern(statement.getLabel()) : -1;
+            evaluated[row] = !statement.isComment() && !statement.hasErrors() && statement.hasFirstOperand()
+                    && statement.getMnemonic() != null && (statement.getMnemonic().getString().equalsIgnoreCase("EQU")
+                    || statement.getMnemonic().getString().equalsIgnoreCase("ORG"));
+            definedIds[row] = -1;
+            ids = Math.max(ids, labelIds[row] + 1);
+        }
+        int common = Math.min(removed, count);
+        for (int i = 0; i < common; i++) {
+            lines.set(at + i, added.get(i));
+        }
+        if (removed > count) {
+            lines.subList(at + count, at + removed).clear();
+        } else {
+            lines.addAll(at + removed, added.subList(removed, count));
+        }
+
+        // pass 1 only defines labels, so theirs are the ids to remember values for
+        if (ids > stamps.length) {
+            int length = Math.max(2 * stamps.length, ids);
+            stamps = Arrays.copyOf(stamps, length);
+            wereDefined = Arrays.copyOf(wereDefined, length);
+            previousValues = Arrays.copyOf(previousValues, length);
+            definers = Arrays.copyOf(definers, length);
+        }
+    }
+
+    /**
+     * Moves count rows of the arrays by line from index from to index to.
+     */
+    private void moveRows(int from, int to, int count) {
+        System.arraycopy(labelIds, from, labelIds, to, count);
+        System.arraycopy(evaluated, from, evaluated, to, count);
+        System.arraycopy(definedIds, from, definedIds, to, count);
+        System.arraycopy(definedValues, from, definedValues, to, count);
+        System.arraycopy(replaced, from, replaced, to, count);
+        System.arraycopy(replacedValues, from, replacedValues, to, count);
+    }
+
+    private static boolean refersTo(int[] ids, BitSet symbols) {
+        for (int id : ids) {
+            if (symbols.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a term of the statement's operand, or of its base, is one of the symbols.
+     */
+    private static boolean refersTo(Statement statement, SymbolTable symtable, BitSet symbols) {
+        if (statement.isComment() || !statement.hasFirstOperand()) {
+            return false;
+        }
+        if (statement.getFirstOperand().getExpression().refersTo(symtable, symbols)) {
+            return true;
+        }
+        return statement.getBase() != null && refersTo(statement.getBase(), symtable, symbols);
+    }
+
+    /**
+     * Cached state of a source line.
+     */
+    private static final class Line {
+
+        final Statement statement;
+        final long parseErrors;
+        // ids of the symbols the operand refers to, and whether it is a BASE statement
+        final int[] symbolIds;
+        final boolean base;
+        boolean removed;
+        // the last reassembly that checked the line
+        int checked;
+
+        // whether pass 1 went over the line in the last run, the fields below are only set then
+        boolean reached;
+        boolean inProgram;
+        int locctrAfter;
+        Statement baseAfter;
+        int basesAfter;
+        long definedErrors;
+
+        // address the object code and listing line were made for
+        int address = -1;
+        boolean inText;
+        String listing;
+        long listedErrors;
+
+        // the block and the run the line is in
+        Span block;
+        Span run;
+
+        Line(String text, SymbolTable symtable) {
+            statement = new Statement(text);
+            parseErrors = statement.getErrors();
+            List<String> symbols = statement.isComment() || !statement.hasFirstOperand()
+                    ? Collections.emptyList() : statement.getFirstOperand().getExpression().getSymbols();
+            symbolIds = new int[symbols.size()];
+            for (int i = 0; i < symbolIds.length; i++) {
+                symbolIds[i] = symtable.intern(symbols.get(i));
+            }
+            base = !statement.isComment() && statement.getMnemonic() != null
+                    && statement.getMnemonic().getString().equalsIgnoreCase("BASE");
+        }
+    }
+
+    /**
+     * Cached output of consecutive lines: a block of the listing, or a run of text records.
+     */
+    private static final class Span {
+
+        final Line head;
+        final int length;
+        // cleared when one of the lines changes
+        boolean valid = true;
+
+        // a block: its listing lines, the symbol table lines of the labels defined on it, and whether a statement
+        // has errors
+        String listing;
+        String symbols;
+        boolean errors;
+
+        // a run: its text records, and the address its first record starts at for the first run, -1 otherwise
+        String records;
+        int start;
+
+        Span(Line head, int length) {
+            this.head = head;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Listing and object file text of one reassembly, kept as the cached parts and joined when first asked for.
+     */
+    static final class Output {
+
+        private List<String> listingParts;
+        private List<String> objectParts;
+        private String listing;
+        private String object;
+
+        Output(List<String> listingParts, List<String> objectParts) {
+            this.listingParts = listingParts;
+            this.objectParts = objectParts;
+        }
+
+        String getListing() {
+            if (listing == null) {
+                listing = String.join("", listingParts);
+                listingParts = null;
+            }
+            return listing;
+        }
+
+        String getObject() {
+            if (object == null) {
+                object = String.join("", objectParts);
+                objectParts = null;
+            }
+            return object;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+// Generated by TableGenerator from tables/, do not edit.
+
+/**
+ * The built-in directives, operation codes and error messages.
+ */
+final class InstructionSet {
+
+    static final String[] DIRECTIVES = {
+            "START",
+            "END",
+            "BYTE",
+            "WORD",
+            "RESW",
+            "RESB",
+            "EQU",
+            "ORG",
+            "BASE",
+            "CSECT",
+            "EXTDEF",
+            "EXTREF",
+            "LTORG",
+            "NOBASE",
+    };
+
+    // name, format (2 or 3, format 4 being 3 with the + prefix), opcode, register operands (0 for m)
+    static final String[] OPERATIONS = new String[27];
+    static final int[] FORMATS = new int[27];
+    static final int[] OPCODES = new int[27];
+    static final int[] REGISTER_OPERANDS = new int[27];
+
+    static {
+        operation(0, "ADD", 3, 0x18, 0);
+        operation(1, "ADDR", 2, 0x90, 2);
+        operation(2, "COMP", 3, 0x28, 0);
+        operation(3, "COMPR", 2, 0xA0, 2);
+        operation(4, "J", 3, 0x3C, 0);
+        operation(5, "JEQ", 3, 0x30, 0);
+        operation(6, "JGT", 3, 0x34, 0);
+        operation(7, "JLT", 3, 0x38, 0);
+        operation(8, "LDA", 3, 0x00, 0);
+        operation(9, "LDB", 3, 0x68, 0);
+        operation(10, "LDCH", 3, 0x50, 0);
+        operation(11, "LDL", 3, 0x08, 0);
+        operation(12, "LDS", 3, 0x6C, 0);
+        operation(13, "LDT", 3, 0x74, 0);
+        operation(14, "LDX", 3, 0x04, 0);
+        operation(15, "RMO", 2, 0xAC, 2);
+        operation(16, "STA", 3, 0x0C, 0);
+        operation(17, "STB", 3, 0x78, 0);
+        operation(18, "STCH", 3, 0x54, 0);
+        operation(19, "STL", 3, 0x14, 0);
+        operation(20, "STS", 3, 0x7C, 0);
+        operation(21, "STT", 3, 0x84, 0);
+        operation(22, "STX", 3, 0x10, 0);
+        operation(23, "SUB", 3, 0x1C, 0);
+        operation(24, "SUBR", 2, 0x94, 2);
+        operation(25, "TIX", 3, 0x2C, 0);
+        operation(26, "TIXR", 2, 0xB8, 1);
+    }
+
+    static final String[] ERRORS = {
+            "*** duplicate label definition",
+            "*** this statement can\ufffd\ufffd\ufffdt have a label",
+            "*** this statement can\ufffd\ufffd\ufffdt have an operand",
+            "*** wrong g operation prefix",
+            "*** unrecognized operation code",
+            "*** undefined symbol in operand",
+            "*** not a hexadecimal string",
+            "*** can\ufffd\ufffd\ufffdt be format 4 instruction",
+            "*** illegal address for a register",
+            "*** missing END statement",
+            "**** missing START statement",
+            "**** not a data type",
+            "**** end label must be the same as start label",
+            "*** missing operand field",
+            "**** illegal label",
+            "**** can't be indexed instruction",
+            "**** unspecified source register",
+            "**** this statement requires a label",
+            "**** this statement cannot have a label",
+            "**** cannot evaluate expression",
+            "**** odd length of hex string",
+            "**** external reference needs a format 4 instruction or WORD",
+            "**** illegal relocatable expression",
+            "**** control sections need the two-pass assembler",
+            "**** literals need the two-pass or one-pass assembler",
+            "**** address out of range of PC and base relative addressing",
+            "**** too many errors, assembly stopped",
+    };
+
+    private InstructionSet() {
+        // Prevents instantiation.
+    }
+
+    private static void operation(int i, String name, int format, int opcode, int registers) {
+        OPERATIONS[i] = name;
+        FORMATS[i] = format;
+        OPCODES[i] = opcode;
+        REGISTER_OPERANDS[i] = registers;
+    }
+}
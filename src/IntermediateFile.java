@@ -0,0 +1,137 @@
+import java.io.*;
+
+/**
+ * Binary intermediate file written by pass 1 in streaming mode.
+ * <p>
+ * Each statement becomes one record: its line number in the source, its address, the codes of its errors
+ * and, for BYTE and WORD, the data pass 1 already converted. Everything else is re-lexed from the source line
+ * when the record is read back, which is cheaper than serializing the operands. Literal pool entries, which have no
+ * line of their own, keep their literal, and an operand that is a literal keeps the symbol of its pool entry.
+ */
+final class IntermediateFile {
+
+    private static final int HAS_INSTRUCTION = 1;
+    private static final int LITERAL_ENTRY = 2;
+    private static final int LITERAL_OPERAND = 4;
+
+    private IntermediateFile() {
+        // Prevents instantiation.
+    }
+
+    static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private int lineNumber = 0;
+
+        Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        void write(Statement statement) throws IOException {
+            out.writeInt(lineNumber);
+            out.writeInt(statement.getAddress());
+            out.writeLong(statement.getErrors());
+            Operand operand = statement.getFirstOperand();
+            int flags = (statement.getInstruction() != null ? HAS_INSTRUCTION : 0)
+                    | (statement.isLiteral() ? LITERAL_ENTRY : 0)
+                    | (!statement.isLiteral() && operand != null && operand.getLiteral() != null ? LITERAL_OPERAND : 0);
+            out.writeByte(flags);
+            if (statement.getInstruction() != null) {
+                out.writeShort(statement.getInstruction().length);
+                out.write(statement.getInstruction());
+            }
+            if (statement.isLiteral()) {
+                out.writeUTF(operand.getLine());
+                out.writeUTF(statement.getLabel());
+                out.writeInt(statement.getSize());
+            } else if (operand != null && operand.getLiteral() != null) {
+                out.writeUTF(operand.getLiteral());
+            }
+        }
+
+        /**
+         * Moves to the next source line.
+         */
+        void nextLine() {
+            lineNumber++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final LineSource src;
+        private int lineNumber = -1;
+        // BASE statement in effect, as pass 1 had it
+        private Statement base;
+
+        Reader(File file, LineSource source) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            src = source;
+        }
+
+        /**
+         * Rebuilds the next statement of the program.
+         *
+         * @return the statement, or null at the end of the intermediate file.
+         */
+        Statement next() throws IOException {
+            int recordLine;
+            try {
+                recordLine = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            int address = in.readInt();
+            long errors = in.readLong();
+            int flags = in.readByte();
+            byte[] instruction = null;
+            if ((flags & HAS_INSTRUCTION) != 0) {
+                instruction = new byte[in.readUnsignedShort()];
+                in.readFully(instruction);
+            }
+
+            Statement statement;
+            if ((flags & LITERAL_ENTRY) != 0) {
+                statement = Statement.literal(in.readUTF(), in.readUTF(), in.readInt());
+            } else {
+                CharSequence line = null;
+                while (lineNumber < recordLine) {
+                    line = src.readLine();
+                    lineNumber++;
+                }
+                if (line == null) {
+                    throw new IOException("source changed while assembling, line " + recordLine + " is missing");
+                }
+                statement = new Statement(line);
+                if ((flags & LITERAL_OPERAND) != 0) {
+                    statement.getFirstOperand().setLiteral(in.readUTF());
+                }
+            }
+            statement.setAddress(address);
+            statement.setErrors(errors);
+            statement.setInstruction(instruction);
+            if (!statement.isComment() && statement.getMnemonic() != null) {
+                String mnemonic = statement.getMnemonic().getString();
+                if (!statement.getMnemonic().isDirective()) {
+                    statement.setBase(base);
+                } else if (!statement.hasErrors() && (mnemonic.equals("BASE") || mnemonic.equals("NOBASE"))) {
+                    base = mnemonic.equals("BASE") ? statement : null;
+                }
+            }
+            return statement;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+            src.close();
+        }
+    }
+}
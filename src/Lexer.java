@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Single scan tokenizer for source lines.
+ * <p>
+ * Produces the same fields as {@code line.split("\\s+|,")}: a run of whitespace or a single comma ends a token,
+ * a leading delimiter yields an empty first token (the empty label) and trailing empty tokens are dropped.
+ * Tokens are kept as spans of the line and only turned into Strings on request,
+ * so the line can be any character sequence, e.g. a view of a memory mapped source file.
+ */
+final class Lexer {
+
+    private final CharSequence line;
+
+    private int[] starts = new int[6];
+    private int[] ends = new int[6];
+    private int count;
+
+    Lexer(CharSequence line) {
+        this.line = line;
+        scan();
+    }
+
+    private void scan() {
+        int length = line.length();
+        int tokenStart = 0;
+        int i = 0;
+        boolean delimited = false;
+
+        while (i < length) {
+            char c = line.charAt(i);
+            if (isWhitespace(c)) {
+                add(tokenStart, i);
+                do {
+                    i++;
+                } while (i < length && isWhitespace(line.charAt(i)));
+                tokenStart = i;
+                delimited = true;
+            } else if (c == ',') {
+                add(tokenStart, i);
+                i++;
+                tokenStart = i;
+                delimited = true;
+            } else {
+                i++;
+            }
+        }
+        add(tokenStart, length);
+
+        if (!delimited) {
+            // Like split, a line without delimiters is a single token, even when it is empty.
+            return;
+        }
+        while (count > 0 && starts[count - 1] == ends[count - 1]) {
+            count--;
+        }
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Same character class as the regex {@code \s}.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return the token at index i, or an empty string if the line has fewer tokens.
+     */
+    String get(int i) {
+        return i < count ? line.subSequence(starts[i], ends[i]).toString() : "";
+    }
+
+    /**
+     * Looks token i up in OPTABLE without turning it into a String.
+     */
+    Mnemonic lookupMnemonic(int i) {
+        return i < count ? Tables.lookupMnemonic(line, starts[i], ends[i]) : null;
+    }
+
+    boolean startsWith(int i, char c) {
+        return i < count && starts[i] < ends[i] && line.charAt(starts[i]) == c;
+    }
+
+    /**
+     * Drops the first character of token i, e.g. the format 4 prefix (+).
+     */
+    void skipFirst(int i) {
+        starts[i]++;
+    }
+}
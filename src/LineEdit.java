@@ -0,0 +1,44 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replaces a range of source lines with new lines, for {@link IncrementalAssembler}.
+ * Line numbers start at 0 and refer to the source as left by the previous edit.
+ */
+class LineEdit {
+
+    private final int line;
+    private final int removed;
+    private final List<String> inserted;
+
+    LineEdit(int line, int removed, List<String> inserted) {
+        this.line = line;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    static LineEdit replace(int line, String text) {
+        return new LineEdit(line, 1, Collections.singletonList(text));
+    }
+
+    static LineEdit insert(int line, String... text) {
+        return new LineEdit(line, 0, Arrays.asList(text));
+    }
+
+    static LineEdit delete(int line, int count) {
+        return new LineEdit(line, count, Collections.<String>emptyList());
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    List<String> getInserted() {
+        return inserted;
+    }
+}
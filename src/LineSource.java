@@ -0,0 +1,42 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the source program one line at a time.
+ */
+interface LineSource extends Closeable {
+
+    /**
+     * The charset of the source, whichever way it is read, and of the listing and object files, so every byte of
+     * a line reaches the listing unchanged on any platform.
+     */
+    Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    /**
+     * @return the next line without its terminator, or null at the end of the source.
+     */
+    CharSequence readLine() throws IOException;
+
+    /**
+     * Opens the source either through a memory mapping of the file or through a {@link BufferedReader}.
+     */
+    static LineSource open(File source, boolean mapped) throws IOException {
+        if (mapped) {
+            return new MappedSource(source);
+        }
+
+        BufferedReader src = new BufferedReader(new InputStreamReader(new FileInputStream(source), CHARSET));
+        return new LineSource() {
+            @Override
+            public CharSequence readLine() throws IOException {
+                return src.readLine();
+            }
+
+            @Override
+            public void close() throws IOException {
+                src.close();
+            }
+        };
+    }
+}
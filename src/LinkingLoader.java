@@ -0,0 +1,427 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Links and loads object files of the assembler into one memory image, as the linking loader of the textbook.
+ * <p>
+ * The files are read and parsed in parallel, one task per file. Pass 1 then places the control sections one after
+ * the other from the program address, in the order of the files and of the sections in them, and enters the
+ * sections and the symbols they define into the external symbol table (ESTAB), a hash table. Pass 2 copies the text
+ * records into the image and applies the modification records, a task per range of sections: sections do not
+ * overlap, and a modification record is resolved by a single lookup, so linking stays linear in the size of the
+ * object files however many modules there are.
+ * <p>
+ * The length of a section is the larger of the length in its header and the end of its last text record.
+ * <p>
+ * Usage: {@code LinkingLoader [--progaddr=HEX] [--parallelism=N] [--map] image objectFile...}. The image holds the
+ * memory from address 0 to the end of the last section. {@code --map} prints the load map and the symbols.
+ */
+class LinkingLoader {
+
+    // SIC/XE memory
+    static final int MEMORY_SIZE = 1 << 20;
+
+    // sections per pass 2 task
+    private static final int SECTIONS_PER_TASK = 64;
+
+    private final int progAddr;
+    private final int parallelism;
+
+    private final List<Section> sections = new ArrayList<>();
+    private final HashMap<String, Integer> estab = new HashMap<>();
+    private final List<String> errors = new ArrayList<>();
+
+    private byte[] image = new byte[0];
+    private int entry = -1;
+
+    /**
+     * @param progAddr    where the first section goes, or -1 for its own start address.
+     * @param parallelism the threads that read the files and load the sections.
+     */
+    LinkingLoader(int progAddr, int parallelism) {
+        this.progAddr = progAddr;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Links the object files. Undefined and duplicate external symbols are reported by {@link #getErrors()}, the
+     * rest of the program is still loaded.
+     *
+     * @throws IOException if a file can not be read or is not an object file, e.g. the error notice of a failed
+     *                     assembly, or the program does not fit in memory.
+     */
+    void load(List<File> objectFiles) throws IOException {
+        List<List<Section>> modules = new ArrayList<>(Collections.nCopies(objectFiles.size(), null));
+        try {
+            ParallelEncoder.invoke(parallelism, new Tasks(0, objectFiles.size(), 1, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    modules.set(i, read(objectFiles.get(i)));
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (List<Section> module : modules) {
+            sections.addAll(module);
+        }
+
+        assignAddresses();
+        image = new byte[sections.isEmpty() ? 0 : end(sections.get(sections.size() - 1))];
+        ParallelEncoder.invoke(parallelism, new Tasks(0, sections.size(), SECTIONS_PER_TASK, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                place(sections.get(i));
+            }
+        }));
+        for (Section section : sections) {
+            errors.addAll(section.errors);
+        }
+    }
+
+    /**
+     * Pass 1: gives every section its address and fills ESTAB.
+     */
+    private void assignAddresses() throws IOException {
+        long address = progAddr >= 0 ? progAddr : sections.isEmpty() ? 0 : sections.get(0).start;
+        for (Section section : sections) {
+            section.address = (int) address;
+            define(section.name, section.address, section);
+            for (int i = 0; i < section.definitions.size(); i += 2) {
+                int value = Integer.parseInt(section.definitions.get(i + 1), 16);
+                define(section.definitions.get(i), section.address + value - section.start, section);
+            }
+            if (entry == -1 && section.entry >= 0) {
+                entry = section.address + section.entry - section.start;
+            }
+            address += section.length;
+            if (address > MEMORY_SIZE) {
+                throw new IOException("the program does not fit in memory, it ends at " + Long.toHexString(address));
+            }
+        }
+    }
+
+    private void define(String symbol, int address, Section section) {
+        if (estab.putIfAbsent(symbol, address) != null) {
+            errors.add("duplicate external symbol " + symbol + " in " + section.name + " of " + section.file);
+        }
+    }
+
+    /**
+     * Pass 2: copies the text records of the section into the image and applies its modification records.
+     */
+    private void place(Section section) {
+        int offset = section.address - section.start;
+        for (Text text : section.texts) {
+            System.arraycopy(text.code, 0, image, text.address + offset, text.code.length);
+        }
+        for (Modification modification : section.modifications) {
+            Integer value = estab.get(modification.symbol);
+            if (value == null) {
+                section.errors.add("undefined external symbol " + modification.symbol + " in " + section.name
+                        + " of " + section.file);
+                continue;
+            }
+            modify(modification.address + offset, modification.halfBytes, modification.negative ? -value : value);
+        }
+    }
+
+    /**
+     * Adds a value to a field of the given number of half bytes. The field is right aligned in the bytes from the
+     * address on, as the 20 bit address of a format 4 instruction is the last 5 half bytes of its last 3 bytes.
+     */
+    private void modify(int address, int halfBytes, int value) {
+        int bytes = (halfBytes + 1) / 2;
+        int word = 0;
+        for (int i = 0; i < bytes; i++) {
+            word = word << 8 | image[address + i] & 0xFF;
+        }
+        int mask = (int) ((1L << 4 * halfBytes) - 1);
+        word = word & ~mask | (word + value) & mask;
+        for (int i = bytes - 1; i >= 0; i--) {
+            image[address + i] = (byte) word;
+            word >>= 8;
+        }
+    }
+
+    /**
+     * @return the memory from address 0 to the end of the last section.
+     */
+    byte[] getImage() {
+        return image;
+    }
+
+    /**
+     * @return the execution address given by the first end record that has one, or -1.
+     */
+    int getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the external symbol table, sections included.
+     */
+    HashMap<String, Integer> getSymbols() {
+        return estab;
+    }
+
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Writes where every section went, with the symbols it defines, as the load map of the textbook.
+     */
+    void writeMap(Writer map) throws IOException {
+        map.write("Section\tSymbol\tAddress\tLength\n");
+        for (Section section : sections) {
+            map.write(String.format("%s\t\t%06X\t%06X\n", section.name, section.address, section.length));
+            for (int i = 0; i < section.definitions.size(); i += 2) {
+                String symbol = section.definitions.get(i);
+                map.write(String.format("\t%s\t%06X\n", symbol, estab.get(symbol)));
+            }
+        }
+    }
+
+    /**
+     * Reads the sections of an object file, from each header record to its end record.
+     */
+    private static List<Section> read(File file) throws IOException {
+        List<String> records = Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1);
+        List<Section> sections = new ArrayList<>();
+        Section section = null;
+        for (int i = 0; i < records.size(); i++) {
+            String record = records.get(i);
+            if (record.isEmpty()) {
+                continue;
+            }
+            String[] fields = record.substring(1).split("\\^", -1);
+            try {
+                char type = record.charAt(0);
+                if (type == 'H' && section == null && fields.length == 3) {
+                    section = new Section(file, fields[0].trim(), Integer.parseInt(fields[1], 16),
+                            Integer.parseInt(fields[2], 16));
+                    continue;
+                }
+                if (section == null) {
+                    throw new NumberFormatException();
+                }
+                switch (type) {
+                    case 'D':
+                        for (int j = 0; j + 1 < fields.length; j += 2) {
+                            section.definitions.add(fields[j].trim());
+                            section.definitions.add(fields[j + 1]);
+                        }
+                        break;
+                    case 'R':
+                        // the modification records name the symbols themselves
+                        break;
+                    case 'T':
+                        Text text = new Text(Integer.parseInt(fields[0], 16), parseHex(fields[2]));
+                        section.texts.add(text);
+                        section.length = Math.max(section.length, text.address + text.code.length - section.start);
+                        break;
+                    case 'M':
+                        section.modifications.add(new Modification(Integer.parseInt(fields[0], 16),
+                                Integer.parseInt(fields[1], 16), fields[2].charAt(0) == '-', fields[2].substring(1)));
+                        break;
+                    case 'E':
+                        section.entry = fields[0].isEmpty() ? -1 : Integer.parseInt(fields[0], 16);
+                        sections.add(section);
+                        section = null;
+                        break;
+                    default:
+                        throw new NumberFormatException();
+                }
+            } catch (RuntimeException e) {
+                // bad number, missing field or record out of place
+                throw new IOException(file + ":" + (i + 1) + ": not an object record: " + record);
+            }
+        }
+        if (section != null) {
+            throw new IOException(file + ": missing end record");
+        }
+        return sections;
+    }
+
+    private static byte[] parseHex(String s) {
+        if (s.length() % 2 != 0) {
+            throw new NumberFormatException(s);
+        }
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(s.charAt(2 * i), 16);
+            int low = Character.digit(s.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new NumberFormatException(s);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    private static int end(Section section) {
+        return section.address + section.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int progAddr = -1;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        boolean map = false;
+        List<String> files = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                String[] option = arg.split("=", 2);
+                switch (option[0]) {
+                    case "--progaddr":
+                        progAddr = Integer.parseInt(option[1], 16);
+                        break;
+                    case "--parallelism":
+                        parallelism = Integer.parseInt(option[1]);
+                        break;
+                    case "--map":
+                        map = true;
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("unknown option " + arg);
+                        }
+                        files.add(arg);
+                }
+            }
+            if (files.size() < 2 || parallelism < 1 || progAddr < -1) {
+                throw new IllegalArgumentException("an image and at least one object file are needed");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: LinkingLoader [--progaddr=HEX] [--parallelism=N] [--map] image objectFile...");
+            System.exit(2);
+            return;
+        }
+
+        LinkingLoader loader = new LinkingLoader(progAddr, parallelism);
+        List<File> objectFiles = new ArrayList<>();
+        for (String file : files.subList(1, files.size())) {
+            objectFiles.add(new File(file));
+        }
+        try {
+            loader.load(objectFiles);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        for (String error : loader.getErrors()) {
+            System.err.println(error);
+        }
+        Files.write(new File(files.get(0)).toPath(), loader.getImage());
+        if (map) {
+            Writer out = new OutputStreamWriter(System.out, StandardCharsets.ISO_8859_1);
+            loader.writeMap(out);
+            out.write(String.format("entry %06X\n", loader.getEntry()));
+            out.flush();
+        }
+        if (!loader.getErrors().isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * A control section as read from its object file.
+     */
+    private static final class Section {
+
+        final File file;
+        final String name;
+        final int start;
+        int length;
+        // symbol and hex address pairs of the define records
+        final List<String> definitions = new ArrayList<>();
+        final List<Text> texts = new ArrayList<>();
+        final List<Modification> modifications = new ArrayList<>();
+        // undefined symbols found by pass 2
+        final List<String> errors = new ArrayList<>();
+        int entry = -1;
+        int address;
+
+        Section(File file, String name, int start, int length) {
+            this.file = file;
+            this.name = name;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private static final class Text {
+
+        final int address;
+        final byte[] code;
+
+        Text(int address, byte[] code) {
+            this.address = address;
+            this.code = code;
+        }
+    }
+
+    private static final class Modification {
+
+        final int address;
+        final int halfBytes;
+        final boolean negative;
+        final String symbol;
+
+        Modification(int address, int halfBytes, boolean negative, String symbol) {
+            this.address = address;
+            this.halfBytes = halfBytes;
+            this.negative = negative;
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Work on a range of files or sections.
+     */
+    private interface Range {
+        void run(int from, int to) throws IOException;
+    }
+
+    private static final class Tasks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int size;
+        private final Range range;
+
+        Tasks(int from, int to, int size, Range range) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > size) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tasks(from, middle, size, range), new Tasks(middle, to, size, range));
+                return;
+            }
+            try {
+                range.run(from, to);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
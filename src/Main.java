@@ -1,10 +1,75 @@
-
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.management.JMException;
 
 public class Main {
 
-    public static void main(String[] args) {
-        Assembler assembler = new Assembler("source.txt", "listFile", "objectFile");
-        assembler.assemble();
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (arguments.remove("--daemon")) {
+            daemon(arguments);
+            return;
+        }
+
+        CommandLine commandLine;
+        try {
+            commandLine = CommandLine.parse(arguments);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        Assembler assembler = commandLine.newAssembler();
+        AssemblyMetrics metrics;
+        try {
+            metrics = assembler.assembleFiles();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        for (String warning : metrics.getWarnings()) {
+            System.err.println("warning: " + warning);
+        }
+        if (commandLine.isStats()) {
+            System.err.print(metrics.summary());
+        }
+    }
+
+    private static void daemon(List<String> args) throws IOException {
+        int port = AssemblerDaemon.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            switch (option[0]) {
+                case "--port":
+                    port = Integer.parseInt(option[1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(option[1]);
+                    break;
+                default:
+                    System.err.println("unknown option " + arg);
+                    usage();
+            }
+        }
+
+        AssemblerDaemon daemon = new AssemblerDaemon(port, threads);
+        try {
+            AssemblerStats.register();
+        } catch (JMException e) {
+            System.err.println("metrics not published over JMX: " + e);
+        }
+        System.err.println("assembler daemon listening on port " + daemon.getPort() + ", token in "
+                + AssemblerDaemon.tokenFile(daemon.getPort()));
+        daemon.serve();
+    }
 
+    private static void usage() {
+        System.err.println("usage: Main " + CommandLine.USAGE);
+        System.err.println("       Main --daemon [--port=N] [--threads=N]");
+        System.exit(2);
     }
 }
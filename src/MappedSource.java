@@ -0,0 +1,96 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped source file.
+ * <p>
+ * Lines are returned as views of the mapping that decode bytes to chars on access, in {@link LineSource#CHARSET},
+ * so reading a line copies nothing and a String is only created when a token or the listing needs one.
+ * The mapping stays valid after {@link #close()} for as long as lines refer to it.
+ */
+class MappedSource implements LineSource {
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int limit;
+    private int position = 0;
+
+    MappedSource(File source) throws IOException {
+        file = new RandomAccessFile(source, "r");
+        FileChannel channel = file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            file.close();
+            throw new IOException("source is too large to be mapped: " + source);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        limit = buffer.limit();
+    }
+
+    @Override
+    public CharSequence readLine() {
+        if (position >= limit) {
+            return null;
+        }
+
+        // Like BufferedReader, a line ends at \n, \r or \r\n.
+        int start = position;
+        int end = start;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        position = end + 1;
+        if (end < limit && buffer.get(end) == '\r' && position < limit && buffer.get(position) == '\n') {
+            position++;
+        }
+        return new Line(buffer, start, end - start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static final class Line implements CharSequence {
+
+        private final MappedByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        Line(MappedByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Line(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+            return new String(bytes, CHARSET);
+        }
+    }
+}
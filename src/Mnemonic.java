@@ -6,13 +6,13 @@ class Mnemonic {
     private boolean directive = false;
 
     private int size;
-    private String opcode;
+    private int opcodeByte;
 
-    Mnemonic(String string, boolean registerType, int size, String opcode, boolean twoOperands) {
+    Mnemonic(String string, boolean registerType, int size, int opcode, boolean twoOperands) {
         this.string = string;
         this.registerType = registerType;
         this.size = size;
-        this.opcode = opcode;
+        this.opcodeByte = opcode;
         this.twoOperands = twoOperands;
     }
 
@@ -33,10 +33,6 @@ class Mnemonic {
         return size;
     }
 
-    void setSize(int size) {
-        this.size = size;
-    }
-
     boolean isTwoOperands() {
         return twoOperands;
     }
@@ -45,7 +41,11 @@ class Mnemonic {
         return directive;
     }
 
-     String getOpcode() {
-        return opcode;
+    String getOpcode() {
+        return String.format("%02X", opcodeByte);
+    }
+
+    int getOpcodeByte() {
+        return opcodeByte;
     }
 }
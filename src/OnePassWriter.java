@@ -0,0 +1,192 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Output side of the one-pass mode: lists and encodes each statement as soon as pass 1 gave it its address.
+ * A statement with a forward reference gets a placeholder in the text records and waits on the fixup chains;
+ * once its symbols are defined it is encoded and patched in, with a text record of its own if its record
+ * was already written. References still undefined at the end are listed after the program.
+ * <p>
+ * The header record is written before the program length is known and patched when the output is closed.
+ * If any statement has an error, the object file is replaced by the error notice, as in pass 2.
+ * Either file can be left out, the statements are still checked.
+ */
+class OnePassWriter implements Assembler.StatementSink {
+
+    private final AssemblyContext context;
+    private final File objectFile;
+    private final Writer list;
+    private final Writer object;
+    private final FixupTable fixups = new FixupTable(this::resolve);
+
+    private TextRecordWriter records;
+    private String header;
+    private boolean hasErrors;
+
+    /**
+     * @param listFile   the listing, or null for none.
+     * @param objectFile the object file, or null for none.
+     */
+    OnePassWriter(AssemblyContext context, File listFile, File objectFile) throws IOException {
+        this.context = context;
+        this.objectFile = objectFile;
+        this.list = listFile != null ? Assembler.newWriter(listFile) : null;
+        this.object = objectFile != null ? Assembler.newWriter(objectFile) : null;
+    }
+
+    @Override
+    public void accept(Statement statement) throws IOException {
+        write(statement);
+        if (statement.isLiteral()) {
+            // the statements waiting for the literal's address
+            define(statement.getLabel());
+        }
+    }
+
+    private void write(Statement statement) throws IOException {
+        SymbolTable symtable = context.getSymbolTable();
+        AssemblyMetrics metrics = context.getMetrics();
+        int phase = metrics.enter(AssemblyMetrics.VALIDATE);
+        boolean complete = fixups.add(statement, symtable);
+        if (complete) {
+            Assembler.validate(statement, symtable);
+        }
+        // pass 1 counts the line if it has errors
+        if (statement.hasErrors()) {
+            hasErrors = true;
+        }
+        if (list != null) {
+            metrics.enter(AssemblyMetrics.LISTING);
+            Assembler.writeListing(list, statement);
+        }
+
+        if (hasErrors || object == null) {
+            metrics.enter(phase);
+            return;
+        }
+
+        if (!complete) {
+            metrics.enter(AssemblyMetrics.OBJECT);
+            // a BASE waiting for its operand has no object code, a WORD has three bytes
+            if (!statement.getMnemonic().isDirective()) {
+                records().addPlaceholder(statement, statement.getSize());
+            } else if (statement.getMnemonic().getString().equals("WORD")) {
+                records().addPlaceholder(statement, 3);
+            }
+        } else {
+            metrics.enter(AssemblyMetrics.ENCODE);
+            boolean inText = Assembler.encode(statement, symtable);
+            metrics.enter(AssemblyMetrics.OBJECT);
+            if (inText) {
+                records().add(statement);
+            }
+        }
+        metrics.enter(phase);
+    }
+
+    /**
+     * Called once a label is defined, resolves the statements waiting for it.
+     */
+    void define(String symbol) throws IOException {
+        fixups.define(symbol);
+    }
+
+    private void resolve(Statement statement) throws IOException {
+        AssemblyMetrics metrics = context.getMetrics();
+        int phase = metrics.enter(AssemblyMetrics.VALIDATE);
+        boolean counted = statement.hasErrors();
+        Assembler.validate(statement, context.getSymbolTable());
+        if (statement.hasErrors()) {
+            if (!counted) {
+                context.countErrors(1);
+            }
+            hasErrors = true;
+            if (list != null) {
+                // reported under the program
+                metrics.enter(AssemblyMetrics.LISTING);
+                Assembler.writeListing(list, statement);
+            }
+        }
+        if (!hasErrors && object != null) {
+            metrics.enter(AssemblyMetrics.ENCODE);
+            boolean inText = Assembler.encode(statement, context.getSymbolTable());
+            metrics.enter(AssemblyMetrics.OBJECT);
+            if (inText) {
+                records.patch(statement);
+            }
+        }
+        metrics.enter(phase);
+    }
+
+    /**
+     * Finishes the listing with the symbol table, and the object file with the end record.
+     */
+    void close() throws IOException {
+        if (!context.isAborted()) {
+            // after pass 1 stopped early, symbols after the last line read are missing
+            fixups.finish(this::resolve);
+        }
+        if (list != null) {
+            context.getMetrics().enter(AssemblyMetrics.LISTING);
+            Assembler.writeSymbolTable(list, context);
+            list.close();
+        }
+        if (object == null) {
+            return;
+        }
+        context.getMetrics().enter(AssemblyMetrics.OBJECT);
+
+        if (hasErrors) {
+            object.close();
+            try (Writer error = Assembler.newWriter(objectFile)) {
+                Assembler.writeErrorObject(error);
+            }
+            return;
+        }
+
+        records().finish();
+        Assembler.writeEnd(object, context);
+        object.close();
+        patchHeader();
+    }
+
+    private TextRecordWriter records() throws IOException {
+        if (records == null) {
+            header = header();
+            object.write(header);
+            records = new TextRecordWriter(object, context.getProgStartAddr());
+        }
+        return records;
+    }
+
+    private void patchHeader() throws IOException {
+        String patched = header();
+        if (patched.equals(header)) {
+            return;
+        }
+        if (patched.length() == header.length()) {
+            try (RandomAccessFile file = new RandomAccessFile(objectFile, "rw")) {
+                file.write(patched.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        } else {
+            // the length does not fit in six hex digits
+            byte[] content = Files.readAllBytes(objectFile.toPath());
+            try (Writer file = Assembler.newWriter(objectFile)) {
+                file.write(patched);
+                file.write(new String(content, header.length(), content.length - header.length(),
+                        StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    private String header() throws IOException {
+        StringWriter header = new StringWriter();
+        Assembler.writeHeader(header, context);
+        return header.toString();
+    }
+}
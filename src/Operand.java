@@ -9,32 +9,41 @@ class Operand {
     private String filteredLine;
     private String filteredLine2;
 
+    private Expression expression;
+    private String literal;
+
     Operand(String line) {
         this.line = line;
         indirect = line.startsWith("@");
         immediate = line.startsWith("#");
-        boolean expression = line.contains("+") || line.contains("-") || line.contains("*") || line.contains("/");
 
         simple = !indirect && !immediate;
 
-        if (indirect) {
-            filteredLine = line.split("@")[1];
-            filteredLine2 = line.split("@")[1];
-        } else if (immediate) {
-            filteredLine = line.split("#")[1];
-            filteredLine2 = line.split("#")[1];
-        } else {
-            filteredLine = line;
-            filteredLine2 = line;
-        }
+        // Strip the addressing prefix (@ or #).
+        filteredLine = simple ? line : line.substring(1);
+        filteredLine2 = filteredLine;
 
-        if (expression) {
-            filteredLine2 = filteredLine;
-            filteredLine = filteredLine.split("[+\\-*/]")[0];
+        // For an expression keep only its first term in filteredLine.
+        int operator = indexOfOperator(filteredLine, 0);
+        if (operator != -1) {
+            filteredLine = filteredLine.substring(0, operator);
         }
 
     }
 
+    /**
+     * @return the index of the first arithmetic operator (+, -, *, /) at or after from, or -1.
+     */
+    static int indexOfOperator(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '+' || c == '-' || c == '*' || c == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     boolean isIndirect() {
         return indirect;
     }
@@ -47,6 +56,28 @@ class Operand {
         return simple;
     }
 
+    /**
+     * @return true for a literal, {@code =C'...'} or {@code =X'...'}.
+     */
+    boolean isLiteral() {
+        return line.startsWith("=");
+    }
+
+    /**
+     * @return the symbol of the literal pool entry that holds the literal, or null if it is in no pool.
+     */
+    String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * Makes the operand refer to the literal pool entry of the literal, through the symbol that has its address.
+     */
+    void setLiteral(String symbol) {
+        this.literal = symbol;
+        this.expression = Expression.symbol(symbol);
+    }
+
     boolean isSymAddress() {
         return SymAddress;
     }
@@ -68,4 +99,23 @@ class Operand {
     String getFilteredLine2() {
         return filteredLine2;
     }
+
+    /**
+     * @return the operand without its prefix as an expression, compiled on first use.
+     */
+    Expression getExpression() {
+        if (expression == null) {
+            expression = Expression.compile(filteredLine2);
+        }
+        return expression;
+    }
+
+    /**
+     * Drops the value kept by the expression, for when the symbols may have changed.
+     */
+    void forget() {
+        if (expression != null) {
+            expression.forget();
+        }
+    }
 }
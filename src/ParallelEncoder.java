@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pass 2 on several cores. Once pass 1 is done, encoding a statement only reads the statement and the symbol table,
+ * so the program is cut into chunks that are encoded and packed into text records by fork/join tasks.
+ * Chunks are cut at data directives, where a text record starts anyway, and their records are written in order,
+ * so the object file is the same as from the serial loop.
+ */
+class ParallelEncoder {
+
+    // statements per chunk
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Writes the text records of the program, encoding with the given number of threads.
+     */
+    static void write(Writer object, AssemblyContext context, int parallelism) throws IOException {
+        List<Statement> statements = context.getStatements();
+        List<Integer> starts = chunks(statements);
+        String[] records = new String[starts.size()];
+        starts.add(statements.size());
+
+        int phase = context.getMetrics().enter(AssemblyMetrics.ENCODE);
+        invoke(parallelism, new Encode(context, starts, records, 0, records.length));
+        context.getMetrics().enter(phase);
+
+        for (String chunk : records) {
+            object.write(chunk);
+        }
+    }
+
+    /**
+     * Runs the task on the common pool, or on a pool of its own if the parallelism differs.
+     */
+    static void invoke(int parallelism, ForkJoinTask<?> task) {
+        ForkJoinPool pool = parallelism == ForkJoinPool.getCommonPoolParallelism()
+                ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(task);
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first statement of every chunk.
+     */
+    private static List<Integer> chunks(List<Statement> statements) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int i = CHUNK_SIZE;
+        while (i < statements.size()) {
+            Statement statement = statements.get(i);
+            if (!statement.isComment() && statement.getMnemonic().isDirective() && statement.getInstruction() != null) {
+                starts.add(i);
+                i += CHUNK_SIZE;
+            } else {
+                i++;
+            }
+        }
+        return starts;
+    }
+
+    private static final class Encode extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AssemblyContext context;
+        private final List<Integer> starts;
+        private final String[] records;
+        private final int from;
+        private final int to;
+
+        Encode(AssemblyContext context, List<Integer> starts, String[] records, int from, int to) {
+            this.context = context;
+            this.starts = starts;
+            this.records = records;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Encode(context, starts, records, from, middle),
+                        new Encode(context, starts, records, middle, to));
+                return;
+            }
+
+            SymbolTable symtable = context.getSymbolTable();
+            List<Statement> statements = context.getStatements();
+            StringWriter chunk = new StringWriter();
+            TextRecordWriter writer = from == 0
+                    ? new TextRecordWriter(chunk, context.getProgStartAddr()) : TextRecordWriter.continuing(chunk);
+            try {
+                for (int i = starts.get(from); i < starts.get(from + 1); i++) {
+                    Statement statement = statements.get(i);
+                    if (Assembler.encode(statement, symtable)) {
+                        writer.add(statement);
+                    }
+                }
+                writer.finish();
+            } catch (IOException e) {
+                // StringWriter does not throw
+                throw new UncheckedIOException(e);
+            }
+            records[from] = chunk.toString();
+        }
+    }
+}
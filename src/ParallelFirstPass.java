@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pass 1 on several cores. Parsing a line, checking a statement against the finished symbol table, and
+ * formatting its listing line, are independent per statement, so they run in chunks on a fork/join pool.
+ * Between parsing and checking, addresses and labels are assigned by the serial scan of {@link Assembler#define}:
+ * labels have to enter the symbol table in source order for duplicates and the symbol table listing to come out as
+ * in the serial pass, and ORG and EQU need the symbols before them.
+ */
+class ParallelFirstPass {
+
+    // statements per chunk
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Runs pass 1 over the source.
+     */
+    static void run(AssemblyContext context, LineSource source, int parallelism) throws IOException {
+        AssemblyMetrics metrics = context.getMetrics();
+        metrics.enter(AssemblyMetrics.READ);
+        List<CharSequence> lines = new ArrayList<>();
+        CharSequence line;
+        while ((line = source.readLine()) != null) {
+            lines.add(line);
+        }
+
+        metrics.enter(AssemblyMetrics.PARSE);
+        Statement[] parsed = new Statement[lines.size()];
+        ParallelEncoder.invoke(parallelism, new Chunks(0, chunks(lines.size()), lines.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                parsed[i] = new Statement(lines.get(i));
+            }
+        }));
+
+        metrics.enter(AssemblyMetrics.PASS1);
+        List<Statement> statements = context.getStatements();
+        for (Statement statement : parsed) {
+            if (!Assembler.define(context, statement, statements::add)) {
+                break;
+            }
+        }
+
+        if (context.isAborted()) {
+            // symbols after the last line read are missing
+            return;
+        }
+
+        // symtable and hex numbers errors handling, the lines pass 1 found errors in are already counted
+        metrics.enter(AssemblyMetrics.VALIDATE);
+        boolean relocatable = context.isRelocatable();
+        // every chunk may address relative to a base, so the bases are evaluated first
+        for (Statement base : context.getBases()) {
+            boolean counted = base.hasErrors();
+            Assembler.validate(base, base.getSection().getSymbolTable());
+            if (!counted && base.hasErrors()) {
+                context.countErrors(1);
+            }
+        }
+        int[] errors = new int[chunks(statements.size())];
+        ParallelEncoder.invoke(parallelism, new Chunks(0, errors.length, statements.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                Statement statement = statements.get(i);
+                boolean counted = statement.hasErrors();
+                Assembler.validate(statement, statement.getSection().getSymbolTable());
+                if (relocatable) {
+                    Assembler.validateLinkage(statement);
+                }
+                if (!counted && statement.hasErrors()) {
+                    errors[from / CHUNK_SIZE]++;
+                }
+            }
+        }));
+        for (int chunk : errors) {
+            context.countErrors(chunk);
+        }
+    }
+
+    /**
+     * Printer: writes the listing lines of the statements checked by pass 1.
+     */
+    static void writeListing(Writer list, List<Statement> statements, int parallelism) throws IOException {
+        String[] listing = new String[chunks(statements.size())];
+        ParallelEncoder.invoke(parallelism, new Chunks(0, listing.length, statements.size(), (from, to) -> {
+            StringWriter chunk = new StringWriter();
+            for (int i = from; i < to; i++) {
+                Assembler.writeListing(chunk, statements.get(i));
+            }
+            listing[from / CHUNK_SIZE] = chunk.toString();
+        }));
+        for (String chunk : listing) {
+            list.write(chunk);
+        }
+    }
+
+    private static int chunks(int size) {
+        return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Work on the statements of a range of chunks.
+     */
+    private interface Range {
+        void run(int from, int to) throws IOException;
+    }
+
+    private static final class Chunks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int size;
+        private final Range range;
+
+        Chunks(int from, int to, int size, Range range) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunks(from, middle, size, range), new Chunks(middle, to, size, range));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            try {
+                range.run(from * CHUNK_SIZE, Math.min(size, to * CHUNK_SIZE));
+            } catch (IOException e) {
+                // the ranges only write to strings
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes valid, error free SIC/XE programs of a chosen size and statement mix, for scale and load testing.
+ * <p>
+ * The program is laid out first (kind, size and address of every statement), and operands are picked afterwards,
+ * so references can point forward as well as backward. Format 3 operands only refer to labels within the
+ * PC-relative range, far references use format 4. EQU and ORG operands only use symbols defined before them,
+ * since pass 1 has to evaluate them.
+ * <p>
+ * Usage: {@code ProgramGenerator <lines> <output> [--seed=N] [--labels=0.5] [--forward=0.3] [--format2=10] ...}
+ */
+class ProgramGenerator {
+
+    private static final String[] MEMORY_OPS = {"LDA", "STA", "LDX", "STX", "ADD", "SUB", "COMP", "LDCH", "STCH",
+            "LDS", "LDT", "TIX", "J", "JEQ", "JGT", "JLT"};
+    private static final String[] REGISTER_OPS = {"ADDR", "COMPR", "RMO", "SUBR"};
+    private static final String[] REGISTERS = {"A", "X", "L", "B", "S", "T"};
+
+    // statement kinds
+    private static final byte COMMENT = 0;
+    private static final byte FORMAT2 = 1;
+    private static final byte FORMAT3 = 2;
+    private static final byte FORMAT4 = 3;
+    private static final byte DATA = 4;
+    private static final byte RESERVE = 5;
+    private static final byte EQU = 6;
+    private static final byte ORG = 7;
+
+    /**
+     * Keep PC-relative targets well inside the 12 bit displacement.
+     */
+    private static final int PC_RANGE = 2000;
+
+    private static final int START_ADDRESS = 0x1000;
+
+    // relative weights of the statement kinds
+    private int commentWeight = 2;
+    private int format2Weight = 10;
+    private int format3Weight = 60;
+    private int format4Weight = 5;
+    private int dataWeight = 10;
+    private int reserveWeight = 5;
+    private int equWeight = 3;
+    private int orgWeight = 1;
+
+    // addressing modes of memory reference instructions
+    private double immediateRatio = 0.10;
+    private double indirectRatio = 0.05;
+    private double indexedRatio = 0.05;
+    private double expressionRatio = 0.05;
+
+    private double labelDensity = 0.5;
+    private double forwardRefDensity = 0.3;
+
+    private long seed = 1;
+
+    // layout of the program being generated
+    private byte[] kinds;
+    private int[] sizes;
+    private int[] addresses;
+    private boolean[] labeled;
+    private int[] targets;
+    private int targetCount;
+
+    void setMix(int comment, int format2, int format3, int format4, int data, int reserve, int equ, int org) {
+        this.commentWeight = comment;
+        this.format2Weight = format2;
+        this.format3Weight = format3;
+        this.format4Weight = format4;
+        this.dataWeight = data;
+        this.reserveWeight = reserve;
+        this.equWeight = equ;
+        this.orgWeight = org;
+    }
+
+    void setAddressing(double immediate, double indirect, double indexed, double expression) {
+        this.immediateRatio = immediate;
+        this.indirectRatio = indirect;
+        this.indexedRatio = indexed;
+        this.expressionRatio = expression;
+    }
+
+    /**
+     * @param labelDensity fraction of statements that have a label.
+     */
+    void setLabelDensity(double labelDensity) {
+        this.labelDensity = labelDensity;
+    }
+
+    /**
+     * @param forwardRefDensity fraction of symbolic operands that refer to a label defined later.
+     */
+    void setForwardRefDensity(double forwardRefDensity) {
+        this.forwardRefDensity = forwardRefDensity;
+    }
+
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes a program of about the given number of lines, START and END included.
+     */
+    void generate(int lines, Writer out) throws IOException {
+        Random random = new Random(seed);
+        layout(Math.max(0, lines - 2), random);
+
+        out.write("PROG     START   " + Integer.toHexString(START_ADDRESS).toUpperCase() + "\n");
+        StringBuilder line = new StringBuilder(64);
+        for (int i = 0; i < kinds.length; i++) {
+            line.setLength(0);
+            writeStatement(i, random, line);
+            out.write(line.toString());
+        }
+        out.write("         END     PROG\n");
+        out.flush();
+    }
+
+    private void layout(int count, Random random) {
+        kinds = new byte[count];
+        sizes = new int[count];
+        addresses = new int[count];
+        labeled = new boolean[count];
+        targets = new int[count];
+        targetCount = 0;
+
+        int[] weights = {commentWeight, format2Weight, format3Weight, format4Weight, dataWeight, reserveWeight,
+                equWeight, orgWeight};
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+
+        int locctr = START_ADDRESS;
+        for (int i = 0; i < count; i++) {
+            byte kind = 0;
+            int pick = random.nextInt(total);
+            while (pick >= weights[kind]) {
+                pick -= weights[kind];
+                kind++;
+            }
+
+            kinds[i] = kind;
+            addresses[i] = locctr;
+            switch (kind) {
+                case FORMAT2:
+                    sizes[i] = 2;
+                    break;
+                case FORMAT3:
+                case DATA:
+                    sizes[i] = 3;
+                    break;
+                case FORMAT4:
+                    sizes[i] = 4;
+                    break;
+                case RESERVE:
+                    // RESB or RESW, in multiples of 3 so both fit the same size
+                    sizes[i] = 3 * (1 + random.nextInt(10));
+                    break;
+                case ORG:
+                    // a 30 byte buffer redefined with ORG: 5 lines
+                    sizes[i] = 30;
+                    break;
+                default:
+                    sizes[i] = 0;
+            }
+            labeled[i] = kind == EQU || kind == ORG || (kind != COMMENT && random.nextDouble() < labelDensity);
+            if (labeled[i] && kind != EQU) {
+                targets[targetCount++] = i;
+            }
+            locctr += sizes[i];
+        }
+    }
+
+    private void writeStatement(int i, Random random, StringBuilder line) {
+        String label = labeled[i] ? "L" + i : "";
+        switch (kinds[i]) {
+            case COMMENT:
+                line.append(". generated comment ").append(i).append('\n');
+                return;
+
+            case FORMAT2: {
+                String op = REGISTER_OPS[random.nextInt(REGISTER_OPS.length)];
+                if (random.nextInt(5) == 0) {
+                    appendFields(line, label, "TIXR", REGISTERS[random.nextInt(REGISTERS.length)]);
+                } else {
+                    appendFields(line, label, op, REGISTERS[random.nextInt(REGISTERS.length)] + ","
+                            + REGISTERS[random.nextInt(REGISTERS.length)]);
+                }
+                return;
+            }
+
+            case FORMAT3:
+            case FORMAT4: {
+                boolean format4 = kinds[i] == FORMAT4;
+                String op = (format4 ? "+" : "") + MEMORY_OPS[random.nextInt(MEMORY_OPS.length)];
+                appendFields(line, label, op, memoryOperand(i, format4, random));
+                return;
+            }
+
+            case DATA:
+                if (random.nextBoolean()) {
+                    appendFields(line, label, "WORD", Integer.toString(random.nextInt(100000)));
+                } else if (random.nextBoolean()) {
+                    appendFields(line, label, "BYTE", "C'" + (char) ('A' + random.nextInt(26))
+                            + (char) ('A' + random.nextInt(26)) + (char) ('0' + random.nextInt(10)) + "'");
+                } else {
+                    appendFields(line, label, "BYTE", String.format("X'%06X'", random.nextInt(1 << 24)));
+                }
+                return;
+
+            case RESERVE:
+                if (random.nextBoolean()) {
+                    appendFields(line, label, "RESW", Integer.toString(sizes[i] / 3));
+                } else {
+                    appendFields(line, label, "RESB", Integer.toString(sizes[i]));
+                }
+                return;
+
+            case EQU: {
+                int symbol = backwardTarget(i, random);
+                String value;
+                if (symbol == -1) {
+                    value = Integer.toString(random.nextInt(4000));
+                } else if (random.nextDouble() < expressionRatio * 4) {
+                    value = "L" + symbol + "+" + random.nextInt(30);
+                } else {
+                    value = "L" + symbol;
+                }
+                appendFields(line, label, "EQU", value);
+                return;
+            }
+
+            case ORG:
+                // Redefine the buffer as fields, then move back to its end.
+                appendFields(line, label, "RESB", "30");
+                appendFields(line, "", "ORG", label);
+                appendFields(line, "F" + i + "A", "RESB", "12");
+                appendFields(line, "F" + i + "B", "RESW", "6");
+                appendFields(line, "", "ORG", label + "+30");
+                return;
+
+            default:
+                throw new IllegalStateException("unknown statement kind " + kinds[i]);
+        }
+    }
+
+    private String memoryOperand(int i, boolean format4, Random random) {
+        double mode = random.nextDouble();
+        if (mode < immediateRatio) {
+            if (random.nextBoolean()) {
+                return "#" + random.nextInt(4000);
+            }
+            int target = target(i, format4, random);
+            return target == -1 ? "#" + random.nextInt(4000) : "#L" + target;
+        }
+
+        int target = target(i, format4, random);
+        if (target == -1) {
+            return "#" + random.nextInt(4000);
+        }
+        mode -= immediateRatio;
+        if (mode < indirectRatio) {
+            return "@L" + target;
+        }
+        mode -= indirectRatio;
+        if (mode < indexedRatio) {
+            return "L" + target + ",X";
+        }
+        mode -= indexedRatio;
+        if (mode < expressionRatio) {
+            return random.nextBoolean() ? "L" + target + "+3" : "L" + target + "-3";
+        }
+        return "L" + target;
+    }
+
+    /**
+     * Picks a labeled statement to refer to from statement i: any label for format 4,
+     * otherwise one in PC-relative range.
+     *
+     * @return the index of the statement, or -1 if there is none.
+     */
+    private int target(int i, boolean format4, Random random) {
+        if (targetCount == 0) {
+            return -1;
+        }
+        if (format4) {
+            return targets[random.nextInt(targetCount)];
+        }
+
+        int pc = addresses[i] + sizes[i];
+        boolean forward = random.nextDouble() < forwardRefDensity;
+        int wanted = forward ? pc + random.nextInt(PC_RANGE) : pc - 3 - random.nextInt(PC_RANGE);
+
+        int position = Arrays.binarySearch(targets, 0, targetCount, indexAtOrAfter(wanted));
+        if (position < 0) {
+            position = -position - 1;
+        }
+        for (int candidate : new int[]{position, position - 1}) {
+            if (candidate >= 0 && candidate < targetCount) {
+                // The -3 leaves room for the +3/-3 expressions.
+                int displacement = addresses[targets[candidate]] - pc;
+                if (displacement > -2045 && displacement < 2044) {
+                    return targets[candidate];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A label defined before statement i, for EQU operands.
+     */
+    private int backwardTarget(int i, Random random) {
+        int position = Arrays.binarySearch(targets, 0, targetCount, i);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return position == 0 ? -1 : targets[random.nextInt(position)];
+    }
+
+    /**
+     * @return the index of the first statement at or after the address.
+     */
+    private int indexAtOrAfter(int address) {
+        int position = Arrays.binarySearch(addresses, address);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        // Statements of size 0 share their address with the next one.
+        while (position > 0 && addresses[position - 1] == address) {
+            position--;
+        }
+        return Math.min(position, addresses.length - 1);
+    }
+
+    private static void appendFields(StringBuilder line, String label, String op, String operand) {
+        line.append(label);
+        // like the sample programs, the format 4 prefix sits in the column before the mnemonic
+        boolean prefixed = op.startsWith("+") && label.length() < 8;
+        pad(line, label.length(), prefixed ? 8 : 9);
+        line.append(op);
+        pad(line, op.startsWith("+") ? op.length() - 1 : op.length(), 8);
+        line.append(operand).append('\n');
+    }
+
+    private static void pad(StringBuilder line, int length, int width) {
+        for (int i = length; i < width; i++) {
+            line.append(' ');
+        }
+        if (length >= width) {
+            line.append(' ');
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ProgramGenerator <lines> <output> [--seed=N] [--labels=D] [--forward=D]"
+                    + " [--mix=comment,f2,f3,f4,data,reserve,equ,org] [--addressing=imm,ind,idx,expr]");
+            System.exit(2);
+        }
+
+        ProgramGenerator generator = new ProgramGenerator();
+        for (int i = 2; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            switch (option[0]) {
+                case "--seed":
+                    generator.setSeed(Long.parseLong(option[1]));
+                    break;
+                case "--labels":
+                    generator.setLabelDensity(Double.parseDouble(option[1]));
+                    break;
+                case "--forward":
+                    generator.setForwardRefDensity(Double.parseDouble(option[1]));
+                    break;
+                case "--mix": {
+                    String[] w = option[1].split(",");
+                    generator.setMix(Integer.parseInt(w[0]), Integer.parseInt(w[1]), Integer.parseInt(w[2]),
+                            Integer.parseInt(w[3]), Integer.parseInt(w[4]), Integer.parseInt(w[5]),
+                            Integer.parseInt(w[6]), Integer.parseInt(w[7]));
+                    break;
+                }
+                case "--addressing": {
+                    String[] r = option[1].split(",");
+                    generator.setAddressing(Double.parseDouble(r[0]), Double.parseDouble(r[1]),
+                            Double.parseDouble(r[2]), Double.parseDouble(r[3]));
+                    break;
+                }
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        BufferedWriter out = new BufferedWriter(new FileWriter(args[1]));
+        generator.generate(Integer.parseInt(args[0]), out);
+        out.close();
+    }
+}
@@ -0,0 +1,626 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs SIC/XE programs: loads object files with the {@link LinkingLoader} into a 1 MB memory and executes formats 1
+ * to 4 with simple, immediate, indirect, indexed, PC-relative and base-relative addressing, and SIC instructions.
+ * <p>
+ * The registers are indexed by their numbers in {@link Tables#getREGTABLE()}, so format 2 instructions use their
+ * operands as they are; F is kept as a double. An instruction is decoded once, the first time it is executed, into an
+ * int of its opcode, length and addressing flags and the constant part of its target address, which for PC-relative
+ * addressing includes the PC. Only the index and base registers are added when it runs again. A write to memory
+ * drops the decoded instructions it overlaps, so a program can modify itself. The interpreter is a switch on the
+ * opcode and allocates nothing per instruction.
+ * <p>
+ * The program stops when it returns ({@code RSUB} with the L it started with), jumps to itself ({@code J *}), runs
+ * past the end of the loaded sections, reaches the instruction limit or executes an instruction that can not run:
+ * an unknown opcode, a division by zero, or a privileged instruction, which are not simulated. {@code RD} reads a
+ * byte of the input and {@code WD} writes one to the output, whatever the device, and {@code TD} always finds the
+ * device ready.
+ * <p>
+ * Usage: {@code Simulator [--progaddr=HEX] [--max-instructions=N] [--stats] objectFile...}. The program reads the
+ * standard input and writes the standard output. The registers and why the program stopped are printed to the
+ * standard error, {@code --stats} adds the instructions executed and the MIPS.
+ */
+class Simulator {
+
+    // register numbers, as in the REGTABLE
+    static final int A = 0;
+    static final int X = 1;
+    static final int L = 2;
+    static final int B = 3;
+    static final int S = 4;
+    static final int T = 5;
+    static final int F = 6;
+    static final int PC = 8;
+    static final int SW = 9;
+
+    /**
+     * L when the program starts, outside memory: returning to it stops the program.
+     */
+    static final int HALT = 0xFFFFFF;
+
+    private static final int MASK = LinkingLoader.MEMORY_SIZE - 1;
+    private static final int WORD = 0xFFFFFF;
+
+    // condition code, bits 6 and 7 of SW
+    private static final int CC = 0x030000;
+    private static final int EQUAL = 0;
+    private static final int LESS = 0x010000;
+    private static final int GREATER = 0x020000;
+
+    // a decoded instruction: the opcode without n and i, the length, n and i, x and b
+    private static final int LENGTH_SHIFT = 8;
+    private static final int IMMEDIATE = 1 << 11;
+    private static final int INDIRECT = 2 << 11;
+    private static final int SIMPLE = 3 << 11;
+    private static final int MODE = 3 << 11;
+    private static final int INDEXED = 1 << 13;
+    private static final int BASED = 1 << 14;
+
+    // the format of every opcode, 0 for none
+    private static final byte[] FORMATS = new byte[256];
+
+    static {
+        for (int opcode : new int[]{0xC4, 0xC0, 0xF4, 0xC8, 0xF0, 0xF8}) {
+            FORMATS[opcode] = 1;
+        }
+        for (int opcode : new int[]{0x90, 0xB4, 0xA0, 0x9C, 0x98, 0xAC, 0xA4, 0xA8, 0x94, 0xB0, 0xB8}) {
+            FORMATS[opcode] = 2;
+        }
+        for (int opcode : new int[]{0x18, 0x58, 0x40, 0x28, 0x88, 0x24, 0x64, 0x3C, 0x30, 0x34, 0x38, 0x48, 0x00,
+                0x68, 0x50, 0x70, 0x08, 0x6C, 0x74, 0x04, 0xD0, 0x20, 0x60, 0x44, 0xD8, 0x4C, 0xEC, 0x0C, 0x78, 0x54,
+                0x80, 0xD4, 0x14, 0x7C, 0xE8, 0x84, 0x10, 0x1C, 0x5C, 0xE0, 0x2C, 0xDC}) {
+            FORMATS[opcode] = 3;
+        }
+    }
+
+    private final byte[] memory = new byte[LinkingLoader.MEMORY_SIZE];
+    // by address: the instruction decoded there, 0 for none, and the constant part of its target address or, for
+    // format 2, its register byte
+    private final int[] decoded = new int[LinkingLoader.MEMORY_SIZE];
+    private final int[] operands = new int[LinkingLoader.MEMORY_SIZE];
+
+    private final int[] registers = new int[16];
+    private double f;
+    private int limit;
+
+    private final InputStream input;
+    private final OutputStream output;
+
+    private long instructions;
+    private String status;
+
+    /**
+     * @param input  what {@code RD} reads.
+     * @param output what {@code WD} writes, flushed when the program stops.
+     */
+    Simulator(InputStream input, OutputStream output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Copies the image to memory from address 0 and starts the program at the entry point.
+     */
+    void load(byte[] image, int entry) {
+        Arrays.fill(memory, (byte) 0);
+        System.arraycopy(image, 0, memory, 0, image.length);
+        Arrays.fill(decoded, 0);
+        limit = image.length;
+        Arrays.fill(registers, 0);
+        f = 0;
+        registers[PC] = entry;
+        registers[L] = HALT;
+    }
+
+    /**
+     * Runs the program until it stops, see {@link #getStatus()}.
+     *
+     * @return the instructions executed.
+     */
+    long run(long maxInstructions) throws IOException {
+        byte[] memory = this.memory;
+        int[] decoded = this.decoded;
+        int[] operands = this.operands;
+        int[] r = registers;
+        int pc = r[PC];
+        long executed = 0;
+        status = "instruction limit reached";
+
+        execute:
+        while (executed < maxInstructions) {
+            if (pc >= limit) {
+                status = pc == HALT ? "returned" : String.format("ran past the end of the program at %06X", pc);
+                break;
+            }
+            int d = decoded[pc];
+            if (d == 0) {
+                d = decode(pc);
+            }
+            int next = pc + (d >>> LENGTH_SHIFT & 7);
+            int operand = operands[pc];
+            int ta = operand;
+            if ((d & (INDEXED | BASED)) != 0) {
+                ta += ((d & INDEXED) != 0 ? r[X] : 0) + ((d & BASED) != 0 ? r[B] : 0);
+            }
+            ta &= MASK;
+            int r1 = operand >> 4 & 0xF;
+            int r2 = operand & 0xF;
+            switch (d & 0xFF) {
+                // loads and stores
+                case 0x00: // LDA
+                    r[A] = operand(d, ta);
+                    break;
+                case 0x04: // LDX
+                    r[X] = operand(d, ta);
+                    break;
+                case 0x08: // LDL
+                    r[L] = operand(d, ta);
+                    break;
+                case 0x68: // LDB
+                    r[B] = operand(d, ta);
+                    break;
+                case 0x6C: // LDS
+                    r[S] = operand(d, ta);
+                    break;
+                case 0x74: // LDT
+                    r[T] = operand(d, ta);
+                    break;
+                case 0x50: // LDCH
+                    r[A] = r[A] & 0xFFFF00 | ((d & MODE) == IMMEDIATE ? ta & 0xFF : memory[target(d, ta)] & 0xFF);
+                    break;
+                case 0x70: // LDF
+                    f = toDouble((d & MODE) == IMMEDIATE ? ta : read48(target(d, ta)));
+                    break;
+                case 0x0C: // STA
+                    writeWord(target(d, ta), r[A]);
+                    break;
+                case 0x10: // STX
+                    writeWord(target(d, ta), r[X]);
+                    break;
+                case 0x14: // STL
+                    writeWord(target(d, ta), r[L]);
+                    break;
+                case 0x78: // STB
+                    writeWord(target(d, ta), r[B]);
+                    break;
+                case 0x7C: // STS
+                    writeWord(target(d, ta), r[S]);
+                    break;
+                case 0x84: // STT
+                    writeWord(target(d, ta), r[T]);
+                    break;
+                case 0xE8: // STSW
+                    writeWord(target(d, ta), r[SW]);
+                    break;
+                case 0x54: // STCH
+                    ta = target(d, ta);
+                    memory[ta] = (byte) r[A];
+                    invalidate(ta, 1);
+                    break;
+                case 0x80: // STF
+                    write48(target(d, ta), fromDouble(f));
+                    break;
+
+                // arithmetic and logic
+                case 0x18: // ADD
+                    r[A] = r[A] + operand(d, ta) & WORD;
+                    break;
+                case 0x1C: // SUB
+                    r[A] = r[A] - operand(d, ta) & WORD;
+                    break;
+                case 0x20: // MUL
+                    r[A] = signed(r[A]) * signed(operand(d, ta)) & WORD;
+                    break;
+                case 0x24: { // DIV
+                    int divisor = signed(operand(d, ta));
+                    if (divisor == 0) {
+                        status = String.format("division by zero at %06X", pc);
+                        break execute;
+                    }
+                    r[A] = signed(r[A]) / divisor & WORD;
+                    break;
+                }
+                case 0x40: // AND
+                    r[A] &= operand(d, ta);
+                    break;
+                case 0x44: // OR
+                    r[A] |= operand(d, ta);
+                    break;
+                case 0x28: // COMP
+                    r[SW] = r[SW] & ~CC | compare(signed(r[A]), signed(operand(d, ta)));
+                    break;
+                case 0x2C: // TIX
+                    r[X] = r[X] + 1 & WORD;
+                    r[SW] = r[SW] & ~CC | compare(signed(r[X]), signed(operand(d, ta)));
+                    break;
+
+                // floating point
+                case 0x58: // ADDF
+                    f += floatOperand(d, ta);
+                    break;
+                case 0x5C: // SUBF
+                    f -= floatOperand(d, ta);
+                    break;
+                case 0x60: // MULF
+                    f *= floatOperand(d, ta);
+                    break;
+                case 0x64: { // DIVF
+                    double divisor = floatOperand(d, ta);
+                    if (divisor == 0) {
+                        status = String.format("division by zero at %06X", pc);
+                        break execute;
+                    }
+                    f /= divisor;
+                    break;
+                }
+                case 0x88: { // COMPF
+                    double value = floatOperand(d, ta);
+                    r[SW] = r[SW] & ~CC | (f < value ? LESS : f > value ? GREATER : EQUAL);
+                    break;
+                }
+                case 0xC4: // FIX
+                    r[A] = (int) f & WORD;
+                    break;
+                case 0xC0: // FLOAT
+                    f = signed(r[A]);
+                    break;
+                case 0xC8: // NORM
+                    // a double is always normalized
+                    break;
+
+                // jumps
+                case 0x3C: // J
+                    ta = (d & MODE) == INDIRECT ? word(ta) : ta;
+                    if (ta == pc) {
+                        executed++;
+                        status = String.format("idle loop at %06X", pc);
+                        break execute;
+                    }
+                    next = ta;
+                    break;
+                case 0x30: // JEQ
+                    if ((r[SW] & CC) == EQUAL) {
+                        next = (d & MODE) == INDIRECT ? word(ta) : ta;
+                    }
+                    break;
+                case 0x34: // JGT
+                    if ((r[SW] & CC) == GREATER) {
+                        next = (d & MODE) == INDIRECT ? word(ta) : ta;
+                    }
+                    break;
+                case 0x38: // JLT
+                    if ((r[SW] & CC) == LESS) {
+                        next = (d & MODE) == INDIRECT ? word(ta) : ta;
+                    }
+                    break;
+                case 0x48: // JSUB
+                    r[L] = next;
+                    next = (d & MODE) == INDIRECT ? word(ta) : ta;
+                    break;
+                case 0x4C: // RSUB
+                    next = r[L];
+                    break;
+
+                // format 2
+                case 0x90: // ADDR
+                    r[r2] = r[r2] + r[r1] & WORD;
+                    break;
+                case 0x94: // SUBR
+                    r[r2] = r[r2] - r[r1] & WORD;
+                    break;
+                case 0x98: // MULR
+                    r[r2] = signed(r[r2]) * signed(r[r1]) & WORD;
+                    break;
+                case 0x9C: // DIVR
+                    if (r[r1] == 0) {
+                        status = String.format("division by zero at %06X", pc);
+                        break execute;
+                    }
+                    r[r2] = signed(r[r2]) / signed(r[r1]) & WORD;
+                    break;
+                case 0xA0: // COMPR
+                    r[SW] = r[SW] & ~CC | compare(signed(r[r1]), signed(r[r2]));
+                    break;
+                case 0xAC: // RMO
+                    r[r2] = r[r1];
+                    break;
+                case 0xB4: // CLEAR
+                    r[r1] = 0;
+                    break;
+                case 0xA4: { // SHIFTL, circular
+                    int n = r2 + 1;
+                    r[r1] = (r[r1] << n | r[r1] >>> 24 - n) & WORD;
+                    break;
+                }
+                case 0xA8: // SHIFTR, filled with the sign bit
+                    r[r1] = signed(r[r1]) >> r2 + 1 & WORD;
+                    break;
+                case 0xB8: // TIXR
+                    r[X] = r[X] + 1 & WORD;
+                    r[SW] = r[SW] & ~CC | compare(signed(r[X]), signed(r[r1]));
+                    break;
+
+                // devices
+                case 0xE0: // TD
+                    r[SW] = r[SW] & ~CC | LESS;
+                    break;
+                case 0xD8: { // RD
+                    int b = input.read();
+                    r[A] = r[A] & 0xFFFF00 | (b < 0 ? 0 : b);
+                    break;
+                }
+                case 0xDC: // WD
+                    output.write(r[A]);
+                    break;
+
+                default:
+                    status = FORMATS[d & 0xFF] == 0
+                            ? String.format("illegal instruction %02X at %06X", memory[pc] & 0xFF, pc)
+                            : String.format("privileged instruction %02X at %06X", d & 0xFF, pc);
+                    break execute;
+            }
+            executed++;
+            pc = next;
+        }
+        r[PC] = pc;
+        instructions += executed;
+        output.flush();
+        return executed;
+    }
+
+    /**
+     * Decodes the instruction at the address and keeps it.
+     */
+    private int decode(int pc) {
+        int first = memory[pc] & 0xFF;
+        int opcode = first & 0xFC;
+        int d;
+        switch (FORMATS[opcode]) {
+            case 1:
+                d = opcode | 1 << LENGTH_SHIFT;
+                break;
+            case 2:
+                d = opcode | 2 << LENGTH_SHIFT;
+                operands[pc] = memory[pc + 1 & MASK] & 0xFF;
+                break;
+            case 3:
+                int second = memory[pc + 1 & MASK] & 0xFF;
+                int third = memory[pc + 2 & MASK] & 0xFF;
+                int indexed = (second & 0x80) != 0 ? INDEXED : 0;
+                if ((first & 3) == 0) {
+                    // SIC: x and a 15 bit address
+                    d = opcode | 3 << LENGTH_SHIFT | SIMPLE | indexed;
+                    operands[pc] = (second & 0x7F) << 8 | third;
+                    break;
+                }
+                boolean extended = (second & 0x10) != 0;
+                int length = extended ? 4 : 3;
+                int address = (second & 0x0F) << 8 | third;
+                if (extended) {
+                    address = address << 8 | memory[pc + 3 & MASK] & 0xFF;
+                }
+                if ((second & 0x20) != 0) {
+                    // a signed displacement from the next instruction
+                    int shift = extended ? 12 : 20;
+                    address = (address << shift >> shift) + pc + length;
+                }
+                d = opcode | length << LENGTH_SHIFT | (first & 3) << 11 | indexed
+                        | ((second & 0x40) != 0 ? BASED : 0);
+                operands[pc] = address;
+                break;
+            default:
+                // not kept, it stops the program
+                return opcode;
+        }
+        decoded[pc] = d;
+        return d;
+    }
+
+    /**
+     * @return the address a store or an indirect load goes to.
+     */
+    private int target(int d, int ta) {
+        return (d & MODE) == INDIRECT ? word(ta) & MASK : ta;
+    }
+
+    /**
+     * @return the word an instruction operates on.
+     */
+    private int operand(int d, int ta) {
+        switch (d & MODE) {
+            case IMMEDIATE:
+                return ta;
+            case INDIRECT:
+                return word(word(ta) & MASK);
+            default:
+                return word(ta);
+        }
+    }
+
+    private double floatOperand(int d, int ta) {
+        return toDouble((d & MODE) == IMMEDIATE ? ta : read48(target(d, ta)));
+    }
+
+    private int word(int address) {
+        return (memory[address] & 0xFF) << 16 | (memory[address + 1 & MASK] & 0xFF) << 8
+                | memory[address + 2 & MASK] & 0xFF;
+    }
+
+    private void writeWord(int address, int value) {
+        memory[address] = (byte) (value >> 16);
+        memory[address + 1 & MASK] = (byte) (value >> 8);
+        memory[address + 2 & MASK] = (byte) value;
+        invalidate(address, 3);
+    }
+
+    private long read48(int address) {
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            value = value << 8 | memory[address + i & MASK] & 0xFF;
+        }
+        return value;
+    }
+
+    private void write48(int address, long value) {
+        for (int i = 0; i < 6; i++) {
+            memory[address + i & MASK] = (byte) (value >> 8 * (5 - i));
+        }
+        invalidate(address, 6);
+    }
+
+    /**
+     * Drops the decoded instructions that overlap the bytes written, the longest starts 3 bytes before them.
+     */
+    private void invalidate(int address, int length) {
+        for (int i = address - 3; i < address + length; i++) {
+            decoded[i & MASK] = 0;
+        }
+    }
+
+    private static int signed(int word) {
+        return word << 8 >> 8;
+    }
+
+    private static int compare(int a, int b) {
+        return a < b ? LESS : a > b ? GREATER : EQUAL;
+    }
+
+    /**
+     * @param bits a SIC/XE float: sign, 11 bit exponent biased by 1024 and a 36 bit fraction below the binary point.
+     */
+    static double toDouble(long bits) {
+        long fraction = bits & 0xFFFFFFFFFL;
+        int exponent = (int) (bits >> 36 & 0x7FF);
+        double value = Math.scalb((double) fraction, exponent - 1024 - 36);
+        return (bits & 1L << 47) != 0 ? -value : value;
+    }
+
+    /**
+     * @return the double as a normalized SIC/XE float, see {@link #toDouble}.
+     */
+    static long fromDouble(double value) {
+        if (value == 0 || Double.isNaN(value)) {
+            return 0;
+        }
+        double magnitude = Math.abs(value);
+        // magnitude is 0.1xxx in binary times 2^exponent
+        int exponent = Math.getExponent(magnitude) + 1;
+        long fraction = Math.round(Math.scalb(magnitude, 36 - exponent));
+        if (fraction == 1L << 36) {
+            fraction >>= 1;
+            exponent++;
+        }
+        long biased = Math.max(0, Math.min(0x7FF, exponent + 1024));
+        return (value < 0 ? 1L << 47 : 0) | biased << 36 | fraction;
+    }
+
+    /**
+     * @return the register, by its number in the REGTABLE; F as a SIC/XE float.
+     */
+    long getRegister(int register) {
+        return register == F ? fromDouble(f) : registers[register];
+    }
+
+    byte[] getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return the instructions executed by all runs.
+     */
+    long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return why the last run stopped.
+     */
+    String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the registers, as a line for the standard error.
+     */
+    String registers() {
+        return String.format("A=%06X X=%06X L=%06X B=%06X S=%06X T=%06X F=%012X PC=%06X SW=%06X", registers[A],
+                registers[X], registers[L], registers[B], registers[S], registers[T], fromDouble(f), registers[PC],
+                registers[SW]);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int progAddr = -1;
+        long maxInstructions = Long.MAX_VALUE;
+        boolean stats = false;
+        List<File> objectFiles = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                String[] option = arg.split("=", 2);
+                switch (option[0]) {
+                    case "--progaddr":
+                        progAddr = Integer.parseInt(option[1], 16);
+                        break;
+                    case "--max-instructions":
+                        maxInstructions = Long.parseLong(option[1]);
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("unknown option " + arg);
+                        }
+                        objectFiles.add(new File(arg));
+                }
+            }
+            if (objectFiles.isEmpty() || progAddr < -1 || maxInstructions < 1) {
+                throw new IllegalArgumentException("at least one object file is needed");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Simulator [--progaddr=HEX] [--max-instructions=N] [--stats] objectFile...");
+            System.exit(2);
+            return;
+        }
+
+        LinkingLoader loader = new LinkingLoader(progAddr, 1);
+        try {
+            loader.load(objectFiles);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (!loader.getErrors().isEmpty()) {
+            for (String error : loader.getErrors()) {
+                System.err.println(error);
+            }
+            System.exit(1);
+            return;
+        }
+
+        Simulator simulator = new Simulator(new BufferedInputStream(System.in),
+                new BufferedOutputStream(System.out));
+        simulator.load(loader.getImage(), Math.max(loader.getEntry(), 0));
+        long start = System.nanoTime();
+        long executed = simulator.run(maxInstructions);
+        long nanos = System.nanoTime() - start;
+
+        System.err.println(simulator.getStatus());
+        System.err.println(simulator.registers());
+        if (stats) {
+            System.err.print(String.format("%-14s%10.1f ms\n", "total", nanos / 1e6));
+            System.err.print(String.format("%-14s%10d (%.1f MIPS)\n", "instructions", executed,
+                    nanos == 0 ? 0 : executed * 1e3 / nanos));
+        }
+    }
+}
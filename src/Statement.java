@@ -1,8 +1,10 @@
+import java.util.ArrayList;
+import java.util.List;
 
 @SuppressWarnings("unused")
 class Statement {
 
-    private static final String COMMENT_INDICATOR = ".";
+    private static final char COMMENT_INDICATOR = '.';
 
     public static final int A = 0;
     public static final int X = 1;
@@ -15,108 +17,127 @@ class Statement {
     public static final int PC = 8;
     public static final int SW = 9;
 
-    private Error error;
+    // codes of the diagnostics, as a bit set
+    private long errors;
     private String label;
     private Mnemonic mnemonic;
     private int address;
     private Operand firstOperand;
     private Operand secondOperand;
 
-    private String instruction;
+    private byte[] instruction;
 
     private boolean type4 = false;
 
     private boolean indexed = false;
 
-    private String line;
+    private int size;
 
-    Statement(String line) {
+    private CharSequence line;
+
+    private ControlSection section;
+
+    private boolean literal = false;
+
+    private Statement base;
+
+    /**
+     * Entry of a literal pool, listed as {@code * =C'EOF'}, with the literal as its operand. Its label is the symbol
+     * that has its address, which the source can not spell, so it never clashes with a label.
+     */
+    static Statement literal(String literal, String symbol, int size) {
+        Statement statement = new Statement("*\t\t" + literal, symbol, size);
+        statement.firstOperand = new Operand(literal);
+        statement.literal = true;
+        return statement;
+    }
+
+    private Statement(CharSequence line, String label, int size) {
+        this.line = line;
+        this.label = label;
+        this.mnemonic = Tables.lookupMnemonic("BYTE");
+        this.size = size;
+    }
+
+    Statement(CharSequence line) {
         this.line = line;
 
         // Split the line using whitespaces and tabs as deliminators.
         // Also attempt to extract the second operand with a comma (,).
-        String[] tokens;
         if (!isComment()) {
-            tokens = line.split("\\s+|,");
+            Lexer tokens = new Lexer(line);
 
-            if (tokens[0].startsWith("+")) {
+            if (tokens.startsWith(0, '+')) {
                 type4 = true;
-                tokens[0] = tokens[0].substring(1);
+                tokens.skipFirst(0);
             }
-            if (tokens.length > 1) {
-                if (tokens[1].startsWith("+")) {
-                    type4 = true;
-                    tokens[1] = tokens[1].substring(1);
-
-                }
+            if (tokens.startsWith(1, '+')) {
+                type4 = true;
+                tokens.skipFirst(1);
             }
 
             boolean foundOp = false;
-            for (int i = 0; i < Tables.getOperationTable().size(); i++) {
-                if (tokens[0].equalsIgnoreCase(Tables.getOperationTable().get(i).getString())) {
-                    mnemonic = Tables.getOperationTable().get(i);
+            Mnemonic op = tokens.lookupMnemonic(0);
+            if (op != null) {
+                mnemonic = op;
 
-                    foundOp = true;
-                    if (tokens.length > 1) {
-                        firstOperand = new Operand(tokens[1]);
-                    }
-                    if (tokens.length > 2) {
-                        secondOperand = new Operand(tokens[2]);
-                    }
-                    break;
+                foundOp = true;
+                if (tokens.count() > 1) {
+                    firstOperand = new Operand(tokens.get(1));
+                }
+                if (tokens.count() > 2) {
+                    secondOperand = new Operand(tokens.get(2));
                 }
             }
 
             if (!foundOp) {
-                label = tokens[0];
+                label = tokens.get(0);
             }
             boolean badLabel = false;
 
-            for (int i = 0; i < Tables.getOperationTable().size(); i++) {
-                if (tokens[1].equalsIgnoreCase(Tables.getOperationTable().get(i).getString())) {
-                    mnemonic = Tables.getOperationTable().get(i);
-                    if (foundOp) {
-                        badLabel = true;
-                    }
-                    foundOp = true;
-                    if (tokens.length > 2) {
-                        firstOperand = new Operand(tokens[2]);
-                    }
-                    if (tokens.length > 3) {
-                        secondOperand = new Operand(tokens[3]);
-                    }
-                    break;
+            op = tokens.lookupMnemonic(1);
+            if (op != null) {
+                mnemonic = op;
+                if (foundOp) {
+                    badLabel = true;
+                }
+                foundOp = true;
+                if (tokens.count() > 2) {
+                    firstOperand = new Operand(tokens.get(2));
+                }
+                if (tokens.count() > 3) {
+                    secondOperand = new Operand(tokens.get(3));
                 }
             }
 
             if (!foundOp) {
-                error = Tables.getErrorsTable().get(4);
+                addError(Error.UNRECOGNIZED_OPERATION);
                 return;
             }
 
             if (badLabel) {
-                error = Tables.getErrorsTable().get(14);
+                addError(Error.ILLEGAL_LABEL);
             }
 
             if (type4 && mnemonic.getSize() != 3) {
-                error = Tables.getErrorsTable().get(7);
+                addError(Error.NOT_FORMAT4);
             }
 
             if (mnemonic.isRegisterType()) {
                 if (hasFirstOperand()) {
                     if (!isRegister(firstOperand.getLine())) {
-                        error = Tables.getErrorsTable().get(8);
+                        addError(Error.ILLEGAL_REGISTER);
                     }
                 }
 
                 if (hasSecondOperand()) {
                     if (!isRegister(secondOperand.getLine())) {
-                        error = Tables.getErrorsTable().get(8);
+                        addError(Error.ILLEGAL_REGISTER);
                     }
                 }
 
                 if (mnemonic.isTwoOperands() && !hasSecondOperand()) {
-                    error = Tables.getErrorsTable().get(16);
+                    addError(Error.MISSING_SOURCE_REGISTER);
                 }
             }
 
@@ -130,13 +151,12 @@ class Statement {
 
             if (hasFirstOperand()) {
                 if (indexed && (mnemonic.isDirective() || firstOperand.isImmediate() || firstOperand.isIndirect())) {
-                    error = Tables.getErrorsTable().get(15);
+                    addError(Error.NOT_INDEXED);
                 }
             }
 
-            if (type4) {
-                mnemonic.setSize(4);
-            }
+            // Mnemonics are shared by every statement, so the format 4 size is kept on the statement.
+            size = type4 ? 4 : mnemonic.getSize();
 
         }
 
@@ -145,7 +165,7 @@ class Statement {
     }
 
     boolean hasLabel() {
-        return !label.equals("");
+        return label != null && !label.equals("");
     }
 
     boolean hasFirstOperand() {
@@ -157,15 +177,38 @@ class Statement {
     }
 
     boolean isComment() {
-        return line.startsWith(COMMENT_INDICATOR);
+        return line.length() > 0 && line.charAt(0) == COMMENT_INDICATOR;
+    }
+
+    boolean hasErrors() {
+        return errors != 0;
+    }
+
+    boolean hasError(int code) {
+        return (errors & 1L << code) != 0;
     }
 
-    Error getError() {
-        return error;
+    /**
+     * Adds a diagnostic, the ones found before are kept.
+     *
+     * @param code one of the codes of {@link Error}.
+     */
+    void addError(int code) {
+        errors |= 1L << code;
     }
 
-    void setError(Error error) {
-        this.error = error;
+    /**
+     * @return the codes of the diagnostics, bit {@code code} is set for each.
+     */
+    long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Replaces the diagnostics, with codes returned by {@link #getErrors()}.
+     */
+    void setErrors(long errors) {
+        this.errors = errors;
     }
 
     String getLabel() {
@@ -193,22 +236,80 @@ class Statement {
     }
 
     String getLine() {
-        return line;
+        return line.toString();
+    }
+
+    /**
+     * @return every operand of the statement, for the directives that take a list of symbols (EXTDEF, EXTREF).
+     */
+    List<String> getOperandList() {
+        Lexer tokens = new Lexer(line);
+        // the operands follow the mnemonic, which follows the label if there is one
+        int first = label == null ? 1 : 2;
+        List<String> operands = new ArrayList<>();
+        for (int i = first; i < tokens.count(); i++) {
+            operands.add(tokens.get(i));
+        }
+        return operands;
+    }
+
+    /**
+     * @return the control section pass 1 put the statement in.
+     */
+    ControlSection getSection() {
+        return section;
+    }
+
+    void setSection(ControlSection section) {
+        this.section = section;
     }
 
     boolean isType4() {
         return type4;
     }
 
+    /**
+     * Makes a format 3 instruction format 4, for the relaxation.
+     */
+    void setType4() {
+        type4 = true;
+        size = 4;
+    }
+
+    int getSize() {
+        return size;
+    }
+
     boolean isIndexed() {
         return indexed;
     }
 
-    String getInstruction() {
+    /**
+     * @return the BASE statement in effect for the instruction, null if there is none.
+     */
+    Statement getBase() {
+        return base;
+    }
+
+    void setBase(Statement base) {
+        this.base = base;
+    }
+
+    /**
+     * @return true for an entry of a literal pool.
+     */
+    boolean isLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return the object code of the statement, or null if it has none (yet).
+     */
+    byte[] getInstruction() {
         return instruction;
     }
 
-    void setInstruction(String instruction) {
+    void setInstruction(byte[] instruction) {
         this.instruction = instruction;
     }
 
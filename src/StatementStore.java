@@ -0,0 +1,449 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The statements of a program as parallel primitive arrays, one entry per row, for programs of millions of lines.
+ * <p>
+ * Pass 1 hands every statement to the store, which keeps only what the checks, pass 2 and the listing need, and the
+ * statement is dropped: the address, the opcode, the n i x b p e flags and the kind of the row, the operand as a
+ * symbol id or a constant, the object code, the diagnostics, and where the line is in a single buffer of source text. The
+ * few operands that are neither a single symbol nor a constant keep their {@link Expression}, and the data of BYTE,
+ * WORD and the literal pools goes into a byte pool. {@link #validate} and {@link #encode} then run over the arrays,
+ * with the same checks and the same object code as {@link Assembler#validate} and {@link Assembler#encode}.
+ * <p>
+ * A row takes 23 bytes besides its text, where a {@link Statement} with its operands takes several hundred. Like
+ * the streaming mode, the store has a single section: control sections are errors.
+ */
+class StatementStore implements Assembler.StatementSink {
+
+    // n i x b p e as they are encoded: n and i in the low bits of the opcode, x b p e in the high half of the next byte
+    private static final int N = 0x20;
+    private static final int I = 0x10;
+    private static final int X = 0x08;
+    private static final int B = 0x04;
+    private static final int P = 0x02;
+    private static final int E = 0x01;
+
+    // the operand refers to symbols, it is an address
+    private static final int ADDRESS = 0x40;
+    // an undefined operand is reported as not hexadecimal
+    private static final int NOT_HEX = 0x80;
+
+    // kinds of rows
+    private static final int KIND = 0x700;
+    private static final int COMMENT = 0x000;
+    private static final int UNRECOGNIZED = 0x100;
+    private static final int DIRECTIVE = 0x200;
+    private static final int DATA = 0x300;
+    private static final int BASE = 0x400;
+    private static final int FORMAT1 = 0x500;
+    private static final int FORMAT2 = 0x600;
+    private static final int FORMAT3 = 0x700;
+
+    // kinds of operands, the operand array holds the constant, the symbol id or the index of the expression
+    private static final int OPERAND = 0x3800;
+    private static final int NONE = 0x0000;
+    private static final int CONSTANT = 0x0800;
+    private static final int SYMBOL = 0x1000;
+    private static final int EXPRESSION = 0x1800;
+    private static final int MALFORMED = 0x2000;
+    private static final int UNPLACED_LITERAL = 0x2800;
+
+    // the operand was evaluated, the operand array holds its value
+    private static final int RESOLVED = 0x4000;
+
+    private static final int MIN_ROWS = 1024;
+
+    private final SymbolTable symtable;
+
+    // row i is text[start[i], start[i + 1])
+    private final StringBuilder text;
+    private int[] start;
+    private int[] address;
+    private byte[] opcode;
+    private short[] flags;
+    // for data, the length of the data once known
+    private int[] operand;
+    // the object code of an instruction, big endian, or the offset of the data in the pool, -1 for none
+    private int[] code;
+    // the codes of the diagnostics, as a bit set
+    private long[] errors;
+    private int rows;
+
+    private final List<Expression> expressions = new ArrayList<>();
+    private byte[] data = new byte[MIN_ROWS];
+    private int dataSize;
+
+    // from instruction row baseFrom[k] on the BASE in effect is the one at row baseRow[k], -1 for none
+    private int[] baseFrom = new int[16];
+    private int[] baseRow = new int[16];
+    private int baseRuns;
+    private Statement base;
+    private final IdentityHashMap<Statement, Integer> baseRows = new IdentityHashMap<>();
+
+    /**
+     * @param symtable      the symbol table of the program, the operands are interned in it.
+     * @param expectedRows  the number of rows to make room for, the store still grows past it.
+     * @param expectedChars the length of the source text.
+     */
+    StatementStore(SymbolTable symtable, int expectedRows, int expectedChars) {
+        this.symtable = symtable;
+        int capacity = Math.max(expectedRows, MIN_ROWS);
+        text = new StringBuilder(expectedChars);
+        start = new int[capacity + 1];
+        address = new int[capacity];
+        opcode = new byte[capacity];
+        flags = new short[capacity];
+        operand = new int[capacity];
+        code = new int[capacity];
+        errors = new long[capacity];
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /**
+     * Adds the statement as the next row, called by pass 1 once its address is known.
+     */
+    @Override
+    public void accept(Statement statement) {
+        if (rows == address.length) {
+            grow();
+        }
+        int row = rows++;
+        text.append(statement.getLine());
+        start[row + 1] = text.length();
+        address[row] = statement.getAddress();
+        code[row] = -1;
+
+        int f;
+        Mnemonic mnemonic = statement.getMnemonic();
+        if (statement.isComment()) {
+            f = COMMENT;
+        } else if (mnemonic == null) {
+            f = UNRECOGNIZED;
+        } else if (mnemonic.getString().equals("BASE")) {
+            f = BASE | operand(statement, row);
+            baseRows.put(statement, row);
+        } else if (mnemonic.isDirective() && statement.getInstruction() != null) {
+            f = DATA;
+            code[row] = addData(statement.getInstruction());
+            operand[row] = statement.getInstruction().length;
+        } else if (mnemonic.getString().equals("WORD")) {
+            // an expression, evaluated by validate
+            f = DATA | operand(statement, row);
+        } else if (mnemonic.isDirective()) {
+            f = DIRECTIVE;
+        } else {
+            opcode[row] = (byte) mnemonic.getOpcodeByte();
+            if (!statement.hasFirstOperand()) {
+                // the check of validate, which needs no symbols
+                statement.addError(Error.MISSING_OPERAND);
+            }
+            if (mnemonic.isRegisterType()) {
+                f = FORMAT2;
+                if (!statement.hasErrors()) {
+                    operand[row] = Assembler.register(statement.getFirstOperand()) << 4
+                            | (mnemonic.isTwoOperands() ? Assembler.register(statement.getSecondOperand()) : 0);
+                }
+            } else {
+                f = (statement.getSize() == 1 ? FORMAT1 : FORMAT3)
+                        | (statement.isType4() ? E : 0) | (statement.isIndexed() ? X : 0);
+                if (statement.hasFirstOperand()) {
+                    Operand first = statement.getFirstOperand();
+                    f |= (first.isImmediate() ? 0 : N) | (first.isIndirect() ? 0 : I)
+                            | (first.isIndirect() && !Assembler.isHex(first.getFilteredLine()) ? NOT_HEX : 0);
+                    f |= first.isLiteral() && first.getLiteral() == null && first.getExpression().isValid()
+                            ? UNPLACED_LITERAL : operand(statement, row);
+                }
+                if (statement.getBase() != base) {
+                    base = statement.getBase();
+                    addBaseRun(row, base == null ? -1 : baseRows.get(base));
+                }
+            }
+        }
+        flags[row] = (short) f;
+        errors[row] = statement.getErrors();
+    }
+
+    /**
+     * Keeps the operand of the statement in the row.
+     *
+     * @return its kind, and whether it is an address.
+     */
+    private int operand(Statement statement, int row) {
+        if (!statement.hasFirstOperand()) {
+            return NONE;
+        }
+        Expression expression = statement.getFirstOperand().getExpression();
+        if (!expression.isValid()) {
+            return MALFORMED;
+        }
+        if (!expression.hasSymbols()) {
+            expression.evaluate(symtable);
+            operand[row] = expression.getValue();
+            return CONSTANT;
+        }
+        if (expression.isSymbol()) {
+            operand[row] = symtable.intern(expression.getSymbols().get(0));
+            return SYMBOL | ADDRESS;
+        }
+        operand[row] = expressions.size();
+        expressions.add(expression);
+        return EXPRESSION | ADDRESS;
+    }
+
+    private int addData(byte[] bytes) {
+        if (dataSize + bytes.length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, data, dataSize, bytes.length);
+        dataSize += bytes.length;
+        return dataSize - bytes.length;
+    }
+
+    private void addBaseRun(int row, int base) {
+        if (baseRuns == baseFrom.length) {
+            baseFrom = Arrays.copyOf(baseFrom, baseRuns * 2);
+            baseRow = Arrays.copyOf(baseRow, baseRuns * 2);
+        }
+        baseFrom[baseRuns] = row;
+        baseRow[baseRuns++] = base;
+    }
+
+    private void grow() {
+        int capacity = address.length + (address.length >> 1);
+        start = Arrays.copyOf(start, capacity + 1);
+        address = Arrays.copyOf(address, capacity);
+        opcode = Arrays.copyOf(opcode, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        operand = Arrays.copyOf(operand, capacity);
+        code = Arrays.copyOf(code, capacity);
+        errors = Arrays.copyOf(errors, capacity);
+    }
+
+    /**
+     * Checks the operands against the complete symbol table, and keeps their values for pass 2.
+     *
+     * @return the number of rows these checks found the first error in.
+     */
+    long validate() {
+        long errorRows = 0;
+        int run = -1;
+        for (int row = 0; row < rows; row++) {
+            int f = flags[row];
+            boolean counted = errors[row] != 0;
+            switch (f & KIND) {
+                case DATA:
+                    if (errors[row] == 0 && (f & OPERAND) != NONE) {
+                        // WORD with an expression
+                        if (resolve(row, f)) {
+                            int word = operand[row];
+                            code[row] = addData(new byte[]{(byte) (word >> 16), (byte) (word >> 8), (byte) word});
+                            operand[row] = 3;
+                        } else {
+                            setError(row, (f & OPERAND) != MALFORMED && !dividesByZero(row, f)
+                                    ? Error.UNDEFINED_SYMBOL : Error.CANNOT_EVALUATE);
+                        }
+                    }
+                    break;
+                case BASE:
+                    if (errors[row] == 0 && !resolve(row, f)) {
+                        setError(row, (f & OPERAND) != MALFORMED && !dividesByZero(row, f)
+                                ? Error.UNDEFINED_SYMBOL : Error.CANNOT_EVALUATE);
+                    }
+                    break;
+                case FORMAT1:
+                case FORMAT3:
+                    while (run + 1 < baseRuns && baseFrom[run + 1] <= row) {
+                        run++;
+                    }
+                    validateOperand(row, f, run == -1 ? -1 : baseRow[run]);
+                    break;
+                default:
+            }
+            if (!counted && errors[row] != 0) {
+                errorRows++;
+            }
+        }
+        return errorRows;
+    }
+
+    /**
+     * The checks {@link Assembler#validate} makes on the operand of a memory reference instruction.
+     */
+    private void validateOperand(int row, int f, int base) {
+        int kind = f & OPERAND;
+        if (kind == NONE) {
+            return;
+        }
+        if (kind == MALFORMED) {
+            setError(row, Error.CANNOT_EVALUATE);
+        } else if (kind == UNPLACED_LITERAL) {
+            setError(row, Error.LITERALS_UNSUPPORTED);
+        } else if (!resolve(row, f)) {
+            // an undefined symbol, or a division by zero
+            if (!dividesByZero(row, f)) {
+                setError(row, (f & NOT_HEX) != 0 ? Error.NOT_HEX : Error.UNDEFINED_SYMBOL);
+            } else {
+                setError(row, Error.CANNOT_EVALUATE);
+            }
+        } else if ((f & (N | I)) == I && (f & ADDRESS) == 0) {
+            if (operand[row] < 0 || operand[row] > ((f & E) != 0 ? 0xFFFFF : 4095)) {
+                setError(row, Error.OUT_OF_RANGE);
+            }
+        } else if ((f & (N | I)) == (N | I) && (f & ADDRESS) == 0) {
+            setError(row, Error.UNDEFINED_SYMBOL);
+        } else if ((f & E) == 0 && (f & ADDRESS) != 0 && relativeAddressing(row, operand[row], base) == 0) {
+            setError(row, Error.OUT_OF_RANGE);
+        }
+    }
+
+    /**
+     * Evaluates the operand of the row, its value then replaces it in the operand array.
+     *
+     * @return false if it refers to an undefined symbol, divides by zero or is malformed.
+     */
+    private boolean resolve(int row, int f) {
+        if ((f & RESOLVED) != 0 || (f & OPERAND) == CONSTANT) {
+            return true;
+        }
+        int value;
+        switch (f & OPERAND) {
+            case SYMBOL:
+                if (!symtable.isDefined(operand[row])) {
+                    return false;
+                }
+                value = symtable.valueOf(operand[row]);
+                break;
+            case EXPRESSION:
+                Expression expression = expressions.get(operand[row]);
+                if (!expression.evaluate(symtable)) {
+                    return false;
+                }
+                value = expression.getValue();
+                break;
+            default:
+                return false;
+        }
+        operand[row] = value;
+        flags[row] = (short) (f | RESOLVED);
+        return true;
+    }
+
+    /**
+     * @return true if the operand, which could not be evaluated, only has defined symbols: it divides by zero.
+     */
+    private boolean dividesByZero(int row, int f) {
+        return (f & OPERAND) == EXPRESSION && expressions.get(operand[row]).isDefined(symtable);
+    }
+
+    private void setError(int row, int code) {
+        errors[row] |= 1L << code;
+    }
+
+    /**
+     * @return {@link Assembler#PC_RELATIVE}, {@link Assembler#BASE_RELATIVE}, or 0 if the target is in reach of
+     * neither, see {@link Assembler#relativeAddressing}.
+     */
+    private int relativeAddressing(int row, int target, int base) {
+        int pc = target - (address[row] + size(row));
+        if (pc >= -2048 && pc <= 2047) {
+            return Assembler.PC_RELATIVE;
+        }
+        if (base != -1 && errors[base] == 0 && resolve(base, flags[base])) {
+            int displacement = target - operand[base];
+            if (displacement >= 0 && displacement <= 4095) {
+                return Assembler.BASE_RELATIVE;
+            }
+        }
+        return 0;
+    }
+
+    private int size(int row) {
+        switch (flags[row] & KIND) {
+            case FORMAT1:
+                return 1;
+            case FORMAT2:
+                return 2;
+            default:
+                return (flags[row] & E) != 0 ? 4 : 3;
+        }
+    }
+
+    /**
+     * Pass 2: encodes every instruction and adds the object code of the program to the records. Only runs on
+     * validated rows without errors.
+     */
+    void encode(TextRecordWriter records) throws IOException {
+        byte[] instruction = new byte[4];
+        int run = -1;
+        for (int row = 0; row < rows; row++) {
+            int f = flags[row];
+            switch (f & KIND) {
+                case DATA:
+                    if (code[row] != -1) {
+                        records.add(address[row], true, data, code[row], operand[row]);
+                    }
+                    continue;
+                case FORMAT2:
+                    code[row] = (opcode[row] & 0xFF) << 8 | operand[row];
+                    break;
+                case FORMAT1:
+                case FORMAT3:
+                    while (run + 1 < baseRuns && baseFrom[run + 1] <= row) {
+                        run++;
+                    }
+                    int displacement = (f & RESOLVED) != 0 || (f & OPERAND) == CONSTANT ? operand[row] : 0;
+                    // b and p, PC-relative if the target is in reach, else relative to the base
+                    int relative = (f & ADDRESS) != 0 && (f & E) == 0
+                            ? relativeAddressing(row, displacement, run == -1 ? -1 : baseRow[run]) : 0;
+                    if (relative == Assembler.PC_RELATIVE) {
+                        displacement -= address[row] + size(row);
+                    } else if (relative == Assembler.BASE_RELATIVE) {
+                        displacement -= operand[baseRow[run]];
+                    }
+                    f |= relative;
+                    flags[row] = (short) f;
+
+                    int first = (opcode[row] & 0xFF) | f >> 4 & (N | I) >> 4;
+                    if ((f & KIND) == FORMAT1) {
+                        code[row] = first;
+                    } else if ((f & E) != 0) {
+                        // 20 bit address
+                        code[row] = first << 24 | (f & 0xF) << 20 | displacement & 0xFFFFF;
+                    } else {
+                        // 12 bit displacement, negative values in two's complement
+                        code[row] = first << 16 | (f & 0xF) << 12 | displacement & 0xFFF;
+                    }
+                    break;
+                default:
+                    continue;
+            }
+            int size = size(row);
+            for (int i = 0; i < size; i++) {
+                instruction[i] = (byte) (code[row] >> 8 * (size - 1 - i));
+            }
+            records.add(address[row], false, instruction, 0, size);
+        }
+    }
+
+    /**
+     * Writes the listing of the rows, as {@link Assembler#writeListing} does for statements.
+     */
+    void writeListing(Writer list) throws IOException {
+        for (int row = 0; row < rows; row++) {
+            Assembler.writeErrors(list, errors[row]);
+            if ((flags[row] & KIND) != COMMENT) {
+                list.write(String.format("%06X\t", address[row]));
+            }
+            list.append(text, start[row], start[row + 1]);
+            list.write('\n');
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Symbol table from names to addresses, without boxing.
+ * <p>
+ * Every name the program uses, defined or not, is interned once into a dense id, and the values are an array indexed
+ * by id. Pass 1 binds the operands to the ids of their symbols ({@link Expression#bind}), so the checks of pass 1 and
+ * the encoding of pass 2 read the array instead of hashing names. The names are found through an open addressing
+ * hash index (linear probing), whose slots keep the hash of their name next to it, so probing past other names reads
+ * no strings. Every int is a legal value, so whether a symbol is defined is kept apart from its value: a value is
+ * only read after {@link #contains} or {@link #isDefined} said it is there.
+ */
+class SymbolTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // by id: the name, whether it is defined, the value, and when it was defined, which is the order the symbols are
+    // listed in
+    private String[] names;
+    private boolean[] defined;
+    private int[] values;
+    private int[] definedAt;
+    private int count;
+    private int size;
+    private int definitions;
+
+    // pairs of 1 + id (0 for an empty slot) and hash; there are twice as many slots as names, so a probe sequence
+    // always ends
+    private int[] index;
+
+    SymbolTable() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expected the number of symbols to make room for, the table still grows past it.
+     */
+    SymbolTable(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expected) {
+            capacity <<= 1;
+        }
+        names = new String[capacity / 2];
+        defined = new boolean[capacity / 2];
+        values = new int[capacity / 2];
+        definedAt = new int[capacity / 2];
+        index = new int[2 * capacity];
+    }
+
+    /**
+     * @return the id of the name, which it keeps for the life of the table, whether it is defined or not.
+     */
+    int intern(String symbol) {
+        int hash = hash(symbol);
+        int slot = find(symbol, hash);
+        if (index[slot] != 0) {
+            return index[slot] - 1;
+        }
+        if (count == names.length) {
+            grow();
+            slot = find(symbol, hash);
+        }
+        names[count] = symbol;
+        index[slot] = ++count;
+        index[slot + 1] = hash;
+        return count - 1;
+    }
+
+    /**
+     * @return the id of the name, or -1 if it was never interned.
+     */
+    int idOf(String symbol) {
+        int slot = find(symbol, hash(symbol));
+        return index[slot] - 1;
+    }
+
+    /**
+     * @return the value of the symbol, which must be defined.
+     */
+    int get(String symbol) {
+        return values[idOf(symbol)];
+    }
+
+    /**
+     * @return the value of the symbol with the id, which must be defined.
+     */
+    int valueOf(int id) {
+        return values[id];
+    }
+
+    boolean contains(String symbol) {
+        return isDefined(idOf(symbol));
+    }
+
+    /**
+     * @param id an id, or -1 for a name that was never interned.
+     */
+    boolean isDefined(int id) {
+        return id >= 0 && defined[id];
+    }
+
+    /**
+     * Defines the symbol, or changes its value if it is already defined.
+     */
+    void put(String symbol, int value) {
+        int id = intern(symbol);
+        if (!defined[id]) {
+            defined[id] = true;
+            definedAt[id] = definitions++;
+            size++;
+        }
+        values[id] = value;
+    }
+
+    /**
+     * Makes the symbol undefined, it keeps its id.
+     */
+    void remove(String symbol) {
+        remove(idOf(symbol));
+    }
+
+    /**
+     * Makes the symbol with the id undefined, or an id of -1 for a name that was never interned.
+     */
+    void remove(int id) {
+        if (isDefined(id)) {
+            defined[id] = false;
+            size--;
+        }
+    }
+
+    /**
+     * Defines the symbol with the id again after {@link #remove}, or changes its value, keeping when it was first
+     * defined: for taking back definitions and making them again without counting new ones.
+     */
+    void restore(int id, int value) {
+        if (!defined[id]) {
+            defined[id] = true;
+            size++;
+        }
+        values[id] = value;
+    }
+
+    /**
+     * @return the number of defined symbols.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the defined symbols, in the order they were defined.
+     */
+    List<String> symbols() {
+        // when each was defined and its id, sorted by the former
+        long[] order = new long[size];
+        int n = 0;
+        for (int id = 0; id < count; id++) {
+            if (defined[id]) {
+                order[n++] = (long) definedAt[id] << 32 | id;
+            }
+        }
+        Arrays.sort(order);
+
+        List<String> symbols = new ArrayList<>(size);
+        for (long definition : order) {
+            symbols.add(names[(int) definition]);
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the slot of the name, or the empty one that ends its probe sequence.
+     */
+    private int find(String symbol, int hash) {
+        int mask = index.length - 1;
+        int slot = hash << 1 & mask;
+        while (true) {
+            int entry = index[slot];
+            if (entry == 0 || index[slot + 1] == hash && symbol.equals(names[entry - 1])) {
+                return slot;
+            }
+            slot = slot + 2 & mask;
+        }
+    }
+
+    private static int hash(String symbol) {
+        // String caches its hash, spread its high bits over the low ones the mask keeps
+        int h = symbol.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Doubles the room, the ids stay the same.
+     */
+    private void grow() {
+        int capacity = names.length * 4;
+        names = Arrays.copyOf(names, capacity / 2);
+        defined = Arrays.copyOf(defined, capacity / 2);
+        values = Arrays.copyOf(values, capacity / 2);
+        definedAt = Arrays.copyOf(definedAt, capacity / 2);
+        index = new int[2 * capacity];
+        for (int id = 0; id < count; id++) {
+            int hash = hash(names[id]);
+            int slot = find(names[id], hash);
+            index[slot] = id + 1;
+            index[slot + 1] = hash;
+        }
+    }
+}
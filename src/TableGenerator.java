@@ -0,0 +1,104 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Build step that compiles the text tables into {@link InstructionSet}, so the assembler starts without reading files.
+ * <p>
+ * Usage: {@code TableGenerator <tables directory> <InstructionSet.java> [--check]}. With {@code --check} the source
+ * is not written, and the generator fails if it is out of date with the tables.
+ */
+class TableGenerator {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("usage: TableGenerator <tables directory> <InstructionSet.java> [--check]");
+        }
+        File tables = new File(args[0]);
+        File output = new File(args[1]);
+        boolean check = args.length > 2 && args[2].equals("--check");
+
+        byte[] source = generate(tables).getBytes(StandardCharsets.UTF_8);
+        if (check) {
+            if (!output.exists() || !Arrays.equals(source, Files.readAllBytes(output.toPath()))) {
+                // not System.exit, the build runs this in its own JVM
+                throw new IllegalStateException(output + " is out of date with " + tables
+                        + ", regenerate it with mvn -Pgenerate-tables process-classes");
+            }
+            return;
+        }
+        Files.write(output.toPath(), source);
+    }
+
+    static String generate(File tables) throws IOException {
+        List<Mnemonic> directives = TableReader.readDirectives(tables);
+        List<Mnemonic> operations = TableReader.readOperations(tables);
+        List<Error> errors = TableReader.readErrors(tables);
+
+        StringBuilder java = new StringBuilder();
+        java.append("// Generated by TableGenerator from tables/, do not edit.\n\n");
+        java.append("/**\n");
+        java.append(" * The built-in directives, operation codes and error messages.\n");
+        java.append(" */\n");
+        java.append("final class InstructionSet {\n\n");
+
+        java.append("    static final String[] DIRECTIVES = {\n");
+        for (Mnemonic directive : directives) {
+            java.append("            ").append(literal(directive.getString())).append(",\n");
+        }
+        java.append("    };\n\n");
+
+        java.append("    // name, format (2 or 3, format 4 being 3 with the + prefix), opcode, register operands (0 for m)\n");
+        java.append("    static final String[] OPERATIONS = new String[").append(operations.size()).append("];\n");
+        java.append("    static final int[] FORMATS = new int[").append(operations.size()).append("];\n");
+        java.append("    static final int[] OPCODES = new int[").append(operations.size()).append("];\n");
+        java.append("    static final int[] REGISTER_OPERANDS = new int[").append(operations.size()).append("];\n\n");
+        java.append("    static {\n");
+        for (int i = 0; i < operations.size(); i++) {
+            Mnemonic operation = operations.get(i);
+            int registers = !operation.isRegisterType() ? 0 : operation.isTwoOperands() ? 2 : 1;
+            java.append(String.format("        operation(%d, %s, %d, 0x%02X, %d);\n",
+                    i, literal(operation.getString()), operation.getSize(), operation.getOpcodeByte(), registers));
+        }
+        java.append("    }\n\n");
+
+        java.append("    static final String[] ERRORS = {\n");
+        for (Error error : errors) {
+            java.append("            ").append(literal(error.getError())).append(",\n");
+        }
+        java.append("    };\n\n");
+
+        java.append("    private InstructionSet() {\n");
+        java.append("        // Prevents instantiation.\n");
+        java.append("    }\n\n");
+        java.append("    private static void operation(int i, String name, int format, int opcode, int registers) {\n");
+        java.append("        OPERATIONS[i] = name;\n");
+        java.append("        FORMATS[i] = format;\n");
+        java.append("        OPCODES[i] = opcode;\n");
+        java.append("        REGISTER_OPERANDS[i] = registers;\n");
+        java.append("    }\n");
+        java.append("}\n");
+        return java.toString();
+    }
+
+    /**
+     * @return the string as a Java literal, with anything but printable ASCII escaped.
+     */
+    private static String literal(String s) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
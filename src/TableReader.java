@@ -0,0 +1,76 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the text tables of a tables directory: {@code directives.txt}, {@code operationTable.txt} and {@code errors}.
+ * Used to generate {@link InstructionSet} at build time, and to load custom tables at run time.
+ */
+class TableReader {
+
+    static final String DIRECTIVES = "directives.txt";
+    static final String OPERATIONS = "operationTable.txt";
+    static final String ERRORS = "errors";
+
+    private TableReader() {
+        // Prevents instantiation.
+    }
+
+    static List<Mnemonic> readDirectives(File directory) throws IOException {
+        List<Mnemonic> directives = new ArrayList<>();
+        for (String line : readLines(new File(directory, DIRECTIVES))) {
+            directives.add(new Mnemonic(line));
+        }
+        return directives;
+    }
+
+    /**
+     * Reads the operation codes, one per line: name, operands ({@code m} for a memory operand, else the registers
+     * as in {@code r1,r2}), format ({@code 2} or {@code 3/4}) and the opcode in hex.
+     */
+    static List<Mnemonic> readOperations(File directory) throws IOException {
+        File file = new File(directory, OPERATIONS);
+        List<Mnemonic> operations = new ArrayList<>();
+        int number = 0;
+        for (String line : readLines(file)) {
+            number++;
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length < 4) {
+                throw new IOException(file + ":" + number + ": expected name, operands, format and opcode");
+            }
+            boolean registerType = !tokens[1].equals("m");
+            boolean twoOperands = registerType && tokens[1].split(",").length > 1;
+            int size = tokens[2].equals("2") ? 2 : 3;
+            int opcode;
+            try {
+                opcode = Integer.parseInt(tokens[3], 16);
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + number + ": opcode is not hexadecimal: " + tokens[3]);
+            }
+            operations.add(new Mnemonic(tokens[0], registerType, size, opcode, twoOperands));
+        }
+        return operations;
+    }
+
+    static List<Error> readErrors(File directory) throws IOException {
+        List<Error> errors = new ArrayList<>();
+        for (String line : readLines(new File(directory, ERRORS))) {
+            errors.add(new Error(line));
+        }
+        return errors;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
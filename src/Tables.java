@@ -1,31 +1,64 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 
+/**
+ * Directives, operation codes, registers and error messages.
+ * <p>
+ * The tables come from {@link InstructionSet}, which the build generates from the text files under {@code tables/},
+ * so no file is read at startup. Custom tables can still be loaded at run time by pointing the {@code sicxe.tables}
+ * system property to a directory with the same three files.
+ */
 class Tables {
 
-    private static final String OPTABLE_PATH = "tables/operationTable.txt";
-    private static final String ERRORS_PATH = "tables/errors";
-    private static final String DIRECT_PATH = "tables/directives.txt";
+    static final String TABLES_PROPERTY = "sicxe.tables";
 
-    private static final HashMap<String, Integer> SYMTABLE;
     private static final HashMap<String, Integer> REGTABLE;
     private static final List<Mnemonic> OPTABLE;
+    private static final Mnemonic[] MNEMONIC_INDEX;
+    private static final int MNEMONIC_INDEX_SIZE = 256;
     private static final List<Error> ERRORS_TABLE;
 
     static {
-        SYMTABLE = new HashMap<>();
         REGTABLE = new HashMap<>();
         OPTABLE = new ArrayList<>();
+        MNEMONIC_INDEX = new Mnemonic[MNEMONIC_INDEX_SIZE];
         ERRORS_TABLE = new ArrayList<>();
-        setDirectivesTable(new File(DIRECT_PATH));
-        setOperationTable(new File(OPTABLE_PATH));
-        setErrorsTable(new File(ERRORS_PATH));
+
+        String directory = System.getProperty(TABLES_PROPERTY);
+        if (directory == null) {
+            loadInstructionSet();
+        } else {
+            try {
+                OPTABLE.addAll(TableReader.readDirectives(new File(directory)));
+                OPTABLE.addAll(TableReader.readOperations(new File(directory)));
+                ERRORS_TABLE.addAll(TableReader.readErrors(new File(directory)));
+            } catch (IOException e) {
+                // Fail here rather than assemble with empty tables.
+                throw new UncheckedIOException("cannot load the tables in " + directory, e);
+            }
+        }
+        if (ERRORS_TABLE.size() > Long.SIZE) {
+            // a statement keeps its diagnostics as bits of a long
+            throw new IllegalStateException(ERRORS_TABLE.size() + " error messages, at most " + Long.SIZE);
+        }
+
+        // Index every directive and opcode in an open addressing table hashed on the upper case name,
+        // so a lookup is usually a single probe and never allocates.
+        for (Mnemonic mnemonic : OPTABLE) {
+            String name = mnemonic.getString();
+            if (lookupMnemonic(name) == null) {
+                int slot = mnemonicHash(name, 0, name.length());
+                while (MNEMONIC_INDEX[slot] != null) {
+                    slot = (slot + 1) & (MNEMONIC_INDEX_SIZE - 1);
+                }
+                MNEMONIC_INDEX[slot] = mnemonic;
+            }
+        }
 
         REGTABLE.put("A", 0);
         REGTABLE.put("X", 1);
@@ -39,17 +72,18 @@ class Tables {
         REGTABLE.put("SW", 9);
     }
 
-    private static void setDirectivesTable(File file) {
-        try {
-            BufferedReader opTable = new BufferedReader(new FileReader(file));
-            String line;
-
-            while ((line = opTable.readLine()) != null) {
-                OPTABLE.add(new Mnemonic(line));
-            }
-        } catch (IOException ignored) {
+    private static void loadInstructionSet() {
+        for (String directive : InstructionSet.DIRECTIVES) {
+            OPTABLE.add(new Mnemonic(directive));
+        }
+        for (int i = 0; i < InstructionSet.OPERATIONS.length; i++) {
+            int registers = InstructionSet.REGISTER_OPERANDS[i];
+            OPTABLE.add(new Mnemonic(InstructionSet.OPERATIONS[i], registers > 0, InstructionSet.FORMATS[i],
+                    InstructionSet.OPCODES[i], registers > 1));
+        }
+        for (String error : InstructionSet.ERRORS) {
+            ERRORS_TABLE.add(new Error(error));
         }
-
     }
 
     private Tables() {
@@ -57,10 +91,6 @@ class Tables {
     }
 
 
-    static HashMap<String, Integer> getSymbolTable() {
-        return SYMTABLE;
-    }
-
     static HashMap<String, Integer> getREGTABLE() {
         return REGTABLE;
     }
@@ -69,50 +99,55 @@ class Tables {
         return OPTABLE;
     }
 
-    static List<Error> getErrorsTable() {
-        return ERRORS_TABLE;
+    /**
+     * Case insensitive lookup of a directive or an operation code.
+     *
+     * @return the matching mnemonic, or null if the token is not in OPTABLE.
+     */
+    static Mnemonic lookupMnemonic(String token) {
+        return lookupMnemonic(token, 0, token.length());
     }
 
-    private static void setOperationTable(File table) {
-        try {
-            BufferedReader opTable = new BufferedReader(new FileReader(table));
-            String line;
-            String[] lineTokens;
-
-            while ((line = opTable.readLine()) != null) {
-                lineTokens = line.split("\\s+");
-                boolean regType = true;
-                boolean twoOperands = false;
-                if (lineTokens[1].equals("m")) {
-                    regType = false;
-                } else {
-                    String[] operands = lineTokens[1].split(",");
-                    if (operands.length > 1) {
-                        twoOperands = true;
-                    }
-                }
-                int size;
-                if (lineTokens[2].equals("2")) {
-                    size = 2;
-                } else {
-                    size = 3;
-                }
-                OPTABLE.add(new Mnemonic(lineTokens[0], regType, size, lineTokens[3], twoOperands));
+    /**
+     * Same as {@link #lookupMnemonic(String)} for the token between start and end of a character sequence.
+     */
+    static Mnemonic lookupMnemonic(CharSequence s, int start, int end) {
+        int slot = mnemonicHash(s, start, end);
+        Mnemonic mnemonic;
+        while ((mnemonic = MNEMONIC_INDEX[slot]) != null) {
+            if (equalsIgnoreCase(mnemonic.getString(), s, start, end)) {
+                return mnemonic;
             }
-        } catch (IOException ignored) {
+            slot = (slot + 1) & (MNEMONIC_INDEX_SIZE - 1);
         }
+        return null;
     }
 
-    private static void setErrorsTable(File table) {
-        try {
-            BufferedReader opTable = new BufferedReader(new FileReader(table));
-            String line;
+    private static int mnemonicHash(CharSequence s, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toUpperCase(s.charAt(i));
+        }
+        return (hash ^ (hash >>> 8)) & (MNEMONIC_INDEX_SIZE - 1);
+    }
 
-            while ((line = opTable.readLine()) != null) {
-                ERRORS_TABLE.add(new Error(line));
+    private static boolean equalsIgnoreCase(String name, CharSequence s, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (toUpperCase(name.charAt(i)) != toUpperCase(s.charAt(start + i))) {
+                return false;
             }
-        } catch (IOException ignored) {
         }
+        return true;
+    }
+
+    private static char toUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
 
+    static List<Error> getErrorsTable() {
+        return ERRORS_TABLE;
     }
 }
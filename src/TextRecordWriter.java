@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Packs the object code of consecutive statements into text (T) records.
+ * A record holds at most 30 bytes, and every data directive starts a new record.
+ * Object code stays binary until a record is flushed, which is the only place it is turned into hex.
+ */
+class TextRecordWriter {
+
+    private static final int MAX_RECORD_SIZE = 30;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final Writer object;
+    private final int progStartAddr;
+    private final boolean continued;
+
+    private byte[] record = new byte[MAX_RECORD_SIZE];
+    private int address;
+    private int size = 0;
+    private boolean started = false;
+
+    private final Map<Statement, Integer> placeholders = new IdentityHashMap<>();
+
+    TextRecordWriter(Writer object, int progStartAddr) {
+        this(object, progStartAddr, false);
+    }
+
+    private TextRecordWriter(Writer object, int progStartAddr, boolean continued) {
+        this.object = object;
+        this.progStartAddr = progStartAddr;
+        this.continued = continued;
+    }
+
+    /**
+     * Writer for the statements from a data directive on, which continues the records of the writer before it.
+     * Since a data directive always starts a record, the records come out the same as from a single writer.
+     */
+    static TextRecordWriter continuing(Writer object) {
+        return new TextRecordWriter(object, 0, true);
+    }
+
+    void add(Statement statement) throws IOException {
+        add(statement, statement.getInstruction());
+    }
+
+    /**
+     * Reserves the place of a statement whose object code, of {@code length} bytes, is not known yet, it is filled in
+     * by {@link #patch}.
+     */
+    void addPlaceholder(Statement statement, int length) throws IOException {
+        add(statement, new byte[length]);
+        placeholders.put(statement, address + size - length);
+    }
+
+    /**
+     * Fills in the object code of a statement added as a placeholder. If its record was already written,
+     * the code goes into a record of its own, which the loader applies over the first one.
+     */
+    void patch(Statement statement) throws IOException {
+        byte[] instruction = statement.getInstruction();
+        // where the loader puts the placeholder
+        int loadAddress = placeholders.remove(statement);
+        if (loadAddress >= address && loadAddress + instruction.length <= address + size) {
+            System.arraycopy(instruction, 0, record, loadAddress - address, instruction.length);
+        } else {
+            write(loadAddress, instruction, instruction.length);
+        }
+    }
+
+    private void add(Statement statement, byte[] instruction) throws IOException {
+        add(statement.getAddress(), statement.getMnemonic().isDirective(), instruction, 0, instruction.length);
+    }
+
+    /**
+     * Adds object code that no statement holds, for the {@link StatementStore}.
+     *
+     * @param data true for the code of a data directive, which starts a new record.
+     */
+    void add(int statementAddress, boolean data, byte[] code, int offset, int length) throws IOException {
+        boolean newRecord = size + length > MAX_RECORD_SIZE || data;
+        if (!started) {
+            started = true;
+            address = continued ? statementAddress : progStartAddr;
+            // the first statement of a continued writer is a data directive, its record is already open
+            newRecord &= !continued;
+        }
+
+        if (newRecord) {
+            flush();
+            address = statementAddress;
+        }
+
+        if (size + length > record.length) {
+            // a single constant longer than a record
+            record = Arrays.copyOf(record, size + length);
+        }
+        System.arraycopy(code, offset, record, size, length);
+        size += length;
+    }
+
+    /**
+     * Writes the last, partially filled, record.
+     */
+    void finish() throws IOException {
+        if (started) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        write(address, record, size);
+        size = 0;
+    }
+
+    private void write(int address, byte[] code, int size) throws IOException {
+        object.write("T" + Assembler.formatAddress(address) + "^");
+        char[] line = new char[3 + size * 2 + 1];
+        line[0] = HEX_DIGITS[size >> 4 & 0xF];
+        line[1] = HEX_DIGITS[size & 0xF];
+        line[2] = '^';
+        for (int i = 0; i < size; i++) {
+            line[3 + i * 2] = HEX_DIGITS[code[i] >> 4 & 0xF];
+            line[4 + i * 2] = HEX_DIGITS[code[i] & 0xF];
+        }
+        line[line.length - 1] = '\n';
+        object.write(line);
+    }
+}